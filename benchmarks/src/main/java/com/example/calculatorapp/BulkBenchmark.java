@@ -0,0 +1,87 @@
+package com.example.calculatorapp;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Una formula valutata su una griglia di 'rows' punti: calculate(String) riga per riga (come si
+// fa oggi), la CompiledExpression riga per riga, ed evaluateColumns su colonne reali e complesse.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BulkBenchmark {
+    private static final String FORMULA = "(x + 1.5) * y / (x - 2) - y * y + 0.5 * x";
+
+    @Param({"1024", "65536"})
+    public int rows;
+
+    private CalculatorEngine engine;
+    private CompiledExpression compiled;
+    private double[][] columnsRe;
+    private double[][] columnsIm;
+    private double[] bindings;
+    private double[] resultRe;
+    private double[] resultIm;
+
+    @Setup
+    public void setUp() {
+        engine = new CalculatorEngine();
+        compiled = CompiledExpression.compile(FORMULA);
+        Random random = new Random(42);
+        columnsRe = new double[CompiledExpression.VARIABLE_SLOTS][];
+        columnsIm = new double[CompiledExpression.VARIABLE_SLOTS][];
+        for (char c : new char[]{'x', 'y'}) {
+            columnsRe[c - 'a'] = random.doubles(rows, -10, 10).toArray();
+            columnsIm[c - 'a'] = random.doubles(rows, -10, 10).toArray();
+        }
+        bindings = new double[CompiledExpression.VARIABLE_SLOTS];
+        resultRe = new double[rows];
+        resultIm = new double[rows];
+    }
+
+    @Benchmark
+    public double[] loopCalculate() {
+        for (int r = 0; r < rows; r++) {
+            engine.setVariable('x', columnsRe['x' - 'a'][r], 0);
+            engine.setVariable('y', columnsRe['y' - 'a'][r], 0);
+            resultRe[r] = engine.calculate(FORMULA);
+        }
+        return resultRe;
+    }
+
+    @Benchmark
+    public double[] loopCompiled() {
+        for (int r = 0; r < rows; r++) {
+            bindings['x' - 'a'] = columnsRe['x' - 'a'][r];
+            bindings['y' - 'a'] = columnsRe['y' - 'a'][r];
+            resultRe[r] = compiled.evaluate(bindings);
+        }
+        return resultRe;
+    }
+
+    @Benchmark
+    public double[] columns() {
+        compiled.evaluateColumns(columnsRe, null, rows, resultRe, null);
+        return resultRe;
+    }
+
+    @Benchmark
+    public double[] columnsComplex() {
+        compiled.evaluateColumns(columnsRe, columnsIm, rows, resultRe, resultIm);
+        return resultRe;
+    }
+}
@@ -0,0 +1,99 @@
+package com.example.calculatorapp;
+
+import org.apache.commons.math3.complex.Complex;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+// Costo e occupazione di memoria di ComplexNumber rispetto a commons-math Complex.
+// Eseguire con "-prof gc": gc.alloc.rate.norm riporta i byte allocati per operazione,
+// cioe' la dimensione di un elemento dello stack per il benchmark allocate.
+// 'operand' sceglie operandi reali (parte immaginaria nulla) o complessi.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ComplexNumberBenchmark {
+
+    @Param({"real", "complex"})
+    public String operand;
+
+    private double real = 3.5;
+    private double imaginary;
+    private ComplexNumber x;
+    private ComplexNumber y;
+    private Complex cx;
+    private Complex cy;
+
+    @Setup
+    public void setUp() {
+        boolean complex = operand.equals("complex");
+        imaginary = complex ? -1.25 : 0;
+        x = new ComplexNumber(real, imaginary);
+        y = new ComplexNumber(1.5, complex ? 2.75 : 0);
+        cx = new Complex(real, imaginary);
+        cy = new Complex(1.5, complex ? 2.75 : 0);
+    }
+
+    @Benchmark
+    public ComplexNumber allocate() {
+        return new ComplexNumber(real, imaginary);
+    }
+
+    @Benchmark
+    public Complex allocateCommonsMath() {
+        return new Complex(real, imaginary);
+    }
+
+    @Benchmark
+    public ComplexNumber add() {
+        return x.add(y);
+    }
+
+    @Benchmark
+    public Complex addCommonsMath() {
+        return cx.add(cy);
+    }
+
+    @Benchmark
+    public ComplexNumber multiply() {
+        return x.multiply(y);
+    }
+
+    @Benchmark
+    public Complex multiplyCommonsMath() {
+        return cx.multiply(cy);
+    }
+
+    @Benchmark
+    public ComplexNumber divide() {
+        return x.divide(y);
+    }
+
+    @Benchmark
+    public Complex divideCommonsMath() {
+        return cx.divide(cy);
+    }
+
+    @Benchmark
+    public ComplexNumber sqrt() {
+        return x.sqrt();
+    }
+
+    @Benchmark
+    public Complex sqrtCommonsMath() {
+        return cx.sqrt();
+    }
+}
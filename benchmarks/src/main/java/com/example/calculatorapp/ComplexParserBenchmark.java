@@ -0,0 +1,105 @@
+package com.example.calculatorapp;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Analizza 'literals' letterali complessi separati da '\n', con il parser a passaggio singolo
+// e con il vecchio percorso isValidComplexNumber + parseComplexNumber basato su regex.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class ComplexParserBenchmark {
+
+    @Param({"1000000", "4000000", "16000000"})
+    public int literals;
+
+    private String input;
+    private ComplexParser parser;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        StringBuilder text = new StringBuilder(literals * 12);
+        for (int i = 0; i < literals; i++) {
+            text.append(random.nextBoolean() ? '-' : "")
+                    .append(random.nextInt(1000)).append('.').append(random.nextInt(100))
+                    .append(random.nextBoolean() ? '+' : '-')
+                    .append(random.nextInt(1000)).append('.').append(random.nextInt(100))
+                    .append('j').append('\n');
+        }
+        input = text.toString();
+        parser = new ComplexParser();
+    }
+
+    @Benchmark
+    public double singlePass() {
+        double sum = 0;
+        int lineStart = 0;
+        for (int i = 0; i < input.length(); i++) {
+            if (input.charAt(i) == '\n') {
+                if (parser.parse(input, lineStart, i)) {
+                    sum += parser.real() + parser.imaginary();
+                }
+                lineStart = i + 1;
+            }
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public double legacyRegex() {
+        double sum = 0;
+        int lineStart = 0;
+        for (int i = 0; i < input.length(); i++) {
+            if (input.charAt(i) == '\n') {
+                String line = input.substring(lineStart, i);
+                if (legacyIsValid(line)) {
+                    double[] parsed = legacyParse(line);
+                    sum += parsed[0] + parsed[1];
+                }
+                lineStart = i + 1;
+            }
+        }
+        return sum;
+    }
+
+    // Copia del vecchio CalculatorApp.isValidComplexNumber
+    private static boolean legacyIsValid(String input) {
+        String complexNumberPattern = "^[-+]?[0-9]*\\.?[0-9]+[-+][0-9]*\\.?[0-9]*[ij]$";
+        return input.matches(complexNumberPattern);
+    }
+
+    // Copia del vecchio CalculatorApp.parseComplexNumber (che rivalidava l'input)
+    private static double[] legacyParse(String input) {
+        if (!legacyIsValid(input)) {
+            return null;
+        }
+        String sanitizedInput = input.replaceAll("\\s", "").replaceAll("i", "j");
+        String[] parts = sanitizedInput.split("[+|-]");
+        double realPart;
+        double imaginaryPart;
+        if (sanitizedInput.startsWith("-")) {
+            realPart = Double.parseDouble(parts[1]);
+            imaginaryPart = sanitizedInput.contains("-") ? -Double.parseDouble(parts[2].replace("j", "")) : Double.parseDouble(parts[2].replace("j", ""));
+        } else {
+            realPart = Double.parseDouble(parts[0]);
+            imaginaryPart = sanitizedInput.contains("-") ? -Double.parseDouble(parts[1].replace("j", "")) : Double.parseDouble(parts[1].replace("j", ""));
+        }
+        return new double[]{realPart, imaginaryPart};
+    }
+}
@@ -0,0 +1,91 @@
+package com.example.calculatorapp;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Valutazione di espressioni infisse: il vecchio percorso split + convertToPostfix + evaluatePostfix,
+// calculate(String) e la valutazione di un'espressione gia' compilata.
+// 'operators' e' il numero di operatori binari nell'espressione generata.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ExpressionBenchmark {
+
+    @Param({"4", "16", "64"})
+    public int operators;
+
+    private String expression;
+    private CalculatorApp calculator;
+    private CompiledExpression compiled;
+    private double[] bindings;
+
+    @Setup
+    public void setUp() {
+        expression = generate(operators, new Random(42));
+        calculator = new CalculatorApp();
+        compiled = CompiledExpression.compile(expression);
+        bindings = new double[CompiledExpression.VARIABLE_SLOTS];
+    }
+
+    // Operands are positive decimals; every fourth operator opens a parenthesised group.
+    static String generate(int operators, Random random) {
+        StringBuilder builder = new StringBuilder();
+        int open = 0;
+        for (int i = 0; i < operators; i++) {
+            if (i % 4 == 0) {
+                builder.append('(');
+                open++;
+            }
+            builder.append(1 + random.nextInt(99)).append('.').append(random.nextInt(10));
+            if (i % 4 == 3 && open > 0) {
+                builder.append(')');
+                open--;
+            }
+            builder.append("+-*/".charAt(random.nextInt(4)));
+        }
+        builder.append(1 + random.nextInt(99));
+        while (open-- > 0) {
+            builder.append(')');
+        }
+        return builder.toString();
+    }
+
+    // The pre-compilation calculate() pipeline: regex split, convertToPostfix, evaluatePostfix.
+    @Benchmark
+    public double legacySplitAndPostfix() {
+        List<String> tokens = Arrays.asList(expression.split("(?<=[-+*/()])|(?=[-+*/()])"));
+        return calculator.evaluatePostfix(calculator.convertToPostfix(tokens));
+    }
+
+    @Benchmark
+    public double calculate() {
+        return calculator.calculate(expression);
+    }
+
+    @Benchmark
+    public CompiledExpression compile() {
+        return CompiledExpression.compile(expression);
+    }
+
+    @Benchmark
+    public double compiledEvaluate() {
+        return compiled.evaluate(bindings);
+    }
+}
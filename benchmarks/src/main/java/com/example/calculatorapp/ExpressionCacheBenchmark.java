@@ -0,0 +1,54 @@
+package com.example.calculatorapp;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+// Una "dashboard" che ricalcola sempre le stesse formule con calculate(String): risultato in cache,
+// risultato invalidato da una variabile cambiata (si riusa il codice compilato), e il percorso
+// senza cache (compilazione + valutazione a ogni chiamata).
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ExpressionCacheBenchmark {
+    private static final String FORMULA = "(x + 1.5) * (y - 2) / (x * x + 1) + 3 * y - 0.25 * (x - y)";
+
+    private CalculatorEngine engine;
+    private double increment;
+
+    @Setup
+    public void setUp() {
+        engine = new CalculatorEngine();
+        engine.setVariable('x', 2, 0);
+        engine.setVariable('y', 5, 0);
+    }
+
+    @Benchmark
+    public double cached() {
+        return engine.calculate(FORMULA);
+    }
+
+    @Benchmark
+    public double invalidated() {
+        increment = -increment + 1e-3;
+        engine.getVariables().add(0, increment, 0);
+        return engine.calculate(FORMULA);
+    }
+
+    @Benchmark
+    public double uncached() {
+        return engine.calculate(CompiledExpression.compile(FORMULA));
+    }
+}
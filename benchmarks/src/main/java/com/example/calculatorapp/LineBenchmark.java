@@ -0,0 +1,71 @@
+package com.example.calculatorapp;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Un programma RPN incollato tutto su una riga ("<x 1.5 * 0.25 + dup * sqrt ... drop", 7 parole
+// per gruppo) inserito parola per parola, come oggi con un Invio per parola, contro enterLine.
+// Dopo ogni Invio CalculatorApp ricostruisce la vista dallo storico (updateStackDisplay): qui
+// refresh() ne riproduce il costo senza JavaFX, formattando lo storico in una lista di stringhe.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LineBenchmark {
+    @Param({"4", "64"})
+    public int groups;
+
+    private CalculatorEngine engine;
+    private String line;
+    private String[] words;
+
+    @Setup
+    public void setUp() {
+        engine = new CalculatorEngine();
+        engine.setVariable('x', 1.25, 0.5);
+        StringBuilder program = new StringBuilder("<x");
+        for (int i = 0; i < groups; i++) {
+            program.append(" 1.5 * 0.25 + dup * sqrt");
+        }
+        line = program.append(" drop").toString();
+        words = line.split(" ");
+    }
+
+    private List<String> refresh() {
+        List<String> items = new ArrayList<>();
+        for (ComplexNumber number : engine.getHistory()) {
+            items.add(number.toString());
+        }
+        return items;
+    }
+
+    @Benchmark
+    public void wordByWord(Blackhole blackhole) {
+        for (String word : words) {
+            engine.enter(word);
+            blackhole.consume(refresh());
+        }
+    }
+
+    @Benchmark
+    public void line(Blackhole blackhole) {
+        engine.enterLine(line);
+        blackhole.consume(refresh());
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.calculatorapp;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Analisi di un singolo letterale, come avviene per ogni input della calcolatrice:
+// CalculatorApp.parseComplexNumber (che restituisce un ComplexNumber) e ComplexParser da solo.
+// 'operand' sceglie letterali reali ("-12.5") o complessi ("3.25-4.5j").
+// Il tempo riportato e' per letterale.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LiteralBenchmark {
+    private static final int LITERALS = 1024;
+
+    @Param({"real", "complex"})
+    public String operand;
+
+    private String[] literals;
+    private CalculatorApp calculator;
+    private ComplexParser parser;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        literals = new String[LITERALS];
+        for (int i = 0; i < LITERALS; i++) {
+            StringBuilder literal = new StringBuilder();
+            if (random.nextBoolean()) {
+                literal.append('-');
+            }
+            literal.append(random.nextInt(1000)).append('.').append(random.nextInt(100));
+            if (operand.equals("complex")) {
+                literal.append(random.nextBoolean() ? '+' : '-')
+                        .append(random.nextInt(1000)).append('.').append(random.nextInt(100)).append('j');
+            }
+            literals[i] = literal.toString();
+        }
+        calculator = new CalculatorApp();
+        parser = new ComplexParser();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LITERALS)
+    public double parseComplexNumber() {
+        double sum = 0;
+        for (String literal : literals) {
+            ComplexNumber value = calculator.parseComplexNumber(literal);
+            sum += value.getReal() + value.getImaginary();
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LITERALS)
+    public double complexParser() {
+        double sum = 0;
+        for (String literal : literals) {
+            parser.parse(literal);
+            sum += parser.real() + parser.imaginary();
+        }
+        return sum;
+    }
+}
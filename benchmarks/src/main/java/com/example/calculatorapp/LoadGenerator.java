@@ -0,0 +1,138 @@
+package com.example.calculatorapp;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.StandardProtocolFamily;
+import java.net.SocketAddress;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Client di carico per CalculatorServer (non e' un benchmark JMH). Apre 'connections' connessioni,
+// ognuna su un virtual thread; quando sono tutte aperte ognuna invia 'requests' richieste, a
+// gruppi di 'pipeline' righe per write, e misura il tempo fino all'ultima risposta del gruppo.
+// Alla fine stampa throughput e latenze p50/p99/max per richiesta.
+// Il server va avviato in un altro processo: con 10k connessioni client e server insieme
+// supererebbero il limite di file descriptor del processo.
+//     java -cp target/classes com.example.calculatorapp.CalculatorServer 7878
+//     java -cp benchmarks/target/benchmarks.jar com.example.calculatorapp.LoadGenerator 7878 10000 100
+// Argomenti: porta o unix:percorso, connessioni (1000), richieste per connessione (100), pipeline (1).
+public class LoadGenerator {
+    // Un ciclo RPN che lascia lo stack vuoto, piu' una calculate.
+    private static final int CONNECT_ATTEMPTS = 100;
+    private static final String[] REQUESTS = {"3+4j", "1-2j", "*", "drop", "? (x + 1.5) * 4 - 2 / 3"};
+
+    public static void main(String[] args) throws Exception {
+        SocketAddress address = CalculatorServer.parseAddress(args.length > 0 ? args[0] : "" + CalculatorServer.DEFAULT_PORT);
+        int connections = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+        int requests = args.length > 2 ? Integer.parseInt(args[2]) : 100;
+        int pipeline = args.length > 3 ? Integer.parseInt(args[3]) : 1;
+
+        long[] latencies = new long[connections * requests];
+        CountDownLatch connected = new CountDownLatch(connections);
+        CountDownLatch go = new CountDownLatch(1);
+        AtomicInteger failures = new AtomicInteger();
+        List<Thread> clients = new ArrayList<>(connections);
+        for (int c = 0; c < connections; c++) {
+            int offset = c * requests;
+            clients.add(Thread.ofVirtual().start(() -> {
+                SocketChannel channel;
+                try {
+                    channel = open(address);
+                } catch (IOException e) {
+                    channel = null;
+                }
+                connected.countDown();
+                try (SocketChannel opened = channel) {
+                    if (opened == null) {
+                        throw new IOException("Connection refused");
+                    }
+                    go.await();
+                    run(opened, requests, pipeline, latencies, offset);
+                } catch (IOException | InterruptedException e) {
+                    failures.incrementAndGet();
+                    Arrays.fill(latencies, offset, offset + requests, -1);
+                }
+            }));
+        }
+        long connectStart = System.nanoTime();
+        connected.await();
+        long start = System.nanoTime();
+        System.out.printf("%d connections opened in %d ms%n", connections, (start - connectStart) / 1_000_000);
+        go.countDown();
+        for (Thread client : clients) {
+            client.join();
+        }
+        long elapsed = System.nanoTime() - start;
+
+        long[] sorted = Arrays.stream(latencies).filter(latency -> latency >= 0).sorted().toArray();
+        if (sorted.length == 0) {
+            System.out.printf("all %d connections failed%n", failures.get());
+            return;
+        }
+        System.out.printf("%d requests in %d ms (%d failed connections): %.0f requests/s%n",
+                sorted.length, elapsed / 1_000_000, failures.get(), sorted.length * 1e9 / elapsed);
+        System.out.printf("latency p50 %.1f us, p99 %.1f us, max %.1f us%n",
+                percentile(sorted, 0.50) / 1e3, percentile(sorted, 0.99) / 1e3, sorted[sorted.length - 1] / 1e3);
+    }
+
+    // A Unix-domain connect fails with EAGAIN when the server backlog is full, instead of waiting
+    // as TCP does: retry for a while.
+    private static SocketChannel open(SocketAddress address) throws IOException {
+        for (int attempt = 1; ; attempt++) {
+            SocketChannel channel = address instanceof UnixDomainSocketAddress
+                    ? SocketChannel.open(StandardProtocolFamily.UNIX)
+                    : SocketChannel.open();
+            try {
+                channel.connect(address);
+                return channel;
+            } catch (IOException e) {
+                channel.close();
+                if (attempt == CONNECT_ATTEMPTS) {
+                    throw e;
+                }
+            }
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                throw new IOException("Interrupted while connecting", e);
+            }
+        }
+    }
+
+    private static void run(SocketChannel channel, int requests, int pipeline, long[] latencies, int offset)
+            throws IOException {
+        BufferedReader in = new BufferedReader(new InputStreamReader(Channels.newInputStream(channel), StandardCharsets.UTF_8));
+        StringBuilder batch = new StringBuilder();
+        for (int sent = 0; sent < requests; sent += pipeline) {
+            int n = Math.min(pipeline, requests - sent);
+            batch.setLength(0);
+            for (int i = 0; i < n; i++) {
+                batch.append(REQUESTS[(sent + i) % REQUESTS.length]).append('\n');
+            }
+            long begin = System.nanoTime();
+            ByteBuffer out = StandardCharsets.UTF_8.encode(batch.toString());
+            while (out.hasRemaining()) {
+                channel.write(out);
+            }
+            for (int i = 0; i < n; i++) {
+                if (in.readLine() == null) {
+                    throw new IOException("Connection closed by the server");
+                }
+            }
+            Arrays.fill(latencies, offset + sent, offset + sent + n, System.nanoTime() - begin);
+        }
+    }
+
+    private static long percentile(long[] sorted, double p) {
+        return sorted[Math.min(sorted.length - 1, (int) (p * sorted.length))];
+    }
+}
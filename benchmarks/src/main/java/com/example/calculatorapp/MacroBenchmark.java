@@ -0,0 +1,67 @@
+package com.example.calculatorapp;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+// Esecuzione di "hyp = sq swap sq + sqrt" (con "sq = dup *") come macro compilata, contro gli
+// stessi comandi inseriti uno alla volta, e contro una singola operazione predefinita come riferimento.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MacroBenchmark {
+    private static final String[] WORDS = {"dup", "*", "swap", "dup", "*", "+", "sqrt"};
+
+    private CalculatorEngine engine;
+
+    @Setup
+    public void setUp() {
+        engine = new CalculatorEngine();
+        engine.enter("sq = dup *");
+        engine.enter("hyp = sq swap sq + sqrt");
+    }
+
+    @Benchmark
+    public double macro() {
+        engine.push(3, 0);
+        engine.push(4, 0);
+        engine.performOperation("hyp");
+        double result = engine.peekReal(0);
+        engine.performOperation("drop");
+        return result;
+    }
+
+    @Benchmark
+    public double wordByWord() {
+        engine.push(3, 0);
+        engine.push(4, 0);
+        for (String word : WORDS) {
+            engine.performOperation(word);
+        }
+        double result = engine.peekReal(0);
+        engine.performOperation("drop");
+        return result;
+    }
+
+    @Benchmark
+    public double builtIn() {
+        engine.push(3, 0);
+        engine.push(4, 0);
+        engine.performOperation("+");
+        double result = engine.peekReal(0);
+        engine.performOperation("drop");
+        return result;
+    }
+}
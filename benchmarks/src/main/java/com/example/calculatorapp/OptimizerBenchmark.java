@@ -0,0 +1,59 @@
+package com.example.calculatorapp;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+// Valutazione di formule con sotto-alberi costanti, con e senza CodeOptimizer.
+// Il numero di istruzioni prima e dopo l'ottimizzazione viene stampato nel setup.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OptimizerBenchmark {
+
+    @Param({
+            "2*3*x + 0",
+            "(4-4)*y + (1.5*2 - 1)*x/1",
+            "(2*3.14159*x*x + 2*3.14159*x*y) * 1 - 0 + (1+2j)*(1-2j)",
+            "x*x + y"
+    })
+    public String formula;
+
+    private CompiledExpression optimized;
+    private CompiledExpression unoptimized;
+    private double[] bindings;
+
+    @Setup
+    public void setUp() {
+        optimized = ExpressionCompiler.compile(formula, true);
+        unoptimized = ExpressionCompiler.compile(formula, false);
+        bindings = new double[CompiledExpression.VARIABLE_SLOTS];
+        bindings['x' - 'a'] = 1.25;
+        bindings['y' - 'a'] = -3;
+        System.out.println();
+        System.out.println("instructions: " + unoptimized.instructionCount() + " -> " + optimized.instructionCount());
+    }
+
+    @Benchmark
+    public double optimized() {
+        return optimized.evaluate(bindings);
+    }
+
+    @Benchmark
+    public double unoptimized() {
+        return unoptimized.evaluate(bindings);
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.calculatorapp;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Scalabilita' di ParallelBatchEvaluator: EXPRESSIONS espressioni indipendenti (16 operatori
+// ciascuna, come ExpressionBenchmark) compilate e valutate su 'threads' worker. Il risultato e' in
+// espressioni al secondo e deve crescere in modo circa lineare fino al numero di core.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParallelBatchBenchmark {
+    private static final int EXPRESSIONS = 65536;
+
+    @Param({"1", "2", "4", "8"})
+    public int threads;
+
+    private List<String> expressions;
+    private double[] bindingsRe;
+    private double[] bindingsIm;
+    private double[] resultRe;
+    private double[] resultIm;
+    private ParallelBatchEvaluator evaluator;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        expressions = new ArrayList<>(EXPRESSIONS);
+        for (int i = 0; i < EXPRESSIONS; i++) {
+            expressions.add(ExpressionBenchmark.generate(16, random));
+        }
+        bindingsRe = new double[VariableManager.SLOTS];
+        Arrays.fill(bindingsRe, Double.NaN);
+        bindingsIm = new double[VariableManager.SLOTS];
+        resultRe = new double[EXPRESSIONS];
+        resultIm = new double[EXPRESSIONS];
+        evaluator = new ParallelBatchEvaluator(threads);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        evaluator.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(EXPRESSIONS)
+    public CalculatorEngine.Status[] evaluate() {
+        return evaluator.evaluate(expressions, bindingsRe, bindingsIm, resultRe, resultIm);
+    }
+}
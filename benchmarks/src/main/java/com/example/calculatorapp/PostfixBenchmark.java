@@ -0,0 +1,109 @@
+package com.example.calculatorapp;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.Stack;
+import java.util.concurrent.TimeUnit;
+
+// Valutazione di un'espressione gia' in notazione postfissa: il vecchio evaluatePostfix su
+// Stack<Double> (boxing e monitor a ogni push/pop) contro CompiledExpression, sia sul percorso
+// solo reale sia su quello complesso (una variabile con parte immaginaria).
+// Con "-prof gc" compiledReal e compiledComplex devono riportare 0 B/op.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PostfixBenchmark {
+
+    @Param({"4", "16", "64"})
+    public int operators;
+
+    private CalculatorApp calculator;
+    private List<String> tokens;
+    private List<String> postfix;
+    private CompiledExpression compiled;
+    private CompiledExpression compiledComplex;
+    private double[] bindingsRe;
+    private double[] bindingsIm;
+    private double[] result;
+
+    @Setup
+    public void setUp() {
+        calculator = new CalculatorApp();
+        String expression = ExpressionBenchmark.generate(operators, new Random(42));
+        tokens = Arrays.asList(expression.split("(?<=[-+*/()])|(?=[-+*/()])"));
+        postfix = calculator.convertToPostfix(tokens);
+        compiled = ExpressionCompiler.compilePostfix(postfix);
+        compiledComplex = CompiledExpression.compile("(" + expression + ")*z");
+        bindingsRe = new double[CompiledExpression.VARIABLE_SLOTS];
+        bindingsIm = new double[CompiledExpression.VARIABLE_SLOTS];
+        bindingsRe['z' - 'a'] = 0.5;
+        bindingsIm['z' - 'a'] = 1.5;
+        result = new double[2];
+    }
+
+    @Benchmark
+    public List<String> convertToPostfix() {
+        return calculator.convertToPostfix(tokens);
+    }
+
+    // Copia del vecchio CalculatorApp.evaluatePostfix
+    @Benchmark
+    public double stackOfDouble() {
+        Stack<Double> stack = new Stack<>();
+        for (String token : postfix) {
+            if (Character.isDigit(token.charAt(0))) {
+                stack.push(Double.parseDouble(token));
+            } else {
+                double operand2 = stack.pop();
+                double operand1 = stack.pop();
+                switch (token) {
+                    case "+":
+                        stack.push(operand1 + operand2);
+                        break;
+                    case "-":
+                        stack.push(operand1 - operand2);
+                        break;
+                    case "*":
+                        stack.push(operand1 * operand2);
+                        break;
+                    case "/":
+                        stack.push(operand1 / operand2);
+                        break;
+                }
+            }
+        }
+        return stack.pop();
+    }
+
+    // Includes compiling the token list, like the new evaluatePostfix.
+    @Benchmark
+    public CompiledExpression compilePostfix() {
+        return ExpressionCompiler.compilePostfix(postfix);
+    }
+
+    @Benchmark
+    public CalculatorEngine.Status compiledReal() {
+        return compiled.evaluate(bindingsRe, bindingsIm, result);
+    }
+
+    @Benchmark
+    public CalculatorEngine.Status compiledComplex() {
+        return compiledComplex.evaluate(bindingsRe, bindingsIm, result);
+    }
+}
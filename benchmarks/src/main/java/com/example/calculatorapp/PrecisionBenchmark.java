@@ -0,0 +1,70 @@
+package com.example.calculatorapp;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+// Costo della modalita' ad alta precisione per numero di cifre; precision = 0 e' il percorso double.
+// arithmetic: letterali complessi e + * / inseriti uno alla volta come dalla vista.
+// sqrtDistinct: radice di un valore sempre diverso (cache mancata); sqrtRepeated: sempre lo
+// stesso valore, servito dalla cache delle radici del PrecisionBackend.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PrecisionBenchmark {
+    private static final String[] ARITHMETIC = {
+            "1.2345678901234567890123456789", "3.75-1.5j", "*", "0.3", "/", "1.1+2.2j", "+", "drop"
+    };
+
+    @Param({"0", "16", "34", "100", "1000"})
+    public int precision;
+
+    private CalculatorEngine engine;
+    private double next;
+
+    @Setup
+    public void setUp() {
+        engine = new CalculatorEngine();
+        engine.setPrecision(precision);
+    }
+
+    @Benchmark
+    public int arithmetic() {
+        for (String input : ARITHMETIC) {
+            engine.enter(input);
+        }
+        return engine.stackSize();
+    }
+
+    @Benchmark
+    public double sqrtDistinct() {
+        next += 0.001;
+        engine.push(next, 0.5);
+        engine.performOperation("sqrt");
+        double result = engine.peekReal(0);
+        engine.performOperation("drop");
+        return result;
+    }
+
+    @Benchmark
+    public double sqrtRepeated() {
+        engine.push(2, 1);
+        engine.performOperation("sqrt");
+        double result = engine.peekReal(0);
+        engine.performOperation("drop");
+        return result;
+    }
+}
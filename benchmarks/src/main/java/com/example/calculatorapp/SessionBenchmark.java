@@ -0,0 +1,77 @@
+package com.example.calculatorapp;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+// Scalabilita' del SessionRegistry: SESSIONS sessioni indipendenti eseguono ciascuna lo stesso
+// script su un pool di 'threads' thread. Il risultato e' in input al secondo; con sessioni che non
+// condividono stato il throughput deve crescere in modo circa lineare fino al numero di core.
+// Il pool e' di thread di piattaforma perche' il parallelismo dello scheduler dei virtual thread
+// si imposta solo all'avvio della JVM (-Djdk.virtualThreadScheduler.parallelism).
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SessionBenchmark {
+    private static final int SESSIONS = 1024;
+    private static final int REPEAT = 8;
+    // Leaves the stack empty, so sessions can run the script any number of times.
+    private static final List<String> UNIT = List.of("1.5", "2.5-1j", "+", ">x", "x*x-1", "sqrt", "3", "*", "drop");
+    private static final int INPUTS = SESSIONS * REPEAT * 9;
+
+    @Param({"1", "2", "4", "8"})
+    public int threads;
+
+    private SessionRegistry registry;
+    private List<String> script;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        registry = new SessionRegistry(Executors.newFixedThreadPool(threads), CalculatorEngine.DEFAULT_HISTORY_SIZE);
+        script = new ArrayList<>();
+        for (int i = 0; i < REPEAT; i++) {
+            script.addAll(UNIT);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        registry.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(INPUTS)
+    public int runAllSessions() {
+        List<CompletableFuture<CalculatorEngine.Status[]>> results = new ArrayList<>(SESSIONS);
+        for (int i = 0; i < SESSIONS; i++) {
+            results.add(registry.submit("s" + i, script));
+        }
+        int ok = 0;
+        for (CompletableFuture<CalculatorEngine.Status[]> result : results) {
+            for (CalculatorEngine.Status status : result.join()) {
+                ok += status == CalculatorEngine.Status.OK ? 1 : 0;
+            }
+        }
+        return ok;
+    }
+}
@@ -0,0 +1,112 @@
+package com.example.calculatorapp;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Operazioni RPN sullo stack: si inseriscono 'depth' operandi e poi si riduce lo stack
+// a un solo valore alternando +, *, swap, dup e drop, come farebbe un utente.
+// MyStack<ComplexNumber> (un oggetto per elemento) contro ComplexStack (due double[]).
+// 'operand' sceglie operandi reali (parte immaginaria nulla) o complessi.
+// Con "-prof gc" gc.alloc.rate.norm mostra i byte allocati per riduzione.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StackBenchmark {
+
+    @Param({"8", "64", "1024"})
+    public int depth;
+
+    @Param({"real", "complex"})
+    public String operand;
+
+    private double[] re;
+    private double[] im;
+    private ComplexStack complexStack;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        re = new double[depth];
+        im = new double[depth];
+        for (int i = 0; i < depth; i++) {
+            // Close to 1 so that long multiplication chains stay finite.
+            re[i] = 0.5 + random.nextDouble();
+            im[i] = operand.equals("complex") ? random.nextDouble() - 0.5 : 0;
+        }
+        complexStack = new ComplexStack();
+    }
+
+    @Benchmark
+    public ComplexNumber myStack() {
+        MyStack<ComplexNumber> stack = new MyStack<>();
+        for (int i = 0; i < depth; i++) {
+            stack.push(new ComplexNumber(re[i], im[i]));
+        }
+        int step = 0;
+        while (stack.size() > 1) {
+            switch (step++ & 3) {
+                case 0:
+                    stack.push(stack.pop().add(stack.pop()));
+                    break;
+                case 1:
+                    stack.swap();
+                    stack.push(stack.pop().multiply(stack.pop()));
+                    break;
+                case 2:
+                    stack.dup();
+                    stack.drop();
+                    stack.push(stack.pop().add(stack.pop()));
+                    break;
+                default:
+                    stack.push(stack.pop().multiply(stack.pop()));
+                    break;
+            }
+        }
+        return stack.pop();
+    }
+
+    @Benchmark
+    public double complexStack() {
+        ComplexStack stack = complexStack;
+        stack.clear();
+        for (int i = 0; i < depth; i++) {
+            stack.push(re[i], im[i]);
+        }
+        int step = 0;
+        while (stack.size() > 1) {
+            switch (step++ & 3) {
+                case 0:
+                    stack.add();
+                    break;
+                case 1:
+                    stack.swap();
+                    stack.multiply();
+                    break;
+                case 2:
+                    stack.dup();
+                    stack.drop();
+                    stack.add();
+                    break;
+                default:
+                    stack.multiply();
+                    break;
+            }
+        }
+        return stack.peekRe() + stack.peekIm();
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.calculatorapp;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+// Caricamento all'avvio di una libreria di 'macros' macro e 26 variabili: file binario mappato in
+// memoria contro l'import del formato testuale, che ricompila ogni macro.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StateFileBenchmark {
+
+    @Param({"100", "10000"})
+    public int macros;
+
+    private Path directory;
+    private Path binary;
+    private Path text;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        CalculatorEngine engine = new CalculatorEngine();
+        for (char c = 'a'; c <= 'z'; c++) {
+            engine.setVariable(c, c, -c);
+        }
+        engine.enter("sq = dup *");
+        for (int i = 0; i < macros; i++) {
+            engine.define("op" + name(i), "sq swap sq + sqrt " + i + ".5+2j * <x +y");
+        }
+        directory = Files.createTempDirectory("state-benchmark");
+        binary = directory.resolve("state.bin");
+        text = directory.resolve("state.txt");
+        StateFile.write(engine, binary);
+        try (Writer writer = Files.newBufferedWriter(text, StandardCharsets.UTF_8)) {
+            StateFile.exportText(engine, writer);
+        }
+    }
+
+    // Macro names are letters only.
+    private static String name(int i) {
+        StringBuilder name = new StringBuilder();
+        do {
+            name.append((char) ('a' + i % 26));
+            i /= 26;
+        } while (i > 0);
+        return name.toString();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(binary);
+        Files.deleteIfExists(text);
+        Files.deleteIfExists(directory);
+    }
+
+    @Benchmark
+    public CalculatorEngine readBinary() throws IOException {
+        CalculatorEngine engine = new CalculatorEngine();
+        StateFile.read(binary, engine);
+        return engine;
+    }
+
+    @Benchmark
+    public CalculatorEngine importText() throws IOException {
+        CalculatorEngine engine = new CalculatorEngine();
+        try (BufferedReader reader = Files.newBufferedReader(text, StandardCharsets.UTF_8)) {
+            StateFile.importText(reader, engine);
+        }
+        return engine;
+    }
+}
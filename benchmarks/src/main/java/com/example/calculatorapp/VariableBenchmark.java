@@ -0,0 +1,60 @@
+package com.example.calculatorapp;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// Ciclo "save, modifica una variabile, restore" con tutte le 26 variabili definite:
+// snapshot copy-on-write del VariableManager contro la copia di una HashMap a ogni save.
+// Con "-prof gc" si vede che VariableManager copia solo i due double[26] alla prima modifica.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VariableBenchmark {
+    private VariableManager variables;
+    private Map<Character, ComplexNumber> map;
+    private Deque<Map<Character, ComplexNumber>> saved;
+
+    @Setup
+    public void setUp() {
+        variables = new VariableManager();
+        map = new HashMap<>();
+        saved = new ArrayDeque<>();
+        for (char c = 'a'; c <= 'z'; c++) {
+            variables.save(VariableManager.slot(c), c, 1);
+            map.put(c, new ComplexNumber(c, 1));
+        }
+    }
+
+    @Benchmark
+    public double copyOnWrite() {
+        variables.saveAll();
+        variables.add(VariableManager.slot('x'), 1, 0);
+        variables.restoreAll();
+        return variables.re(VariableManager.slot('x'));
+    }
+
+    @Benchmark
+    public double copyHashMap() {
+        saved.push(new HashMap<>(map));
+        map.put('x', map.get('x').add(new ComplexNumber(1, 0)));
+        map = saved.pop();
+        return map.get('x').getReal();
+    }
+}
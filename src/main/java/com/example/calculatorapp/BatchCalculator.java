@@ -0,0 +1,149 @@
+package com.example.calculatorapp;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Modalita' batch senza interfaccia grafica: legge un input per riga da file o da stdin,
+// lo passa al CalculatorEngine e scrive per ogni riga la cima dello stack (o l'errore).
+// Non carica nessuna classe JavaFX.
+//     java -cp target/classes com.example.calculatorapp.BatchCalculator [--parallel[=N]] [input|-] [output]
+// Con --parallel ogni riga e' invece un'espressione infissa indipendente, senza stack ne' variabili:
+// le righe vengono lette a blocchi di PARALLEL_BLOCK, ogni blocco valutato su N thread (N >= 1,
+// default: i core disponibili) con ParallelBatchEvaluator e scritto nello stesso ordine dell'input,
+// quindi come in modalita' normale la memoria non dipende dalla lunghezza dell'input.
+// Al termine stampa su stderr il numero di righe elaborate e il throughput (righe/s).
+public class BatchCalculator {
+    private static final int BUFFER_SIZE = 1 << 16;
+    static final int PARALLEL_BLOCK = 64 * ParallelBatchEvaluator.CHUNK;
+    static final String USAGE = "Usage: BatchCalculator [--parallel[=N]] [input|-] [output]";
+
+    private final CalculatorEngine engine = new CalculatorEngine();
+    private final StringBuilder line = new StringBuilder();
+
+    public static void main(String[] args) throws IOException {
+        int parallelism = 0;
+        if (args.length > 0 && args[0].startsWith("--parallel")) {
+            parallelism = parseParallelism(args[0]);
+            if (parallelism < 1) {
+                System.err.println(USAGE);
+                System.exit(2);
+            }
+            args = Arrays.copyOfRange(args, 1, args.length);
+        }
+        Reader in = args.length > 0 && !args[0].equals("-")
+                ? Files.newBufferedReader(Path.of(args[0]), StandardCharsets.UTF_8)
+                : new InputStreamReader(System.in, StandardCharsets.UTF_8);
+        Writer out = args.length > 1
+                ? Files.newBufferedWriter(Path.of(args[1]), StandardCharsets.UTF_8)
+                : new OutputStreamWriter(System.out, StandardCharsets.UTF_8);
+
+        long startTime = System.nanoTime();
+        long lines;
+        try (BufferedReader reader = new BufferedReader(in, BUFFER_SIZE);
+             BufferedWriter writer = new BufferedWriter(out, BUFFER_SIZE)) {
+            lines = parallelism > 0 ? runParallel(reader, writer, parallelism) : new BatchCalculator().run(reader, writer);
+        }
+        double seconds = (System.nanoTime() - startTime) / 1e9;
+        System.err.printf("Processed %d lines in %.3f s (%.0f lines/s)%n", lines, seconds, lines / seconds);
+    }
+
+    long run(BufferedReader reader, Writer writer) throws IOException {
+        long count = 0;
+        String input;
+        while ((input = reader.readLine()) != null) {
+            if (input.isBlank()) {
+                continue;
+            }
+            writer.append(evaluate(input)).append('\n');
+            count++;
+        }
+        writer.flush();
+        return count;
+    }
+
+    // "--parallel" or "--parallel=N"; -1 when N is not a positive number.
+    static int parseParallelism(String option) {
+        if (option.equals("--parallel")) {
+            return Runtime.getRuntime().availableProcessors();
+        }
+        if (!option.startsWith("--parallel=")) {
+            return -1;
+        }
+        try {
+            int parallelism = Integer.parseInt(option.substring("--parallel=".length()));
+            return parallelism >= 1 ? parallelism : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    // Independent infix expressions, one per line; same output format as evaluate.
+    static long runParallel(BufferedReader reader, Writer writer, int parallelism) throws IOException {
+        return runParallel(reader, writer, parallelism, PARALLEL_BLOCK);
+    }
+
+    static long runParallel(BufferedReader reader, Writer writer, int parallelism, int blockSize) throws IOException {
+        List<String> expressions = new ArrayList<>(blockSize);
+        double[] resultRe = new double[blockSize];
+        double[] resultIm = new double[blockSize];
+        double[] undefined = new double[VariableManager.SLOTS];
+        Arrays.fill(undefined, Double.NaN);
+        double[] imaginary = new double[VariableManager.SLOTS];
+        long count = 0;
+        try (ParallelBatchEvaluator evaluator = new ParallelBatchEvaluator(parallelism)) {
+            boolean more = true;
+            while (more) {
+                expressions.clear();
+                String input;
+                while (expressions.size() < blockSize && (input = reader.readLine()) != null) {
+                    if (!input.isBlank()) {
+                        expressions.add(input);
+                    }
+                }
+                more = expressions.size() == blockSize;
+                CalculatorEngine.Status[] statuses = evaluator.evaluate(expressions, undefined, imaginary, resultRe, resultIm);
+                for (int i = 0; i < statuses.length; i++) {
+                    if (statuses[i] != CalculatorEngine.Status.OK) {
+                        writer.append("Error: ").append(statuses[i].toString()).append('\n');
+                    } else {
+                        writer.append(String.valueOf(resultRe[i])).append(" + ").append(String.valueOf(resultIm[i])).append("i\n");
+                    }
+                }
+                count += statuses.length;
+            }
+        }
+        writer.flush();
+        return count;
+    }
+
+    // Result line for one input: the top of the stack ("re + imi"), "empty", or "Error: <status>".
+    CharSequence evaluate(String input) {
+        line.setLength(0);
+        return appendResult(line, engine.enter(input), engine);
+    }
+
+    // Shared with CalculatorServer.
+    static StringBuilder appendResult(StringBuilder line, CalculatorEngine.Status status, CalculatorEngine engine) {
+        if (status != CalculatorEngine.Status.OK) {
+            return line.append("Error: ").append(status);
+        }
+        if (engine.stackSize() == 0) {
+            return line.append("empty");
+        }
+        if (engine.getPrecision() > 0) {
+            return line.append(engine.peekExact(0));
+        }
+        return line.append(engine.peekReal(0)).append(" + ").append(engine.peekImaginary(0)).append('i');
+    }
+}
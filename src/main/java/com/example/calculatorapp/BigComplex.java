@@ -0,0 +1,146 @@
+package com.example.calculatorapp;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+
+// Numero complesso a precisione arbitraria per la modalita' ad alta precisione (PrecisionBackend):
+// parte reale e immaginaria sono BigDecimal e ogni operazione arrotonda il risultato al
+// MathContext ricevuto. Prodotti e somme intermedie di * e / sono esatti, quindi il risultato ha
+// un solo arrotondamento; sqrt lavora con GUARD_DIGITS cifre in piu'. Con parti immaginarie
+// nulle le operazioni fanno solo l'aritmetica reale.
+// I MathContext sono immutabili e vengono creati una volta per precisione (context()), non a
+// ogni operazione. Immutabile; equals e hashCode sono quelli di BigDecimal (2.0 e 2.00 sono
+// diversi), come chiave di cache basta.
+public final class BigComplex {
+    public static final BigComplex ZERO = new BigComplex(BigDecimal.ZERO, BigDecimal.ZERO);
+    public static final int MAX_PRECISION = 1000;
+    static final int GUARD_DIGITS = 5;
+
+    private static final BigDecimal TWO = BigDecimal.valueOf(2);
+    private static final MathContext[] CONTEXTS = new MathContext[MAX_PRECISION + GUARD_DIGITS + 1];
+
+    private final BigDecimal real;
+    private final BigDecimal imaginary;
+
+    public BigComplex(BigDecimal real, BigDecimal imaginary) {
+        this.real = real;
+        this.imaginary = imaginary;
+    }
+
+    // The shortest decimal that rounds to the double, so 0.1 becomes 0.1. Values must be finite.
+    public static BigComplex valueOf(double real, double imaginary) {
+        return new BigComplex(BigDecimal.valueOf(real), BigDecimal.valueOf(imaginary));
+    }
+
+    // Shared HALF_EVEN context with the given number of significant digits (1 to MAX_PRECISION
+    // plus the guard digits). Racing threads may create the same context twice, which is harmless.
+    public static MathContext context(int digits) {
+        MathContext context = CONTEXTS[digits];
+        if (context == null) {
+            context = new MathContext(digits, RoundingMode.HALF_EVEN);
+            CONTEXTS[digits] = context;
+        }
+        return context;
+    }
+
+    public BigDecimal real() {
+        return real;
+    }
+
+    public BigDecimal imaginary() {
+        return imaginary;
+    }
+
+    public boolean isZero() {
+        return real.signum() == 0 && imaginary.signum() == 0;
+    }
+
+    public boolean isReal() {
+        return imaginary.signum() == 0;
+    }
+
+    public BigComplex add(BigComplex other, MathContext context) {
+        return new BigComplex(real.add(other.real, context), imaginary.add(other.imaginary, context));
+    }
+
+    public BigComplex subtract(BigComplex other, MathContext context) {
+        return new BigComplex(real.subtract(other.real, context), imaginary.subtract(other.imaginary, context));
+    }
+
+    public BigComplex multiply(BigComplex other, MathContext context) {
+        if (isReal() && other.isReal()) {
+            return new BigComplex(real.multiply(other.real, context), BigDecimal.ZERO);
+        }
+        return new BigComplex(
+                real.multiply(other.real).subtract(imaginary.multiply(other.imaginary), context),
+                real.multiply(other.imaginary).add(imaginary.multiply(other.real), context));
+    }
+
+    // The caller checks other.isZero() first.
+    public BigComplex divide(BigComplex other, MathContext context) {
+        if (other.isReal()) {
+            return new BigComplex(real.divide(other.real, context),
+                    isReal() ? BigDecimal.ZERO : imaginary.divide(other.real, context));
+        }
+        BigDecimal denominator = other.real.multiply(other.real).add(other.imaginary.multiply(other.imaginary));
+        return new BigComplex(
+                real.multiply(other.real).add(imaginary.multiply(other.imaginary)).divide(denominator, context),
+                imaginary.multiply(other.real).subtract(real.multiply(other.imaginary)).divide(denominator, context));
+    }
+
+    public BigComplex negate() {
+        return new BigComplex(real.negate(), imaginary.negate());
+    }
+
+    // Principal square root, the same branch as ComplexStack.sqrt().
+    public BigComplex sqrt(MathContext context) {
+        if (isZero()) {
+            return ZERO;
+        }
+        if (isReal()) {
+            return real.signum() > 0
+                    ? new BigComplex(real.sqrt(context), BigDecimal.ZERO)
+                    : new BigComplex(BigDecimal.ZERO, real.negate().sqrt(context));
+        }
+        MathContext guard = context(context.getPrecision() + GUARD_DIGITS);
+        BigDecimal modulus = real.multiply(real).add(imaginary.multiply(imaginary)).sqrt(guard);
+        BigDecimal t = real.abs().add(modulus).divide(TWO, guard).sqrt(guard);
+        BigDecimal other = imaginary.abs().divide(t.multiply(TWO), context);
+        if (real.signum() >= 0) {
+            return new BigComplex(t.round(context), imaginary.signum() < 0 ? other.negate() : other);
+        }
+        return new BigComplex(other, imaginary.signum() < 0 ? t.negate().round(context) : t.round(context));
+    }
+
+    public BigComplex round(MathContext context) {
+        return new BigComplex(real.round(context), imaginary.round(context));
+    }
+
+    public ComplexNumber toComplexNumber() {
+        return new ComplexNumber(real.doubleValue(), imaginary.doubleValue());
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof BigComplex)) {
+            return false;
+        }
+        BigComplex other = (BigComplex) o;
+        return real.equals(other.real) && imaginary.equals(other.imaginary);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * real.hashCode() + imaginary.hashCode();
+    }
+
+    // Same layout as ComplexNumber, with every digit.
+    @Override
+    public String toString() {
+        return real + " + " + imaginary + "i";
+    }
+}
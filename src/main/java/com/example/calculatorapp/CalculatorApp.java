@@ -11,26 +11,35 @@ import javafx.scene.input.KeyCode;
 import javafx.scene.input.KeyEvent;
 import javafx.scene.layout.GridPane;
 import javafx.stage.Stage;
-import org.apache.commons.math3.complex.Complex;
 
 import javax.swing.*;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.*;
-import java.util.function.BinaryOperator;
-import java.util.function.UnaryOperator;
 
 //Il codice inizia con le dichiarazioni del package e le importazioni necessarie per librerie e classi esterne
 // come JavaFX e Apache Commons Math.
 //Questa classe rappresenta l'applicazione di calcolatrice.
 //Override del metodo start che inizializza l'interfaccia utente della calcolatrice utilizzando JavaFX.
 //Gestione dell'input dell'utente tramite tastiera o pulsanti dell'interfaccia.
-public class CalculatorApp extends Application {
+//Lo stato della calcolatrice (stack, storico, variabili) e' nel CalculatorEngine:
+// questa classe e' solo la vista, registrata come CalculatorListener.
+//Tutti i campi (compreso inputBuffer) sono usati solo dall'FX Application Thread.
+public class CalculatorApp extends Application implements CalculatorListener {
+    // Variabili e macro vengono salvate qui alla chiusura e ricaricate all'avvio.
+    static final Path STATE_FILE = Path.of(System.getProperty("user.home"), ".calculatorapp", "state.bin");
+    // Giornale degli input e snapshot della sessione, per riprendere il calcolo dopo un crash.
+    static final Path JOURNAL_DIRECTORY = Path.of(System.getProperty("user.home"), ".calculatorapp", "journal");
+
+    private final CalculatorEngine engine = new CalculatorEngine();
     private StringBuilder inputBuffer = new StringBuilder();
     private TextArea displayArea;
     private ListView<String> stackDisplay;
-    private Deque<ComplexNumber> stack = new ArrayDeque<>();
     private ListView<String> resultDisplay;
-    private Deque<ComplexNumber> lastTwelveStackElements = new LinkedList<>();
-    private static final int MAX_STACK_SIZE = 12;
+    private final ComplexParser complexParser = new ComplexParser();
+    private final HistoryViewUpdater historyView = new HistoryViewUpdater(engine.getHistory().capacity());
+    private SessionJournal journal;
 
     public static void main(String[] args) {
         launch(args);
@@ -47,30 +56,57 @@ public class CalculatorApp extends Application {
 
         stackDisplay = createStackDisplay();
         gridPane.add(stackDisplay, 0, 1, 4, 1);
-
+        historyView.attach(stackDisplay);
+        // registered here and not in the constructor, so 'this' does not escape half-built
+        engine.addListener(this);
+        loadState();
+        openJournal();
+        updateStackDisplay();
 
         primaryStage.setScene(scene);
         primaryStage.show();
     }
 
-    void handleUserInput(String userInput) {
+    @Override
+    public void stop() {
         try {
-            if (isValidComplexNumber(userInput)) {
-                ComplexNumber parsedNumber = parseComplexNumber(userInput);
-                stack.push(parseComplexNumber(userInput));
-                lastTwelveStackElements.addFirst(parsedNumber);
-                if (lastTwelveStackElements.size() > 12) {
-                    lastTwelveStackElements.removeLast();
-                }
-                updateStackDisplay();
-            } else {
-                performOperation(userInput);
+            StateFile.write(engine, STATE_FILE);
+        } catch (IOException e) {
+            System.err.println("Could not save " + STATE_FILE + ": " + e.getMessage());
+        }
+        if (journal != null) {
+            try {
+                journal.close();
+            } catch (IOException e) {
+                System.err.println("Could not close journal in " + JOURNAL_DIRECTORY + ": " + e.getMessage());
             }
-        } catch (NumberFormatException e) {
-            displayArea.setText("Invalid input");
         }
     }
 
+    private void loadState() {
+        if (!Files.exists(STATE_FILE)) {
+            return;
+        }
+        try {
+            StateFile.read(STATE_FILE, engine);
+        } catch (IOException e) {
+            display("Could not load saved variables: " + e.getMessage());
+        }
+    }
+
+    // Il giornale riesegue gli input dell'ultima sessione; senza giornale la calcolatrice funziona comunque.
+    private void openJournal() {
+        try {
+            journal = SessionJournal.open(JOURNAL_DIRECTORY, engine);
+        } catch (IOException e) {
+            display("Could not restore the last session: " + e.getMessage());
+        }
+    }
+
+    void handleUserInput(String userInput) {
+        engine.enter(userInput);
+    }
+
     private GridPane createGridPane() {
         GridPane gridPane = new GridPane();
         gridPane.setStyle("-fx-background-color: pink;");
@@ -82,11 +118,6 @@ public class CalculatorApp extends Application {
         displayArea.setEditable(false);
         displayArea.setPrefRowCount(2);
         gridPane.add(displayArea, 0, 0, 4, 1);
-        ListView<String> stackDisplay = createStackDisplay();
-        gridPane.getChildren().add(stackDisplay);
-        stackDisplay = createStackDisplay();
-        gridPane.add(stackDisplay, 0, 1, 4, 1);
-
 
         String[][] buttonLabels = {{"7", "8", "9", "/"},
                 {"4", "5", "6", "*"},
@@ -101,7 +132,7 @@ public class CalculatorApp extends Application {
                 {"m", "n", "o", "p"},
                 {"q", "r", "s", "t"},
                 {"u", "v", "w", "x"},
-                {"y", "z", "", ""}
+                {"y", "z", "save", "restore"}
         };
 
         for (int i = 0; i < buttonLabels.length; i++) {
@@ -124,7 +155,7 @@ public class CalculatorApp extends Application {
         switch (buttonValue) {
             case "=":
                 double result = calculate(inputBuffer.toString());
-                displayArea.setText(String.valueOf(result));
+                display(String.valueOf(result));
                 inputBuffer = new StringBuilder();
                 break;
             case "C":
@@ -155,6 +186,10 @@ public class CalculatorApp extends Application {
             case "over":
                 overOperands();
                 break;
+            case "save":
+            case "restore":
+                performOperation(buttonValue);
+                break;
             default:
                 inputBuffer.append(buttonValue);
                 displayArea.appendText(buttonValue);
@@ -176,148 +211,63 @@ public class CalculatorApp extends Application {
     //Vengono eseguite operazioni matematiche sui numeri complessi e gestite eventuali
     // eccezioni di input non valido.
     void performOperation(String operation) {
-        ComplexNumber result = null;
-        switch (operation) {
-            case "+":
-                performBinaryOperation(Complex::add);
-                break;
-            case "-":
-                performBinaryOperation(Complex::subtract);
-                break;
-            case "*":
-                performBinaryOperation(Complex::multiply);
-                break;
-            case "/":
-                performBinaryOperation(Complex::divide);
-                break;
-            case "sqrt":
-                performUnaryOperation(Complex::sqrt);
-                break;
-            case "+-":
-                invertSign();
-                break;
+        engine.performOperation(operation);
+    }
+    //I metodi performOperation e calculateResult eseguono operazioni come
+    // addizione, sottrazione, moltiplicazione, divisione e altre operazioni matematiche su numeri complessi.
+    //Gestione della pila degli operandi (stack) e aggiornamento della visualizzazione della pila.
 
-            default:
-                displayArea.setText("Unknown operation");
-                return;
+    ComplexNumber calculateResult(String operation) {
+        if (engine.performOperation(operation) != CalculatorEngine.Status.OK || engine.stackSize() == 0) {
+            return null;
         }
-        //I metodi performOperation e calculateResult eseguono operazioni come
-        // addizione, sottrazione, moltiplicazione, divisione e altre operazioni matematiche su numeri complessi.
-        //Gestione della pila degli operandi (stack) e aggiornamento della visualizzazione della pila.
-
+        return engine.peek(0);
+    }
 
-        result = calculateResult(operation);
-        if (result != null) {
-            lastTwelveStackElements.addFirst(result);
-            if (lastTwelveStackElements.size() > 12) {
-                lastTwelveStackElements.removeLast();
-            }
-            updateStackDisplay();
-            updateResultDisplay();
-        }
+    // La vista applica solo il nuovo valore, senza ricostruire la lista
+    @Override
+    public void historyAppended(ComplexNumber value) {
+        historyView.append(value);
     }
 
-    ComplexNumber calculateResult(String operation) {
-        ComplexNumber result = null;
-        if (!stack.isEmpty()) {
-            ComplexNumber num2 = stack.pop();
-            ComplexNumber num1 = stack.isEmpty() ? (ComplexNumber) ComplexNumber.ZERO : stack.pop();
-
-            switch (operation) {
-                case "+":
-                    result = num1.add(num2);
-                    break;
-                case "-":
-                    result = num1.subtract(num2);
-                    break;
-                case "*":
-                    result = num1.multiply(num2);
-                    break;
-                case "/":
-                    result = num1.divide(num2);
-                    break;
-                case "sqrt":
-                    result = (ComplexNumber) num2.sqrt();
-                    break;
-                case "+-":
-                    result = (ComplexNumber) num2.multiply(-1);
-                    break;
-                default:
-                    displayArea.setText("Unknown operation");
-                    break;
-            }
+    @Override
+    public void errorOccurred(CalculatorEngine.Status status, String input) {
+        display(status.getMessage());
+    }
 
-            if (result != null) {
-                stack.push(result);
-                lastTwelveStackElements.addFirst(result);
-                if (lastTwelveStackElements.size() > 12) {
-                    lastTwelveStackElements.removeLast();
-                }
-                updateStackDisplay();
-                updateResultDisplay();
-            } else {
-                displayArea.setText("Unknown operation");
-            }
-        } else {
-            displayArea.setText("Not enough operands");
+    // Scrive sul display, se l'interfaccia e' presente.
+    private void display(String text) {
+        if (displayArea != null) {
+            displayArea.setText(text);
         }
-        return result;
     }
 
+    // Ricostruisce l'intera lista dallo storico dell'engine; gli aggiornamenti normali passano da historyView
     void updateStackDisplay() {
-        if (_stackDisplay != null) {
-            _stackDisplay.getItems().clear(); // Pulisci la visualizzazione dello stack
-            for (ComplexNumber number : lastTwelveStackElements) {
-                _stackDisplay.getItems().add(number.toString()); // Aggiungi i numeri complessi allo stack display
+        if (stackDisplay != null) {
+            historyView.discardPending();
+            stackDisplay.getItems().clear(); // Pulisci la visualizzazione dello stack
+            for (ComplexNumber number : engine.getHistory()) {
+                stackDisplay.getItems().add(number.toString()); // Aggiungi i numeri complessi allo stack display
             }
         }
     }
 
 
     boolean isValidComplexNumber(String input) {
-        // Implementa la logica per verificare se l'input è un numero complesso valido
-        // Ritorna true se è un numero complesso valido, altrimenti false
-        String complexNumberPattern = "^[-+]?[0-9]*\\.?[0-9]+[-+][0-9]*\\.?[0-9]*[ij]$";
-        return input.matches(complexNumberPattern);
+        // Ritorna true se l'input e' un numero complesso valido (reale puro, immaginario puro o a + bj)
+        return complexParser.parse(input);
     }
 
     ComplexNumber parseComplexNumber(String input) {
-        // Verifica preliminare se l'input è valido come numero complesso
-        if (!isValidComplexNumber(input)) {
-            // Restituisci un numero complesso nullo o gestisci l'errore a seconda delle necessità
+        // Restituisce null se l'input non e' un numero complesso valido
+        if (!complexParser.parse(input)) {
             return null;
         }
-
-        // Rimuovi spazi bianchi e caratteri non numerici dalla stringa
-        String sanitizedInput = input.replaceAll("\\s", "").replaceAll("i", "j");
-
-        // Dividi la stringa in parte reale e immaginaria
-        String[] parts = sanitizedInput.split("[+|-]");
-
-        // Gestisci il segno del numero complesso
-        double realPart;
-        double imaginaryPart;
-
-        if (sanitizedInput.startsWith("-")) {
-            realPart = Double.parseDouble(parts[1]);
-            imaginaryPart = sanitizedInput.contains("-") ? -Double.parseDouble(parts[2].replace("j", "")) : Double.parseDouble(parts[2].replace("j", ""));
-        } else {
-            realPart = Double.parseDouble(parts[0]);
-            imaginaryPart = sanitizedInput.contains("-") ? -Double.parseDouble(parts[1].replace("j", "")) : Double.parseDouble(parts[1].replace("j", ""));
-        }
-
-        // Restituisci il numero complesso
-        return new ComplexNumber(realPart, imaginaryPart);
+        return new ComplexNumber(complexParser.real(), complexParser.imaginary());
     }
 
 
-    private void updateResultDisplay() {
-        resultDisplay.getItems().clear();
-        for (ComplexNumber result : lastTwelveStackElements) {
-            resultDisplay.getItems().add(result.toString());
-        }
-    }
-
     private ListView<String> createResultDisplay() {
         ListView<String> resultDisplay = new ListView<>();
         resultDisplay.setPrefHeight(50);
@@ -328,122 +278,57 @@ public class CalculatorApp extends Application {
         return resultDisplay;
     }
 
-    private void performBinaryOperation(BinaryOperator<Complex> operator) {
-        if (stack.size() >= 2) {
-            ComplexNumber num2 = stack.pop();
-            ComplexNumber num1 = stack.pop();
-            stack.push((ComplexNumber) operator.apply(num1, num2));
-        } else {
-            displayArea.setText("Not enough operands");
-        }
-    }
-
-    private void performUnaryOperation(UnaryOperator<Complex> operator) {
-        if (!stack.isEmpty()) {
-            ComplexNumber num = stack.pop();
-            stack.push((ComplexNumber) operator.apply(num));
-        } else {
-            displayArea.setText("Not enough operands");
-        }
-    }
-
-
-    private Complex _evaluatePostfix_(List<String> postfix) {
-        Stack<Complex> stack = new Stack<>();
-
-        for (String token : postfix) {
-            if (Character.isDigit(token.charAt(0))) {
-                stack.push(parseComplexNumber(token));
-            } else if (token.matches("[a-z]")) {
-                // Handle variable operations if needed
-            } else {
-                if (token.equals("+") || token.equals("-") || token.equals("*") || token.equals("/")) {
-                    if (stack.size() >= 2) {
-                        Complex operand2 = stack.pop();
-                        Complex operand1 = stack.pop();
-
-                        switch (token) {
-                            case "+":
-                                stack.push(operand1.add(operand2));
-                                break;
-                            case "-":
-                                stack.push(operand1.subtract(operand2));
-                                break;
-                            case "*":
-                                stack.push(operand1.multiply(operand2));
-                                break;
-                            case "/":
-                                stack.push(operand1.divide(operand2));
-                                break;
-                        }
-                    } else {
-                        // Handle insufficient operands error
-                    }
-                }
-            }
-        }
-
-        if (!stack.isEmpty()) {
-            return stack.pop();
-        } else {
-            // Handle empty stack error
-            return null;
-        }
-    }
-
-
     // ... altri metodi rimangono invariati
 
 
     List<String> getStackElements() {
-        List<String> tokens = Arrays.asList(inputBuffer.toString().split("(?<=[-+*/()\\s])|(?=[-+*/()\\s])"));
         List<String> elements = new ArrayList<>();
-        for (String token : tokens) {
-            if (!token.isEmpty()) {
-                elements.add(token);
-            }
+        Lexer lexer = new Lexer(inputBuffer);
+        while (lexer.next() != Lexer.TokenType.END) {
+            elements.add(lexer.text());
         }
         return elements;
     }
 
 
     private void compareValues(String comparisonType) {
-        try {
-            List<String> tokens = Arrays.asList(inputBuffer.toString().split("(?<=[-+/()])|(?=[-+/()])"));
-            if (tokens.size() == 3 && Character.isDigit(tokens.get(0).charAt(0)) && tokens.get(1).equals(comparisonType) && Character.isDigit(tokens.get(2).charAt(0))) {
-                double operand1 = Double.parseDouble(tokens.get(0));
-                double operand2 = Double.parseDouble(tokens.get(2));
-                boolean result;
-                switch (comparisonType) {
-                    case "less":
-                        result = operand1 < operand2;
-                        break;
-                    case "greater":
-                        result = operand1 > operand2;
-                        break;
-                    default:
-                        result = false;
+        // Atteso: <numero> less|greater <numero>
+        Lexer lexer = new Lexer(inputBuffer);
+        if (lexer.next() == Lexer.TokenType.NUMBER) {
+            double operand1 = lexer.value();
+            if (lexer.next() == Lexer.TokenType.COMMAND && lexer.textEquals(comparisonType)
+                    && lexer.next() == Lexer.TokenType.NUMBER) {
+                double operand2 = lexer.value();
+                if (lexer.next() == Lexer.TokenType.END) {
+                    boolean result;
+                    switch (comparisonType) {
+                        case "less":
+                            result = operand1 < operand2;
+                            break;
+                        case "greater":
+                            result = operand1 > operand2;
+                            break;
+                        default:
+                            result = false;
+                    }
+                    display(String.valueOf(result));
+                    inputBuffer = new StringBuilder(String.valueOf(result));
+                    return;
                 }
-                displayArea.setText(String.valueOf(result));
-                inputBuffer = new StringBuilder(String.valueOf(result));
-            } else {
-                displayArea.setText("Error");
-                inputBuffer = new StringBuilder();
             }
-        } catch (NumberFormatException e) {
-            displayArea.setText("Error");
-            inputBuffer = new StringBuilder();
         }
+        display("Error");
+        inputBuffer = new StringBuilder();
     }
 
     void calculateSquareRoot() {
         try {
             double operand = Double.parseDouble(inputBuffer.toString());
             double result = Math.sqrt(operand);
-            displayArea.setText(String.valueOf(result));
+            display(String.valueOf(result));
             inputBuffer = new StringBuilder(String.valueOf(result));
         } catch (NumberFormatException e) {
-            displayArea.setText("Error");
+            display("Error");
             inputBuffer = new StringBuilder();
         }
     }
@@ -452,138 +337,119 @@ public class CalculatorApp extends Application {
         try {
             double operand = Double.parseDouble(inputBuffer.toString());
             double result = -operand;
-            displayArea.setText(String.valueOf(result));
+            display(String.valueOf(result));
             inputBuffer = new StringBuilder(String.valueOf(result));
 
         } catch (NumberFormatException e) {
-            displayArea.setText("Error");
+            display("Error");
             inputBuffer = new StringBuilder();
         }
     }
 
 
     void swapOperands() {
-        try {
-            List<String> tokens = Arrays.asList(inputBuffer.toString().split("(?<=[-+*/()])|(?=[-+*/()])"));
-            if (tokens.size() == 3 && Character.isDigit(tokens.get(0).charAt(0)) && Character.isDigit(tokens.get(2).charAt(0))) {
-                Collections.swap(tokens, 0, 2);
-                displayArea.setText(String.join("", tokens));
-                inputBuffer = new StringBuilder(String.join("", tokens));
-            } else {
-                displayArea.setText("Error");
-                inputBuffer = new StringBuilder();
+        // Atteso: <numero> <operatore> <numero>; gli operandi vengono scambiati
+        Lexer lexer = new Lexer(inputBuffer);
+        if (lexer.next() == Lexer.TokenType.NUMBER) {
+            int firstStart = lexer.start();
+            int firstEnd = lexer.end();
+            if (lexer.next() == Lexer.TokenType.OPERATOR) {
+                int operatorStart = lexer.start();
+                int operatorEnd = lexer.end();
+                if (lexer.next() == Lexer.TokenType.NUMBER) {
+                    int secondStart = lexer.start();
+                    int secondEnd = lexer.end();
+                    if (lexer.next() == Lexer.TokenType.END) {
+                        StringBuilder swapped = new StringBuilder(inputBuffer.length())
+                                .append(inputBuffer, secondStart, secondEnd)
+                                .append(inputBuffer, operatorStart, operatorEnd)
+                                .append(inputBuffer, firstStart, firstEnd);
+                        display(swapped.toString());
+                        inputBuffer = swapped;
+                        return;
+                    }
+                }
             }
-        } catch (NumberFormatException e) {
-            displayArea.setText("Error");
-            inputBuffer = new StringBuilder();
         }
+        display("Error");
+        inputBuffer = new StringBuilder();
     }
 
     void dropOperand() {
-        if ((stack.size() >= 1)) {
-            stack.pop();
-            updateStackDisplay();
-        } else {
-            displayArea.setText("Error: Not enough operands");
-        }
+        engine.performOperation("drop");
     }
 
     void duplicateOperand() {
-        if ((stack.size() >= 1)) {
-            ComplexNumber topElement = stack.peek();
-            stack.push(new ComplexNumber(topElement.getReal(), topElement.getImaginary()));
-            updateStackDisplay();
-        } else {
-            displayArea.setText("Error: Not enough operands");
-        }
+        engine.performOperation("dup");
     }
 
     public void overOperands() {
-        if (stack.size() >= 2) {
-            Iterator<ComplexNumber> iterator = stack.iterator();
-            ComplexNumber secondLast = null;
-            while (iterator.hasNext()) {
-                secondLast = iterator.next();
-            }
-            stack.push(new ComplexNumber(secondLast.getReal(), secondLast.getImaginary()));
-            updateStackDisplay();
-        } else {
-            displayArea.setText("Error: Not enough operands");
-        }
+        engine.performOperation("over");
     }
     //Metodi per il calcolo della radice quadrata, inversione del segno, manipolazione degli operandi nella
     // pila (swap, drop, dup, over), confronto di valori e conversione in notazione postfissa.
 
     public double calculate(String input) {
-        List<String> tokens = Arrays.asList(input.split("(?<=[-+*/()])|(?=[-+*/()])"));
-        List<String> postfix = convertToPostfix(tokens);
-        return evaluatePostfix(postfix);
+        return engine.calculate(input);
     }
 
+    // Shunting-yard sui token: lo stack degli operatori contiene gli indici dei token in un int[]
+    // preso dall'area di lavoro dell'engine, senza Stack<String> (sincronizzato) ne' boxing.
     List<String> convertToPostfix(List<String> tokens) {
-        List<String> postfix = new ArrayList<>();
-        Stack<String> operatorStack = new Stack<>();
-
-        Map<String, Integer> precedence = Map.of(
-                "+", 1,
-                "-", 1,
-                "*", 2,
-                "/", 2
-        );
-
-        for (String token : tokens) {
-            if (Character.isDigit(token.charAt(0)) || token.matches("[a-z]")) {
+        List<String> postfix = new ArrayList<>(tokens.size());
+        int[] operatorStack = engine.scratch().ints(tokens.size());
+        int operatorCount = 0;
+
+        for (int i = 0; i < tokens.size(); i++) {
+            String token = tokens.get(i);
+            if (Character.isDigit(token.charAt(0)) || isVariableName(token)) {
                 postfix.add(token);
             } else if (token.equals("(")) {
-                operatorStack.push(token);
+                operatorStack[operatorCount++] = i;
             } else if (token.equals(")")) {
-                while (!operatorStack.isEmpty() && !operatorStack.peek().equals("(")) {
-                    postfix.add(operatorStack.pop());
+                while (operatorCount > 0 && !tokens.get(operatorStack[operatorCount - 1]).equals("(")) {
+                    postfix.add(tokens.get(operatorStack[--operatorCount]));
+                }
+                if (operatorCount == 0) {
+                    throw new IllegalArgumentException("Mismatched parentheses");
                 }
-                operatorStack.pop(); // Remove "("
+                operatorCount--; // Remove "("
             } else {
-                while (!operatorStack.isEmpty() && precedence.getOrDefault(token, 0) <= precedence.getOrDefault(operatorStack.peek(), 0)) {
-                    postfix.add(operatorStack.pop());
+                while (operatorCount > 0 && precedence(token) <= precedence(tokens.get(operatorStack[operatorCount - 1]))) {
+                    postfix.add(tokens.get(operatorStack[--operatorCount]));
                 }
-                operatorStack.push(token);
+                operatorStack[operatorCount++] = i;
             }
         }
 
-        while (!operatorStack.isEmpty()) {
-            postfix.add(operatorStack.pop());
+        while (operatorCount > 0) {
+            postfix.add(tokens.get(operatorStack[--operatorCount]));
         }
 
         return postfix;
     }
 
-    double evaluatePostfix(List<String> postfix) {
-        Stack<Double> stack = new Stack<>();
+    private static boolean isVariableName(String token) {
+        return token.length() == 1 && token.charAt(0) >= 'a' && token.charAt(0) <= 'z';
+    }
 
-        for (String token : postfix) {
-            if (Character.isDigit(token.charAt(0))) {
-                stack.push(Double.parseDouble(token));
-            } else if (token.matches("[a-z]")) {
-            } else {
-                double operand2 = stack.pop();
-                double operand1 = stack.pop();
-                switch (token) {
-                    case "+":
-                        stack.push(operand1 + operand2);
-                        break;
-                    case "-":
-                        stack.push(operand1 - operand2);
-                        break;
-                    case "*":
-                        stack.push(operand1 * operand2);
-                        break;
-                    case "/":
-                        stack.push(operand1 / operand2);
-                        break;
-                }
-            }
+    private static int precedence(String operator) {
+        switch (operator) {
+            case "+":
+            case "-":
+                return 1;
+            case "*":
+            case "/":
+                return 2;
+            default:
+                return 0;
         }
+    }
 
-        return stack.pop();
+    // Valuta i token postfissi con lo stesso valutatore delle espressioni compilate:
+    // operandi complessi e variabili della sessione; restituisce la parte reale del risultato.
+    double evaluatePostfix(List<String> postfix) {
+        return engine.calculate(ExpressionCompiler.compilePostfix(postfix));
     }
 
     private ListView<String> createStackDisplay() {
@@ -604,71 +470,6 @@ public class CalculatorApp extends Application {
         displayArea.setStyle("-fx-background-color: white; -fx-text-fill: black;");
     }
 
-    private Map<Character, Double> variables = new HashMap<>();
-
-    private void handleVariableOperation(String token) {
-        char variableName = token.charAt(0);
-        switch (token.charAt(1)) {
-            case '>':
-                // ">x": Take the top element from the stack and save it into the variable "x"
-                if (!variables.containsKey(variableName)) {
-                    if (!inputBuffer.toString().isEmpty()) {
-                        double value = Double.parseDouble(inputBuffer.toString());
-                        variables.put(variableName, value);
-                        displayArea.setText(variables.toString());
-                    } else {
-                        displayArea.setText("Error: No value on stack to save into variable " + variableName);
-                    }
-                } else {
-                    displayArea.setText("Error: Variable " + variableName + " already exists");
-                }
-                inputBuffer = new StringBuilder();
-                break;
-            case '<':
-                // "<x": Push the value of the variable "x" onto the stack
-                if (variables.containsKey(variableName)) {
-                    double value = variables.get(variableName);
-                    inputBuffer.append(value);
-                    displayArea.setText(inputBuffer.toString());
-                } else {
-                    displayArea.setText("Error: Variable " + variableName + " doesn't exist");
-                }
-                break;
-            case '+':
-                // "+x": Take the top element from the stack and add it to the value of the variable "x"
-                if (variables.containsKey(variableName)) {
-                    if (!inputBuffer.toString().isEmpty()) {
-                        double value = Double.parseDouble(inputBuffer.toString());
-                        double currentValue = variables.get(variableName);
-                        variables.put(variableName, currentValue + value);
-                        displayArea.setText(variables.toString());
-                    } else {
-                        displayArea.setText("Error: No value on stack to add to variable " + variableName);
-                    }
-                } else {
-                    displayArea.setText("Error: Variable " + variableName + " doesn't exist");
-                }
-                inputBuffer = new StringBuilder();
-                break;
-            case '-':
-                // "-x": Take the top element from the stack and subtract it from the value of the variable "x"
-                if (variables.containsKey(variableName)) {
-                    if (!inputBuffer.toString().isEmpty()) {
-                        double value = Double.parseDouble(inputBuffer.toString());
-                        double currentValue = variables.get(variableName);
-                        variables.put(variableName, currentValue - value);
-                        displayArea.setText(variables.toString());
-                    } else {
-                        displayArea.setText("Error: No value on stack to subtract from variable " + variableName);
-                    }
-                } else {
-                    displayArea.setText("Error: Variable " + variableName + " doesn't exist");
-                }
-                inputBuffer = new StringBuilder();
-                break;
-        }
-    }
-
     private void handleStackOperation(String operation) {
         switch (operation) {
             case "clear":
@@ -680,9 +481,9 @@ public class CalculatorApp extends Application {
                 // Remove the last element
                 if (inputBuffer.length() > 0) {
                     inputBuffer.deleteCharAt(inputBuffer.length() - 1);
-                    displayArea.setText(inputBuffer.toString());
+                    display(inputBuffer.toString());
                 } else {
-                    displayArea.setText("Error: Stack is empty");
+                    display("Error: Stack is empty");
                 }
                 break;
             case "dup":
@@ -690,9 +491,9 @@ public class CalculatorApp extends Application {
                 if (inputBuffer.length() > 0) {
                     char lastChar = inputBuffer.charAt(inputBuffer.length() - 1);
                     inputBuffer.append(lastChar);
-                    displayArea.setText(inputBuffer.toString());
+                    display(inputBuffer.toString());
                 } else {
-                    displayArea.setText("Error: Stack is empty");
+                    display("Error: Stack is empty");
                 }
                 break;
             case "swap":
@@ -702,9 +503,9 @@ public class CalculatorApp extends Application {
                     char secondLastChar = inputBuffer.charAt(inputBuffer.length() - 2);
                     inputBuffer.setCharAt(inputBuffer.length() - 1, secondLastChar);
                     inputBuffer.setCharAt(inputBuffer.length() - 2, lastChar);
-                    displayArea.setText(inputBuffer.toString());
+                    display(inputBuffer.toString());
                 } else {
-                    displayArea.setText("Error: Not enough elements in the stack");
+                    display("Error: Not enough elements in the stack");
                 }
                 break;
             case "over":
@@ -712,9 +513,9 @@ public class CalculatorApp extends Application {
                 if (inputBuffer.length() >= 2) {
                     char secondLastChar = inputBuffer.charAt(inputBuffer.length() - 2);
                     inputBuffer.append(secondLastChar);
-                    displayArea.setText(inputBuffer.toString());
+                    display(inputBuffer.toString());
                 } else {
-                    displayArea.setText("Error: Not enough elements in the stack");
+                    display("Error: Not enough elements in the stack");
                 }
                 break;
             default:
@@ -726,9 +527,6 @@ public class CalculatorApp extends Application {
     }
 
 
-    private ListView<String> _stackDisplay;
-
-
     private TextArea createDisplayArea() {
         TextArea displayArea = new TextArea();
         displayArea.setEditable(false);
@@ -747,5 +545,9 @@ public class CalculatorApp extends Application {
         return null;
     }
 
+    CalculatorEngine getEngine() {
+        return engine;
+    }
+
 }
 
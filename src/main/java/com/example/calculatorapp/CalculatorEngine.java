@@ -0,0 +1,727 @@
+package com.example.calculatorapp;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Nucleo di calcolo della calcolatrice, senza alcuna dipendenza da JavaFX.
+// Contiene tutto lo stato di una sessione: stack degli operandi, storico degli ultimi risultati
+// e variabili. Ogni input viene interpretato come in handleUserInput:
+//  - un numero complesso (3+4j, 10j, -2.5) viene inserito nello stack;
+//  - un'operazione (+ - * / sqrt +- swap drop dup over clear, <x >x +x -x, save restore) viene eseguita;
+//  - "nome = corpo" definisce una macro (vedi Macro), che poi si esegue scrivendone il nome, tutta o
+//    niente come le righe qui sotto;
+//  - altrimenti l'input viene valutato come espressione infissa e il risultato inserito nello stack;
+//  - una riga di piu' parole che non e' un'espressione infissa ("3+4j 1-2j * dup +") viene eseguita
+//    come programma RPN (enterLine): tutto o niente, con una sola notifica alla fine;
+//  - "precision N" passa all'aritmetica con N cifre significative (PrecisionBackend, BigComplex),
+//    "precision 0" torna ai double. Gli input restano gli stessi; peekExact() da' tutte le cifre,
+//    peekReal()/peek() e lo storico un'approssimazione double. calculate() resta in double.
+// L'esito e' restituito come Status, senza eccezioni; le viste si registrano come CalculatorListener.
+// Un'istanza non e' thread-safe: per l'uso da piu' thread si passa da CalculatorSession.
+public class CalculatorEngine {
+
+    public enum Status {
+        OK("OK"),
+        INVALID_INPUT("Invalid input"),
+        UNKNOWN_OPERATION("Unknown operation"),
+        NOT_ENOUGH_OPERANDS("Not enough operands"),
+        DIVISION_BY_ZERO("Division by zero"),
+        UNDEFINED_VARIABLE("Undefined variable"),
+        NOTHING_TO_RESTORE("No saved variables"),
+        INVALID_DEFINITION("Invalid definition");
+
+        private final String message;
+
+        Status(String message) {
+            this.message = message;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+    }
+
+    public static final int DEFAULT_HISTORY_SIZE = 12;
+
+    private final ComplexStack stack = new ComplexStack();
+    private final HistoryRing history;
+    private final VariableManager variables = new VariableManager();
+    private final Map<String, Macro> macros = new HashMap<>();
+    private final ComplexParser complexParser = new ComplexParser();
+    private final List<CalculatorListener> listeners = new ArrayList<>();
+    private final double[] result = new double[2]; // reused by every evaluation
+    private final EvaluationScratch scratch = new EvaluationScratch(); // evaluation stacks, see calculate()
+    private final ExpressionCache expressionCache = new ExpressionCache(ExpressionCache.DEFAULT_CAPACITY);
+    private PrecisionBackend precise; // null: double arithmetic
+
+    public CalculatorEngine() {
+        this(DEFAULT_HISTORY_SIZE);
+    }
+
+    public CalculatorEngine(int historySize) {
+        history = new HistoryRing(historySize);
+    }
+
+    public void addListener(CalculatorListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(CalculatorListener listener) {
+        listeners.remove(listener);
+    }
+
+    // A complex literal, an operation or an infix expression.
+    public Status enter(String input) {
+        if (isPrecisionCommand(input)) {
+            return report(precisionCommand(input.trim()), input);
+        }
+        if (precise != null && input.indexOf('=') < 0) {
+            long version = variables.version();
+            return report(finishPrecise(precise.enter(input), version), input);
+        }
+        if (complexParser.parse(input)) {
+            return report(push(complexParser.real(), complexParser.imaginary()), input);
+        }
+        int equals = input.indexOf('=');
+        if (equals >= 0) {
+            return report(define(input.substring(0, equals).trim(), input.substring(equals + 1)), input);
+        }
+        Status status = apply(input.trim());
+        if (status == Status.UNKNOWN_OPERATION) {
+            status = pushExpression(input);
+        }
+        if (status == Status.INVALID_INPUT && isLine(input)) {
+            status = runLine(input);
+        }
+        return report(status, input);
+    }
+
+    // A whole line of RPN words, e.g. a pasted program. The line is compiled like a macro body and
+    // runs in one pass over the stack; the history gets only the final top of the stack and the
+    // listeners are notified once at the end. If a word fails (division by zero, undefined
+    // variable, restore without save) stack and variables go back to how they were before the line.
+    public Status enterLine(String line) {
+        if (precise != null) {
+            long version = variables.version();
+            return reportLine(finishPrecise(precise.runLine(line), version), line);
+        }
+        return reportLine(runLine(line), line);
+    }
+
+    static boolean isLine(String input) {
+        String trimmed = input.trim();
+        for (int i = 0; i < trimmed.length(); i++) {
+            if (Character.isWhitespace(trimmed.charAt(i))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private Status runLine(String line) {
+        Macro program;
+        try {
+            program = MacroCompiler.compileLine(line, macros);
+        } catch (IllegalArgumentException e) {
+            return Status.INVALID_INPUT;
+        }
+        return run(program);
+    }
+
+    // The operand count was checked once at compile time, so only division by zero and the
+    // variables can fail here. A failure leaves stack and variables as they were before, so an
+    // input either runs whole or not at all (SessionJournal records only the inputs that succeed).
+    // Only the final top of the stack goes to the history.
+    private Status run(Macro program) {
+        if (stack.size() < program.getRequiredDepth()) {
+            return Status.NOT_ENOUGH_OPERANDS;
+        }
+        // Entries below the operands are never touched, unless the program contains "clear".
+        int from = stack.size() - program.getRequiredDepth();
+        boolean writesVariables = false;
+        for (int instruction : program.code()) {
+            switch (Opcodes.opcode(instruction)) {
+                case Opcodes.CLEAR:
+                    from = 0;
+                    break;
+                case Opcodes.STORE:
+                case Opcodes.STORE_ADD:
+                case Opcodes.STORE_SUB:
+                case Opcodes.SAVE:
+                case Opcodes.RESTORE:
+                    writesVariables = true;
+                    break;
+                default:
+                    break;
+            }
+        }
+        stack.checkpoint(from);
+        if (writesVariables) {
+            variables.checkpoint();
+        }
+        long version = variables.version();
+        Status status = execute(program);
+        if (status == Status.OK) {
+            if (!stack.isEmpty()) {
+                record(stack.peekRe(), stack.peekIm());
+            }
+        } else {
+            stack.rollback();
+            if (writesVariables) {
+                variables.rollback();
+            }
+        }
+        fireStackChanged();
+        if (variables.version() != version) {
+            fireVariablesChanged();
+        }
+        return status;
+    }
+
+    // Only operations: anything else is UNKNOWN_OPERATION.
+    public Status performOperation(String operation) {
+        if (precise != null) {
+            long version = variables.version();
+            return report(finishPrecise(precise.apply(operation), version), operation);
+        }
+        return report(apply(operation), operation);
+    }
+
+    // Compiles and stores a macro; a later definition with the same name replaces it, but macros
+    // that already inlined the old one keep it.
+    public Status define(String name, String body) {
+        try {
+            macros.put(name, MacroCompiler.compile(name, body, macros));
+        } catch (IllegalArgumentException e) {
+            return Status.INVALID_DEFINITION;
+        }
+        return Status.OK;
+    }
+
+    // A decompiled macro with the operands it needs (StateFile.importText); the body may be empty.
+    Status define(String name, String body, int requiredDepth) {
+        try {
+            macros.put(name, MacroCompiler.compile(name, body, requiredDepth, macros));
+        } catch (IllegalArgumentException e) {
+            return Status.INVALID_DEFINITION;
+        }
+        return Status.OK;
+    }
+
+    public Status push(double real, double imaginary) {
+        if (precise != null) {
+            if (!Double.isFinite(real) || !Double.isFinite(imaginary)) {
+                return Status.INVALID_INPUT;
+            }
+            return finishPrecise(precise.push(BigComplex.valueOf(real, imaginary)), variables.version());
+        }
+        stack.push(real, imaginary);
+        record(real, imaginary);
+        fireStackChanged();
+        return Status.OK;
+    }
+
+    // Evaluates an infix expression on the current variables without touching the stack.
+    // Returns the real part of the result, NaN on malformed input, division by zero or undefined
+    // variables. Repeated expressions are served by the ExpressionCache.
+    public double calculate(String expression) {
+        if (calculate(expression, result) != Status.OK) {
+            return Double.NaN;
+        }
+        return result[0];
+    }
+
+    // Like calculate(String), with the reason of a failure: malformed input is INVALID_INPUT.
+    Status calculate(String expression, double[] result) {
+        try {
+            return expressionCache.evaluate(expression, variables, result, scratch);
+        } catch (IllegalArgumentException e) {
+            return Status.INVALID_INPUT;
+        }
+    }
+
+    public double calculate(CompiledExpression expression) {
+        if (expression.evaluate(variables, result, scratch) != Status.OK) {
+            return Double.NaN;
+        }
+        return result[0];
+    }
+
+    private Status apply(String operation) {
+        switch (operation) {
+            case "+":
+                return binary(Opcodes.ADD);
+            case "-":
+                return binary(Opcodes.SUB);
+            case "*":
+                return binary(Opcodes.MUL);
+            case "/":
+                return binary(Opcodes.DIV);
+            case "sqrt":
+            case "√":
+                if (stack.isEmpty()) {
+                    return Status.NOT_ENOUGH_OPERANDS;
+                }
+                stack.sqrt();
+                return result();
+            case "+-":
+            case "±":
+                if (stack.isEmpty()) {
+                    return Status.NOT_ENOUGH_OPERANDS;
+                }
+                stack.negate();
+                return result();
+            case "swap":
+                if (stack.size() < 2) {
+                    return Status.NOT_ENOUGH_OPERANDS;
+                }
+                stack.swap();
+                return stackOperation();
+            case "drop":
+                if (stack.isEmpty()) {
+                    return Status.NOT_ENOUGH_OPERANDS;
+                }
+                stack.drop();
+                return stackOperation();
+            case "dup":
+                if (stack.isEmpty()) {
+                    return Status.NOT_ENOUGH_OPERANDS;
+                }
+                stack.dup();
+                return stackOperation();
+            case "over":
+                if (stack.size() < 2) {
+                    return Status.NOT_ENOUGH_OPERANDS;
+                }
+                stack.over();
+                return stackOperation();
+            case "clear":
+                stack.clear();
+                return stackOperation();
+            case "save":
+                variables.saveAll();
+                return Status.OK;
+            case "restore":
+                if (!variables.restoreAll()) {
+                    return Status.NOTHING_TO_RESTORE;
+                }
+                fireVariablesChanged();
+                return Status.OK;
+            default:
+                if (isVariableCommand(operation)) {
+                    return variableOperation(operation.charAt(0), operation.charAt(1) - 'a');
+                }
+                Macro macro = macros.get(operation);
+                if (macro != null) {
+                    return run(macro);
+                }
+                return Status.UNKNOWN_OPERATION;
+        }
+    }
+
+    private Status binary(int opcode) {
+        if (stack.size() < 2) {
+            return Status.NOT_ENOUGH_OPERANDS;
+        }
+        switch (opcode) {
+            case Opcodes.ADD:
+                stack.add();
+                break;
+            case Opcodes.SUB:
+                stack.subtract();
+                break;
+            case Opcodes.MUL:
+                stack.multiply();
+                break;
+            default:
+                if (stack.re(0) == 0 && stack.im(0) == 0) {
+                    return Status.DIVISION_BY_ZERO;
+                }
+                stack.divide();
+                break;
+        }
+        return result();
+    }
+
+    private static boolean isVariableCommand(String operation) {
+        return operation.length() == 2 && "<>+-".indexOf(operation.charAt(0)) >= 0
+                && operation.charAt(1) >= 'a' && operation.charAt(1) <= 'z';
+    }
+
+    // ">x" salva la cima dello stack in x, "<x" inserisce x nello stack,
+    // "+x" e "-x" sommano/sottraggono la cima dello stack al valore di x.
+    private Status variableOperation(char command, int slot) {
+        if (command == '<') {
+            if (!variables.isDefined(slot)) {
+                return Status.UNDEFINED_VARIABLE;
+            }
+            return push(variables.re(slot), variables.im(slot));
+        }
+        if (stack.isEmpty()) {
+            return Status.NOT_ENOUGH_OPERANDS;
+        }
+        if (command != '>' && !variables.isDefined(slot)) {
+            return Status.UNDEFINED_VARIABLE;
+        }
+        double imaginary = stack.peekIm();
+        double real = stack.popRe();
+        switch (command) {
+            case '>':
+                variables.save(slot, real, imaginary);
+                break;
+            case '+':
+                variables.add(slot, real, imaginary);
+                break;
+            default:
+                variables.subtract(slot, real, imaginary);
+                break;
+        }
+        fireStackChanged();
+        fireVariablesChanged();
+        return Status.OK;
+    }
+
+    // Runs the instructions without notifying anyone; requiredDepth has already been checked.
+    private Status execute(Macro macro) {
+        double[] constantsRe = macro.constantsRe();
+        double[] constantsIm = macro.constantsIm();
+        Status status = Status.OK;
+        execution:
+        for (int instruction : macro.code()) {
+            int operand = Opcodes.operand(instruction);
+            switch (Opcodes.opcode(instruction)) {
+                case Opcodes.CONST:
+                    stack.push(constantsRe[operand], constantsIm[operand]);
+                    break;
+                case Opcodes.LOAD:
+                    if (!variables.isDefined(operand)) {
+                        status = Status.UNDEFINED_VARIABLE;
+                        break execution;
+                    }
+                    stack.push(variables.re(operand), variables.im(operand));
+                    break;
+                case Opcodes.ADD:
+                    stack.add();
+                    break;
+                case Opcodes.SUB:
+                    stack.subtract();
+                    break;
+                case Opcodes.MUL:
+                    stack.multiply();
+                    break;
+                case Opcodes.DIV:
+                    if (stack.re(0) == 0 && stack.im(0) == 0) {
+                        status = Status.DIVISION_BY_ZERO;
+                        break execution;
+                    }
+                    stack.divide();
+                    break;
+                case Opcodes.NEG:
+                    stack.negate();
+                    break;
+                case Opcodes.SQRT:
+                    stack.sqrt();
+                    break;
+                case Opcodes.SWAP:
+                    stack.swap();
+                    break;
+                case Opcodes.DUP:
+                    stack.dup();
+                    break;
+                case Opcodes.DROP:
+                    stack.drop();
+                    break;
+                case Opcodes.OVER:
+                    stack.over();
+                    break;
+                case Opcodes.CLEAR:
+                    stack.clear();
+                    break;
+                case Opcodes.STORE: {
+                    double imaginary = stack.peekIm();
+                    variables.save(operand, stack.popRe(), imaginary);
+                    break;
+                }
+                case Opcodes.STORE_ADD:
+                case Opcodes.STORE_SUB: {
+                    if (!variables.isDefined(operand)) {
+                        status = Status.UNDEFINED_VARIABLE;
+                        break execution;
+                    }
+                    double imaginary = stack.peekIm();
+                    double real = stack.popRe();
+                    if (Opcodes.opcode(instruction) == Opcodes.STORE_ADD) {
+                        variables.add(operand, real, imaginary);
+                    } else {
+                        variables.subtract(operand, real, imaginary);
+                    }
+                    break;
+                }
+                case Opcodes.SAVE:
+                    variables.saveAll();
+                    break;
+                case Opcodes.RESTORE:
+                    if (!variables.restoreAll()) {
+                        status = Status.NOTHING_TO_RESTORE;
+                        break execution;
+                    }
+                    break;
+                default:
+                    throw new IllegalStateException("Unknown opcode " + Opcodes.opcode(instruction));
+            }
+        }
+        return status;
+    }
+
+    // Significant digits of the arithmetic, 0 for double.
+    public int getPrecision() {
+        return precise == null ? 0 : precise.precision();
+    }
+
+    // Switches the session to 'digits' significant digits (0 = double), converting stack and
+    // variables. Going to high precision, doubles become their shortest decimal (0.1 stays 0.1) and
+    // INVALID_INPUT is returned, with nothing changed, if one of them is NaN or infinite. Going back
+    // rounds every value to double. The save/restore snapshots of each mode stay separate.
+    public Status setPrecision(int digits) {
+        if (digits < 0 || digits > BigComplex.MAX_PRECISION) {
+            return Status.INVALID_INPUT;
+        }
+        if (digits == getPrecision()) {
+            return Status.OK;
+        }
+        if (digits == 0) {
+            stack.clear();
+            for (BigComplex value : precise.stack()) {
+                stack.push(value.real().doubleValue(), value.imaginary().doubleValue());
+            }
+            precise = null;
+        } else if (precise != null) {
+            precise = new PrecisionBackend(digits, precise.stack(), precise.variables(), precise.saved(), variables, macros);
+        } else {
+            List<BigComplex> values = new ArrayList<>(stack.size());
+            for (int depth = stack.size() - 1; depth >= 0; depth--) {
+                if (!Double.isFinite(stack.re(depth)) || !Double.isFinite(stack.im(depth))) {
+                    return Status.INVALID_INPUT;
+                }
+                values.add(BigComplex.valueOf(stack.re(depth), stack.im(depth)));
+            }
+            BigComplex[] variableValues = new BigComplex[VariableManager.SLOTS];
+            for (int slot = 0; slot < VariableManager.SLOTS; slot++) {
+                if (variables.isDefined(slot)) {
+                    if (!Double.isFinite(variables.re(slot)) || !Double.isFinite(variables.im(slot))) {
+                        return Status.INVALID_INPUT;
+                    }
+                    variableValues[slot] = BigComplex.valueOf(variables.re(slot), variables.im(slot));
+                }
+            }
+            precise = new PrecisionBackend(digits, values, variableValues, new ArrayDeque<>(), variables, macros);
+        }
+        fireStackChanged();
+        return Status.OK;
+    }
+
+    // "precision 34"
+    private static boolean isPrecisionCommand(String input) {
+        String trimmed = input.trim();
+        return trimmed.startsWith("precision") && trimmed.length() > "precision".length()
+                && Character.isWhitespace(trimmed.charAt("precision".length()));
+    }
+
+    private Status precisionCommand(String command) {
+        int digits;
+        try {
+            digits = Integer.parseInt(command.substring("precision".length()).trim());
+        } catch (NumberFormatException e) {
+            return Status.INVALID_INPUT;
+        }
+        return setPrecision(digits);
+    }
+
+    // Notifications after an input handled by the high-precision backend, as in double mode.
+    private Status finishPrecise(Status status, long version) {
+        BigComplex value = precise.takeResult();
+        if (value != null) {
+            record(value.real().doubleValue(), value.imaginary().doubleValue());
+        }
+        if (status == Status.OK) {
+            fireStackChanged();
+        }
+        if (variables.version() != version) {
+            fireVariablesChanged();
+        }
+        return status;
+    }
+
+    private Status pushExpression(String expression) {
+        CompiledExpression compiled;
+        try {
+            compiled = CompiledExpression.compile(expression);
+        } catch (IllegalArgumentException e) {
+            return Status.INVALID_INPUT;
+        }
+        Status status = compiled.evaluate(variables, result, scratch);
+        if (status != Status.OK) {
+            return status;
+        }
+        return push(result[0], result[1]);
+    }
+
+    private Status result() {
+        record(stack.peekRe(), stack.peekIm());
+        fireStackChanged();
+        return Status.OK;
+    }
+
+    private Status stackOperation() {
+        fireStackChanged();
+        return Status.OK;
+    }
+
+    // Unico punto in cui lo storico viene aggiornato.
+    private void record(double real, double imaginary) {
+        history.append(real, imaginary);
+        if (listeners.isEmpty()) {
+            return;
+        }
+        ComplexNumber value = new ComplexNumber(real, imaginary);
+        for (CalculatorListener listener : listeners) {
+            listener.historyAppended(value);
+        }
+    }
+
+    private void fireVariablesChanged() {
+        for (CalculatorListener listener : listeners) {
+            listener.variablesChanged();
+        }
+    }
+
+    private void fireStackChanged() {
+        for (CalculatorListener listener : listeners) {
+            listener.stackChanged();
+        }
+    }
+
+    private Status report(Status status, String input) {
+        for (CalculatorListener listener : listeners) {
+            if (status == Status.OK) {
+                listener.inputAccepted(input);
+            } else {
+                listener.errorOccurred(status, input);
+            }
+        }
+        return status;
+    }
+
+    private Status reportLine(Status status, String line) {
+        for (CalculatorListener listener : listeners) {
+            if (status == Status.OK) {
+                listener.lineAccepted(line);
+            } else {
+                listener.errorOccurred(status, line);
+            }
+        }
+        return status;
+    }
+
+    public int stackSize() {
+        return precise == null ? stack.size() : precise.size();
+    }
+
+    // depth 0 is the top of the stack
+    public ComplexNumber peek(int depth) {
+        return new ComplexNumber(peekReal(depth), peekImaginary(depth));
+    }
+
+    public double peekReal(int depth) {
+        return precise == null ? stack.re(depth) : precise.peek(depth).real().doubleValue();
+    }
+
+    public double peekImaginary(int depth) {
+        return precise == null ? stack.im(depth) : precise.peek(depth).imaginary().doubleValue();
+    }
+
+    // Every digit in high precision; in double mode the value must be finite.
+    public BigComplex peekExact(int depth) {
+        return precise == null ? BigComplex.valueOf(stack.re(depth), stack.im(depth)) : precise.peek(depth);
+    }
+
+    PrecisionBackend getPrecisionBackend() {
+        return precise;
+    }
+
+    public ExpressionCache getExpressionCache() {
+        return expressionCache;
+    }
+
+    // Evaluation stacks of this engine, for callers confined to it like the engine itself.
+    EvaluationScratch scratch() {
+        return scratch;
+    }
+
+    // Most recent first.
+    public HistoryRing getHistory() {
+        return history;
+    }
+
+    public ComplexNumber getVariable(char name) {
+        return variables.get(VariableManager.slot(name));
+    }
+
+    VariableManager getVariables() {
+        return variables;
+    }
+
+    public void setVariable(char name, double real, double imaginary) {
+        variables.save(VariableManager.slot(name), real, imaginary);
+        if (precise != null) {
+            precise.reloadVariable(VariableManager.slot(name));
+        }
+        fireVariablesChanged();
+    }
+
+    // Used by StateFile after a successful load.
+    void replaceState(VariableManager loadedVariables, Macro[] loadedMacros) {
+        variables.clear();
+        for (int slot = 0; slot < VariableManager.SLOTS; slot++) {
+            if (loadedVariables.isDefined(slot)) {
+                variables.save(slot, loadedVariables.re(slot), loadedVariables.im(slot));
+            }
+        }
+        macros.clear();
+        for (Macro macro : loadedMacros) {
+            macros.put(macro.getName(), macro);
+        }
+        if (precise != null) {
+            precise.reloadVariables();
+        }
+        fireVariablesChanged();
+    }
+
+    // Used by SessionJournal after loading a snapshot: bottom of the stack first, oldest result first.
+    // The snapshot is in double precision, so the session goes back to it.
+    void replaceStack(double[] stackRe, double[] stackIm, double[] historyRe, double[] historyIm) {
+        precise = null;
+        stack.clear();
+        for (int i = 0; i < stackRe.length; i++) {
+            stack.push(stackRe[i], stackIm[i]);
+        }
+        history.clear();
+        for (int i = 0; i < historyRe.length; i++) {
+            history.append(historyRe[i], historyIm[i]);
+        }
+        fireStackChanged();
+    }
+
+    public Macro getMacro(String name) {
+        return macros.get(name);
+    }
+
+    public Collection<Macro> getMacros() {
+        return Collections.unmodifiableCollection(macros.values());
+    }
+}
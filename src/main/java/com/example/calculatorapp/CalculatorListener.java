@@ -0,0 +1,30 @@
+package com.example.calculatorapp;
+
+// Osservatore del CalculatorEngine: la vista JavaFX (o qualunque altro client) si registra
+// con addListener e riceve le notifiche dopo ogni modifica dello stato.
+public interface CalculatorListener {
+
+    // The operand stack changed (push, pop, stack operation).
+    default void stackChanged() {
+    }
+
+    // A value was recorded in the history of the last results.
+    default void historyAppended(ComplexNumber value) {
+    }
+
+    default void variablesChanged() {
+    }
+
+    default void errorOccurred(CalculatorEngine.Status status, String input) {
+    }
+
+    // An input to enter or performOperation completed with Status.OK; entering it again on the
+    // same state gives the same result (see SessionJournal).
+    default void inputAccepted(String input) {
+    }
+
+    // A line to enterLine completed with Status.OK; to be entered again with enterLine, since
+    // enter could read it as an infix expression ("3 + 4").
+    default void lineAccepted(String line) {
+    }
+}
@@ -0,0 +1,206 @@
+package com.example.calculatorapp;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Modalita' server: altri processi sulla stessa macchina usano la calcolatrice tramite un socket
+// TCP locale o Unix-domain. Il protocollo e' a righe (UTF-8, terminate da '\n'):
+//  - "<input>" come handleUserInput (CalculatorEngine.enter): risposta come BatchCalculator,
+//    la cima dello stack ("re + imi"), "empty" o "Error: <status>";
+//  - "? <espressione>" come calculate: risposta la parte reale del risultato (NaN in caso di errore).
+// Ogni connessione ha il proprio CalculatorEngine (stack, variabili, storico, macro) ed e' servita
+// da un virtual thread con I/O bloccante: 10k connessioni inattive costano solo i loro buffer.
+// Le richieste sono in pipeline: tutte le righe complete arrivate con una read vengono eseguite
+// in ordine e le loro risposte partono insieme con una sola write.
+// Con unix:percorso un socket rimasto da un server terminato senza close viene sostituito; qualunque
+// altro file in quel percorso fa fallire l'avvio, cosi' un percorso sbagliato non cancella nulla.
+//     java -cp target/classes com.example.calculatorapp.CalculatorServer [porta | unix:percorso]
+public final class CalculatorServer implements AutoCloseable {
+    public static final int DEFAULT_PORT = 7878;
+    static final int BUFFER_SIZE = 8 * 1024;
+    static final int MAX_LINE = 64 * 1024;
+    private static final int BACKLOG = 4096;
+
+    private final ServerSocketChannel server;
+    private final SocketAddress address;
+    private final ExecutorService connections = Executors.newVirtualThreadPerTaskExecutor();
+    private final AtomicInteger open = new AtomicInteger();
+    private final Thread acceptor;
+    private final Object socketKey; // file key of the Unix socket bound here, see close()
+
+    private CalculatorServer(ServerSocketChannel server) throws IOException {
+        this.server = server;
+        this.address = server.getLocalAddress();
+        BasicFileAttributes socket = address instanceof UnixDomainSocketAddress
+                ? attributes(((UnixDomainSocketAddress) address).getPath()) : null;
+        this.socketKey = socket == null ? null : socket.fileKey();
+        this.acceptor = Thread.ofVirtual().name("calculator-acceptor").start(this::acceptLoop);
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        SocketAddress address = args.length == 0
+                ? new InetSocketAddress(InetAddress.getLoopbackAddress(), DEFAULT_PORT)
+                : parseAddress(args[0]);
+        try (CalculatorServer server = start(address)) {
+            System.err.println("Listening on " + server.address());
+            server.acceptor.join();
+        }
+    }
+
+    // "unix:/tmp/calc.sock" or a port on the loopback interface.
+    static SocketAddress parseAddress(String text) {
+        if (text.startsWith("unix:")) {
+            return UnixDomainSocketAddress.of(text.substring("unix:".length()));
+        }
+        return new InetSocketAddress(InetAddress.getLoopbackAddress(), Integer.parseInt(text));
+    }
+
+    // A TCP port 0 binds to any free port, see address().
+    public static CalculatorServer start(SocketAddress address) throws IOException {
+        ServerSocketChannel server;
+        if (address instanceof UnixDomainSocketAddress) {
+            removeStaleSocket(((UnixDomainSocketAddress) address).getPath());
+            server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        } else {
+            server = ServerSocketChannel.open();
+        }
+        server.bind(address, BACKLOG);
+        return new CalculatorServer(server);
+    }
+
+    private static void removeStaleSocket(Path path) throws IOException {
+        BasicFileAttributes attributes = attributes(path);
+        if (attributes == null) {
+            return;
+        }
+        if (!attributes.isOther()) {
+            throw new IOException("Not a socket, refusing to replace it: " + path);
+        }
+        Files.deleteIfExists(path);
+    }
+
+    // The file itself, not the target of a link; null if there is none.
+    private static BasicFileAttributes attributes(Path path) throws IOException {
+        try {
+            return Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    public SocketAddress address() {
+        return address;
+    }
+
+    public int connectionCount() {
+        return open.get();
+    }
+
+    private void acceptLoop() {
+        while (server.isOpen()) {
+            SocketChannel channel;
+            try {
+                channel = server.accept();
+            } catch (IOException e) {
+                return; // closed
+            }
+            open.incrementAndGet();
+            connections.execute(() -> serve(channel));
+        }
+    }
+
+    private void serve(SocketChannel channel) {
+        CalculatorEngine engine = new CalculatorEngine();
+        ByteBuffer in = ByteBuffer.allocate(BUFFER_SIZE);
+        StringBuilder responses = new StringBuilder();
+        try (channel) {
+            while (channel.read(in) >= 0) {
+                in.flip();
+                int lineStart = in.position();
+                for (int i = lineStart; i < in.limit(); i++) {
+                    if (in.get(i) == '\n') {
+                        handle(decodeLine(in, lineStart, i), engine, responses);
+                        lineStart = i + 1;
+                    }
+                }
+                in.position(lineStart);
+                in.compact();
+                if (!in.hasRemaining()) {
+                    if (in.capacity() >= MAX_LINE) {
+                        return; // a line this long is not a calculator input
+                    }
+                    in = ByteBuffer.allocate(in.capacity() * 2).put(in.flip());
+                }
+                if (responses.length() > 0) {
+                    ByteBuffer out = StandardCharsets.UTF_8.encode(CharBuffer.wrap(responses));
+                    while (out.hasRemaining()) {
+                        channel.write(out);
+                    }
+                    responses.setLength(0);
+                }
+            }
+        } catch (IOException e) {
+            // connection reset by the client, or the server is closing
+        } finally {
+            open.decrementAndGet();
+        }
+    }
+
+    private static String decodeLine(ByteBuffer buffer, int from, int to) {
+        if (to > from && buffer.get(to - 1) == '\r') {
+            to--;
+        }
+        byte[] bytes = new byte[to - from];
+        buffer.get(from, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    static void handle(String request, CalculatorEngine engine, StringBuilder responses) {
+        if (request.startsWith("?")) {
+            double[] result = new double[2];
+            CalculatorEngine.Status status = engine.calculate(request.substring(1), result);
+            if (status == CalculatorEngine.Status.INVALID_INPUT) {
+                responses.append("Error: ").append(status);
+            } else {
+                // NaN on division by zero or undefined variables, as calculate(String)
+                responses.append(status == CalculatorEngine.Status.OK ? result[0] : Double.NaN);
+            }
+        } else {
+            BatchCalculator.appendResult(responses, engine.enter(request), engine);
+        }
+        responses.append('\n');
+    }
+
+    // Stops accepting and closes every connection. The Unix socket file is removed only if it is
+    // still the one bound here: another server may have replaced it in the meantime.
+    @Override
+    public void close() throws IOException {
+        server.close();
+        connections.shutdownNow();
+        if (address instanceof UnixDomainSocketAddress) {
+            Path path = ((UnixDomainSocketAddress) address).getPath();
+            BasicFileAttributes attributes = attributes(path);
+            if (attributes != null && attributes.isOther() && Objects.equals(attributes.fileKey(), socketKey)) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+}
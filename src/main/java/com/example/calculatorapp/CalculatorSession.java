@@ -0,0 +1,68 @@
+package com.example.calculatorapp;
+
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Una sessione della calcolatrice: tutto lo stato mutabile (stack, storico, variabili, parser)
+// sta nel suo CalculatorEngine e non e' condiviso con altre sessioni.
+// Le parti condivise tra sessioni sono immutabili (CompiledExpression, ComplexNumber, Opcodes), quindi
+// non richiedono sincronizzazione; anche gli stack di valutazione (EvaluationScratch) sono
+// dell'engine e vengono riusati da un input all'altro. L'unico lock e' quello della
+// sessione, che serializza gli input inviati alla stessa sessione da thread diversi; e' un
+// ReentrantLock e non synchronized per non bloccare il carrier dei virtual thread.
+public final class CalculatorSession {
+    private final String id;
+    private final CalculatorEngine engine;
+    private final ReentrantLock lock = new ReentrantLock();
+
+    CalculatorSession(String id, CalculatorEngine engine) {
+        this.id = id;
+        this.engine = engine;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public CalculatorEngine.Status enter(String input) {
+        lock.lock();
+        try {
+            return engine.enter(input);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // All inputs in order, without inputs from other threads in between.
+    public CalculatorEngine.Status[] enterAll(List<String> inputs) {
+        CalculatorEngine.Status[] statuses = new CalculatorEngine.Status[inputs.size()];
+        lock.lock();
+        try {
+            for (int i = 0; i < statuses.length; i++) {
+                statuses[i] = engine.enter(inputs.get(i));
+            }
+        } finally {
+            lock.unlock();
+        }
+        return statuses;
+    }
+
+    public int stackSize() {
+        lock.lock();
+        try {
+            return engine.stackSize();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // depth 0 is the top of the stack
+    public ComplexNumber peek(int depth) {
+        lock.lock();
+        try {
+            return engine.peek(depth);
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package com.example.calculatorapp;
+
+import java.util.Arrays;
+
+// Ottimizzazioni sul programma postfisso, eseguite una volta sola in compilazione:
+//  - folding delle costanti, anche complesse: "2*3*x" diventa "6*x", "(4-4)*y" diventa "0*y";
+//    una divisione per una costante zero resta nel codice, cosi' l'errore arriva in valutazione;
+//  - identita' x+0, 0+x, x-0, x*1, 1*x, x/1 e -(-x): per valori finiti il risultato non cambia
+//    (al piu' il segno di uno zero). x*0 invece resta: con x infinito o NaN il risultato e' NaN;
+//  - nelle macro (MacroCompiler.emit) le sequenze che non fanno nulla: "dup drop", "swap swap",
+//    "+- +-", una costante seguita da "drop".
+// Le variabili non vengono mai eliminate dal codice ne' dalla mask, quindi una variabile non
+// definita da' sempre UNDEFINED_VARIABLE. La riduzione e' visibile come
+// originalInstructionCount() - instructionCount() della CompiledExpression.
+final class CodeOptimizer {
+
+    private CodeOptimizer() {
+    }
+
+    // Applies opcode to the constants a and b (b is ignored by NEG) and stores the result in
+    // result[0] (re) and result[1] (im). Arithmetic is the same as CompiledExpression's, real-only
+    // when both constants are real. False when the operation must stay in the code.
+    static boolean fold(int opcode, double aRe, double aIm, double bRe, double bIm, double[] result) {
+        boolean real = aIm == 0 && bIm == 0;
+        switch (opcode) {
+            case Opcodes.ADD:
+                result[0] = aRe + bRe;
+                result[1] = aIm + bIm;
+                return true;
+            case Opcodes.SUB:
+                result[0] = aRe - bRe;
+                result[1] = aIm - bIm;
+                return true;
+            case Opcodes.MUL:
+                result[0] = real ? aRe * bRe : aRe * bRe - aIm * bIm;
+                result[1] = real ? 0 : aRe * bIm + aIm * bRe;
+                return true;
+            case Opcodes.DIV:
+                if (bRe == 0 && bIm == 0) {
+                    return false;
+                }
+                if (real) {
+                    result[0] = aRe / bRe;
+                    result[1] = 0;
+                } else if (Math.abs(bRe) >= Math.abs(bIm)) {
+                    double ratio = bIm / bRe;
+                    double denominator = bRe + bIm * ratio;
+                    result[0] = (aRe + aIm * ratio) / denominator;
+                    result[1] = (aIm - aRe * ratio) / denominator;
+                } else {
+                    double ratio = bRe / bIm;
+                    double denominator = bRe * ratio + bIm;
+                    result[0] = (aRe * ratio + aIm) / denominator;
+                    result[1] = (aIm * ratio - aRe) / denominator;
+                }
+                return true;
+            case Opcodes.NEG:
+                result[0] = -aRe;
+                result[1] = -aIm;
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    // Expression programs only (CONST LOAD ADD SUB MUL DIV NEG). The input arrays are not modified.
+    // start[i] is the offset in out where the code of the i-th value on the stack begins; a value
+    // is a constant when its code is a single CONST, and the constants of the values on the stack
+    // are always the last ones in the pool.
+    static CompiledExpression optimize(String source, int[] code, int codeLength,
+                                       double[] constantsRe, double[] constantsIm, int variableMask) {
+        int[] out = new int[codeLength];
+        double[] outRe = new double[codeLength];
+        double[] outIm = new double[codeLength];
+        int[] start = new int[codeLength];
+        double[] folded = new double[2];
+        int length = 0;
+        int constants = 0;
+        int sp = 0;
+        int maxDepth = 0;
+
+        for (int i = 0; i < codeLength; i++) {
+            int instruction = code[i];
+            int opcode = Opcodes.opcode(instruction);
+            switch (opcode) {
+                case Opcodes.CONST: {
+                    int index = Opcodes.operand(instruction);
+                    outRe[constants] = constantsRe[index];
+                    outIm[constants] = constantsIm[index];
+                    start[sp++] = length;
+                    out[length++] = Opcodes.encode(Opcodes.CONST, constants++);
+                    break;
+                }
+                case Opcodes.LOAD:
+                    start[sp++] = length;
+                    out[length++] = instruction;
+                    break;
+                case Opcodes.NEG:
+                    if (isConstant(out, start[sp - 1], length)) {
+                        outRe[constants - 1] = -outRe[constants - 1];
+                        outIm[constants - 1] = -outIm[constants - 1];
+                    } else if (Opcodes.opcode(out[length - 1]) == Opcodes.NEG) {
+                        length--; // -(-x)
+                    } else {
+                        out[length++] = instruction;
+                    }
+                    break;
+                default: {
+                    int b = start[--sp];
+                    int a = start[sp - 1];
+                    boolean constantA = isConstant(out, a, b);
+                    boolean constantB = isConstant(out, b, length);
+                    if (constantA && constantB && fold(opcode, outRe[constants - 2], outIm[constants - 2],
+                            outRe[constants - 1], outIm[constants - 1], folded)) {
+                        outRe[constants - 2] = folded[0];
+                        outIm[constants - 2] = folded[1];
+                        constants--;
+                        length--;
+                    } else if (constantB && isRightIdentity(opcode, outRe[constants - 1], outIm[constants - 1])) {
+                        constants--;
+                        length--;
+                    } else if (constantA && isLeftIdentity(opcode, outRe[Opcodes.operand(out[a])], outIm[Opcodes.operand(out[a])])) {
+                        length = removeConstant(out, a, length, outRe, outIm, constants--);
+                    } else {
+                        out[length++] = instruction;
+                    }
+                    break;
+                }
+            }
+            maxDepth = Math.max(maxDepth, sp);
+        }
+
+        return new CompiledExpression(source, Arrays.copyOf(out, length), Arrays.copyOf(outRe, constants),
+                Arrays.copyOf(outIm, constants), maxDepth, variableMask, codeLength);
+    }
+
+    private static boolean isConstant(int[] code, int from, int to) {
+        return to - from == 1 && Opcodes.opcode(code[from]) == Opcodes.CONST;
+    }
+
+    // x + 0, x - 0, x * 1, x / 1
+    static boolean isRightIdentity(int opcode, double re, double im) {
+        switch (opcode) {
+            case Opcodes.ADD:
+            case Opcodes.SUB:
+                return re == 0 && im == 0;
+            case Opcodes.MUL:
+            case Opcodes.DIV:
+                return re == 1 && im == 0;
+            default:
+                return false;
+        }
+    }
+
+    // 0 + x, 1 * x
+    private static boolean isLeftIdentity(int opcode, double re, double im) {
+        switch (opcode) {
+            case Opcodes.ADD:
+                return re == 0 && im == 0;
+            case Opcodes.MUL:
+                return re == 1 && im == 0;
+            default:
+                return false;
+        }
+    }
+
+    // Removes the CONST at offset and its constant, shifting the code after it and re-indexing
+    // the constants that follow in the pool. Returns the new code length.
+    private static int removeConstant(int[] code, int offset, int length, double[] re, double[] im, int constants) {
+        int index = Opcodes.operand(code[offset]);
+        System.arraycopy(code, offset + 1, code, offset, length - offset - 1);
+        System.arraycopy(re, index + 1, re, index, constants - index - 1);
+        System.arraycopy(im, index + 1, im, index, constants - index - 1);
+        for (int i = offset; i < length - 1; i++) {
+            if (Opcodes.opcode(code[i]) == Opcodes.CONST) {
+                code[i] = Opcodes.encode(Opcodes.CONST, Opcodes.operand(code[i]) - 1);
+            }
+        }
+        return length - 1;
+    }
+}
@@ -0,0 +1,305 @@
+package com.example.calculatorapp;
+
+import java.util.Arrays;
+
+// Forma compilata e immutabile di un'espressione infissa.
+// Contiene il programma postfisso come array di istruzioni, le costanti gia' convertite in double
+// (parte reale e immaginaria) e gli slot delle variabili; puo' essere condivisa tra thread e valutata
+// piu' volte con valori diversi delle variabili senza alcuna elaborazione di stringhe.
+// La valutazione lavora su coppie re/im non boxate; se tutte le costanti e le variabili usate sono
+// reali si usa un ciclo solo reale. Gli errori sono restituiti come Status, senza eccezioni.
+// Gli stack di valutazione vengono da un EvaluationScratch, quello dell'engine o quello del thread:
+// a regime evaluate non alloca.
+// Il codice e' gia' passato da CodeOptimizer (folding delle costanti, identita').
+public final class CompiledExpression {
+    public static final int VARIABLE_SLOTS = VariableManager.SLOTS;
+
+    // Imaginary bindings for evaluate(double[]); never written.
+    private static final double[] NO_IMAGINARY_PARTS = new double[VARIABLE_SLOTS];
+
+    private final String source;
+    private final int[] code;
+    private final double[] constantsRe;
+    private final double[] constantsIm;
+    private final boolean realConstants;
+    private final int maxDepth;
+    private final int variableMask;
+    private final int originalInstructionCount;
+
+    CompiledExpression(String source, int[] code, double[] constantsRe, double[] constantsIm,
+                       int maxDepth, int variableMask, int originalInstructionCount) {
+        this.source = source;
+        this.code = code;
+        this.constantsRe = constantsRe;
+        this.constantsIm = constantsIm;
+        this.maxDepth = maxDepth;
+        this.variableMask = variableMask;
+        this.originalInstructionCount = originalInstructionCount;
+        boolean real = true;
+        for (double im : constantsIm) {
+            real &= im == 0;
+        }
+        this.realConstants = real;
+    }
+
+    public static CompiledExpression compile(String expression) {
+        return ExpressionCompiler.compile(expression);
+    }
+
+    // bindings[c - 'a'] holds the real value of variable c; only the slots the expression uses are read.
+    // Returns the real part of the result, or NaN on division by zero.
+    public double evaluate(double[] bindings) {
+        EvaluationScratch scratch = EvaluationScratch.current();
+        if (realConstants) {
+            double[] stack = scratch.re(maxDepth);
+            return evaluateReal(bindings, stack) ? stack[0] : Double.NaN;
+        }
+        double[] stackRe = scratch.re(maxDepth);
+        double[] stackIm = scratch.im(maxDepth);
+        return evaluateComplex(bindings, NO_IMAGINARY_PARTS, stackRe, stackIm) ? stackRe[0] : Double.NaN;
+    }
+
+    // Complex evaluation: variable c is bindingsRe[c - 'a'] + bindingsIm[c - 'a'] i, and a NaN real part
+    // marks it as undefined. On OK the result is stored in result[0] (re) and result[1] (im).
+    public CalculatorEngine.Status evaluate(double[] bindingsRe, double[] bindingsIm, double[] result) {
+        for (int mask = variableMask; mask != 0; mask &= mask - 1) {
+            if (Double.isNaN(bindingsRe[Integer.numberOfTrailingZeros(mask)])) {
+                return CalculatorEngine.Status.UNDEFINED_VARIABLE;
+            }
+        }
+        return run(bindingsRe, bindingsIm, result, EvaluationScratch.current());
+    }
+
+    // Evaluates on the session variables; the slots the expression uses were resolved at compile time.
+    public CalculatorEngine.Status evaluate(VariableManager variables, double[] result) {
+        return evaluate(variables, result, EvaluationScratch.current());
+    }
+
+    // Same, with the stacks of the caller (CalculatorEngine) instead of the thread's.
+    CalculatorEngine.Status evaluate(VariableManager variables, double[] result, EvaluationScratch scratch) {
+        if ((variableMask & ~variables.definedMask()) != 0) {
+            return CalculatorEngine.Status.UNDEFINED_VARIABLE;
+        }
+        return run(variables.realParts(), variables.imaginaryParts(), result, scratch);
+    }
+
+    // Bulk evaluation of the first 'rows' rows: variable c in row r is columnsRe[c - 'a'][r] +
+    // columnsIm[c - 'a'][r] i. columnsIm, or any of its columns, may be null for real values, and
+    // resultIm may be null when only the real part is needed. A row with a division by zero gives
+    // NaN. Runs an instruction at a time over blocks of rows, see ColumnEvaluator.
+    public void evaluateColumns(double[][] columnsRe, double[][] columnsIm, int rows,
+                                double[] resultRe, double[] resultIm) {
+        if (resultRe.length < rows || (resultIm != null && resultIm.length < rows)) {
+            throw new IllegalArgumentException("Result arrays shorter than " + rows + " rows");
+        }
+        boolean real = realConstants;
+        double[][] imaginary = new double[VARIABLE_SLOTS][]; // null entries for real columns
+        for (int mask = variableMask; mask != 0; mask &= mask - 1) {
+            int slot = Integer.numberOfTrailingZeros(mask);
+            if (!hasColumn(columnsRe, slot, rows)) {
+                throw new IllegalArgumentException("Missing column for variable " + (char) ('a' + slot));
+            }
+            if (columnsIm != null && slot < columnsIm.length && columnsIm[slot] != null) {
+                if (!hasColumn(columnsIm, slot, rows)) {
+                    throw new IllegalArgumentException("Imaginary column too short for variable " + (char) ('a' + slot));
+                }
+                imaginary[slot] = columnsIm[slot];
+                real = false;
+            }
+        }
+        ColumnEvaluator evaluator = new ColumnEvaluator(this);
+        if (real) {
+            evaluator.evaluateReal(columnsRe, rows, resultRe);
+            if (resultIm != null) {
+                Arrays.fill(resultIm, 0, rows, 0);
+            }
+        } else {
+            evaluator.evaluateComplex(columnsRe, imaginary, rows, resultRe, resultIm);
+        }
+    }
+
+    private static boolean hasColumn(double[][] columns, int slot, int rows) {
+        return slot < columns.length && columns[slot] != null && columns[slot].length >= rows;
+    }
+
+    private CalculatorEngine.Status run(double[] bindingsRe, double[] bindingsIm, double[] result,
+                                        EvaluationScratch scratch) {
+        boolean real = realConstants;
+        for (int mask = variableMask; mask != 0; mask &= mask - 1) {
+            real &= bindingsIm[Integer.numberOfTrailingZeros(mask)] == 0;
+        }
+        if (real) {
+            double[] stack = scratch.re(maxDepth);
+            if (!evaluateReal(bindingsRe, stack)) {
+                return CalculatorEngine.Status.DIVISION_BY_ZERO;
+            }
+            result[0] = stack[0];
+            result[1] = 0;
+            return CalculatorEngine.Status.OK;
+        }
+        double[] stackRe = scratch.re(maxDepth);
+        double[] stackIm = scratch.im(maxDepth);
+        if (!evaluateComplex(bindingsRe, bindingsIm, stackRe, stackIm)) {
+            return CalculatorEngine.Status.DIVISION_BY_ZERO;
+        }
+        result[0] = stackRe[0];
+        result[1] = stackIm[0];
+        return CalculatorEngine.Status.OK;
+    }
+
+    // Only valid when every constant and every bound variable is real. False on division by zero.
+    private boolean evaluateReal(double[] bindings, double[] stack) {
+        int sp = 0;
+        for (int instruction : code) {
+            switch (Opcodes.opcode(instruction)) {
+                case Opcodes.CONST:
+                    stack[sp++] = constantsRe[Opcodes.operand(instruction)];
+                    break;
+                case Opcodes.LOAD:
+                    stack[sp++] = bindings[Opcodes.operand(instruction)];
+                    break;
+                case Opcodes.ADD:
+                    sp--;
+                    stack[sp - 1] += stack[sp];
+                    break;
+                case Opcodes.SUB:
+                    sp--;
+                    stack[sp - 1] -= stack[sp];
+                    break;
+                case Opcodes.MUL:
+                    sp--;
+                    stack[sp - 1] *= stack[sp];
+                    break;
+                case Opcodes.DIV:
+                    sp--;
+                    if (stack[sp] == 0) {
+                        return false;
+                    }
+                    stack[sp - 1] /= stack[sp];
+                    break;
+                case Opcodes.NEG:
+                    stack[sp - 1] = -stack[sp - 1];
+                    break;
+                default:
+                    throw new IllegalStateException("Unknown opcode " + Opcodes.opcode(instruction));
+            }
+        }
+        return true;
+    }
+
+    // False on division by zero.
+    private boolean evaluateComplex(double[] bindingsRe, double[] bindingsIm, double[] re, double[] im) {
+        int sp = 0;
+        for (int instruction : code) {
+            switch (Opcodes.opcode(instruction)) {
+                case Opcodes.CONST: {
+                    int index = Opcodes.operand(instruction);
+                    re[sp] = constantsRe[index];
+                    im[sp++] = constantsIm[index];
+                    break;
+                }
+                case Opcodes.LOAD: {
+                    int slot = Opcodes.operand(instruction);
+                    re[sp] = bindingsRe[slot];
+                    im[sp++] = bindingsIm[slot];
+                    break;
+                }
+                case Opcodes.ADD:
+                    sp--;
+                    re[sp - 1] += re[sp];
+                    im[sp - 1] += im[sp];
+                    break;
+                case Opcodes.SUB:
+                    sp--;
+                    re[sp - 1] -= re[sp];
+                    im[sp - 1] -= im[sp];
+                    break;
+                case Opcodes.MUL: {
+                    sp--;
+                    double a = re[sp - 1];
+                    double b = im[sp - 1];
+                    re[sp - 1] = a * re[sp] - b * im[sp];
+                    im[sp - 1] = a * im[sp] + b * re[sp];
+                    break;
+                }
+                case Opcodes.DIV: {
+                    sp--;
+                    double a = re[sp - 1];
+                    double b = im[sp - 1];
+                    double c = re[sp];
+                    double d = im[sp];
+                    if (c == 0 && d == 0) {
+                        return false;
+                    }
+                    // Smith's algorithm, as in ComplexStack.divide
+                    if (Math.abs(c) >= Math.abs(d)) {
+                        double ratio = d / c;
+                        double denominator = c + d * ratio;
+                        re[sp - 1] = (a + b * ratio) / denominator;
+                        im[sp - 1] = (b - a * ratio) / denominator;
+                    } else {
+                        double ratio = c / d;
+                        double denominator = c * ratio + d;
+                        re[sp - 1] = (a * ratio + b) / denominator;
+                        im[sp - 1] = (b * ratio - a) / denominator;
+                    }
+                    break;
+                }
+                case Opcodes.NEG:
+                    re[sp - 1] = -re[sp - 1];
+                    im[sp - 1] = -im[sp - 1];
+                    break;
+                default:
+                    throw new IllegalStateException("Unknown opcode " + Opcodes.opcode(instruction));
+            }
+        }
+        return true;
+    }
+
+    public boolean usesVariable(char name) {
+        return name >= 'a' && name <= 'z' && (variableMask & (1 << (name - 'a'))) != 0;
+    }
+
+    // True when no constant has an imaginary part.
+    public boolean hasRealConstants() {
+        return realConstants;
+    }
+
+    int variableMask() {
+        return variableMask;
+    }
+
+    int[] code() {
+        return code;
+    }
+
+    double[] constantsRe() {
+        return constantsRe;
+    }
+
+    double[] constantsIm() {
+        return constantsIm;
+    }
+
+    int maxDepth() {
+        return maxDepth;
+    }
+
+    int instructionCount() {
+        return code.length;
+    }
+
+    // Before CodeOptimizer: the difference with instructionCount() is what optimisation saved.
+    int originalInstructionCount() {
+        return originalInstructionCount;
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    @Override
+    public String toString() {
+        return source;
+    }
+}
@@ -2,16 +2,28 @@ package com.example.calculatorapp;
 
 import org.apache.commons.math3.complex.Complex;
 
-public class ComplexNumber extends Complex {
-    private double real;
-    private double imaginary;
+// Numero complesso immutabile: solo parte reale e immaginaria, nessun flag calcolato.
+// La conversione da e verso commons-math Complex avviene esplicitamente ai bordi
+// tramite fromComplex/toComplex.
+public final class ComplexNumber {
+    public static final ComplexNumber ZERO = new ComplexNumber(0, 0);
+
+    private final double real;
+    private final double imaginary;
 
     public ComplexNumber(double real, double imaginary) {
-        super(real, imaginary);
         this.real = real;
         this.imaginary = imaginary;
     }
 
+    public static ComplexNumber fromComplex(Complex complex) {
+        return new ComplexNumber(complex.getReal(), complex.getImaginary());
+    }
+
+    public Complex toComplex() {
+        return new Complex(real, imaginary);
+    }
+
     public double getReal() {
         return real;
     }
@@ -21,36 +33,76 @@ public class ComplexNumber extends Complex {
     }
 
     public ComplexNumber add(ComplexNumber other) {
-        double newReal = this.real + other.real;
-        double newImaginary = this.imaginary + other.imaginary;
-        return new ComplexNumber(newReal, newImaginary);
+        return new ComplexNumber(real + other.real, imaginary + other.imaginary);
     }
 
     public ComplexNumber subtract(ComplexNumber other) {
-        double newReal = this.real - other.real;
-        double newImaginary = this.imaginary - other.imaginary;
-        return new ComplexNumber(newReal, newImaginary);
+        return new ComplexNumber(real - other.real, imaginary - other.imaginary);
     }
 
     public ComplexNumber multiply(ComplexNumber other) {
-        double newReal = this.real * other.real - this.imaginary * other.imaginary;
-        double newImaginary = this.real * other.imaginary + this.imaginary * other.real;
-        return new ComplexNumber(newReal, newImaginary);
+        return new ComplexNumber(real * other.real - imaginary * other.imaginary,
+                real * other.imaginary + imaginary * other.real);
     }
 
     public ComplexNumber divide(ComplexNumber other) {
-        double denominator = other.real * other.real + other.imaginary * other.imaginary;
-        if (denominator == 0) {
+        double c = other.real;
+        double d = other.imaginary;
+        if (c == 0 && d == 0) {
             throw new ArithmeticException("Division by zero");
         }
+        // Smith's algorithm: scaling by the larger component avoids overflow in c*c + d*d.
+        if (Math.abs(c) >= Math.abs(d)) {
+            double ratio = d / c;
+            double denominator = c + d * ratio;
+            return new ComplexNumber((real + imaginary * ratio) / denominator,
+                    (imaginary - real * ratio) / denominator);
+        }
+        double ratio = c / d;
+        double denominator = c * ratio + d;
+        return new ComplexNumber((real * ratio + imaginary) / denominator,
+                (imaginary * ratio - real) / denominator);
+    }
+
+    public ComplexNumber negate() {
+        return new ComplexNumber(-real, -imaginary);
+    }
 
-        double newReal = (this.real * other.real + this.imaginary * other.imaginary) / denominator;
-        double newImaginary = (this.imaginary * other.real - this.real * other.imaginary) / denominator;
-        return new ComplexNumber(newReal, newImaginary);
+    // Principal square root, as in commons-math Complex.sqrt().
+    public ComplexNumber sqrt() {
+        if (real == 0 && imaginary == 0) {
+            return ZERO;
+        }
+        double t = Math.sqrt((Math.abs(real) + Math.hypot(real, imaginary)) / 2);
+        if (real >= 0) {
+            return new ComplexNumber(t, imaginary / (2 * t));
+        }
+        return new ComplexNumber(Math.abs(imaginary) / (2 * t), Math.copySign(t, imaginary));
+    }
+
+    public boolean isReal() {
+        return imaginary == 0;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ComplexNumber)) {
+            return false;
+        }
+        ComplexNumber other = (ComplexNumber) o;
+        return Double.compare(real, other.real) == 0 && Double.compare(imaginary, other.imaginary) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Double.hashCode(real) + Double.hashCode(imaginary);
     }
 
     @Override
     public String toString() {
         return real + " + " + imaginary + "i";
     }
-}
\ No newline at end of file
+}
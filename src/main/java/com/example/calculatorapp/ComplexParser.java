@@ -0,0 +1,106 @@
+package com.example.calculatorapp;
+
+import java.math.BigDecimal;
+
+// Parser validante per i letterali complessi accettati sullo stack.
+// Forme accettate (spazi ammessi tra i token, suffisso i oppure j):
+//     5   -2.5   10j   -0.5i   3+4j   -1.1-6.6j
+// Parte reale, segno e parte immaginaria vengono letti direttamente dai caratteri in un unico
+// passaggio tramite il Lexer, senza espressioni regolari ne' stringhe intermedie.
+// Il risultato dell'ultimo parse() e' disponibile tramite real() e imaginary(), oppure senza
+// arrotondamenti come BigComplex tramite exact(): il parser ricorda solo dove stanno le cifre.
+// Non e' thread-safe: ogni sessione (CalculatorEngine) ha il proprio parser.
+final class ComplexParser {
+    private final Lexer lexer = new Lexer();
+    private double real;
+    private double imaginary;
+    // Digits of the last literal in input, for exact(); a start of -1 means zero.
+    private CharSequence input;
+    private int realStart;
+    private int realEnd;
+    private boolean realNegative;
+    private int imaginaryStart;
+    private int imaginaryEnd;
+    private boolean imaginaryNegative;
+
+    boolean parse(CharSequence input) {
+        return parse(input, 0, input.length());
+    }
+
+    boolean parse(CharSequence input, int from, int to) {
+        this.input = input;
+        realStart = -1;
+        imaginaryStart = -1;
+        lexer.reset(input, from, to);
+        Lexer.TokenType type = lexer.next();
+
+        double sign = 1;
+        if (type == Lexer.TokenType.OPERATOR && (lexer.symbol() == '-' || lexer.symbol() == '+')) {
+            sign = lexer.symbol() == '-' ? -1 : 1;
+            type = lexer.next();
+        }
+
+        if (type == Lexer.TokenType.IMAGINARY) {
+            markImaginary(sign < 0);
+            double imaginaryPart = sign * lexer.value();
+            return lexer.next() == Lexer.TokenType.END && accept(0, imaginaryPart);
+        }
+        if (type != Lexer.TokenType.NUMBER) {
+            return false;
+        }
+        double realPart = sign * lexer.value();
+        realStart = lexer.start();
+        realEnd = lexer.end();
+        realNegative = sign < 0;
+
+        type = lexer.next();
+        if (type == Lexer.TokenType.END) {
+            return accept(realPart, 0);
+        }
+        if (type != Lexer.TokenType.OPERATOR || (lexer.symbol() != '+' && lexer.symbol() != '-')) {
+            return false;
+        }
+        double imaginarySign = lexer.symbol() == '-' ? -1 : 1;
+        if (lexer.next() != Lexer.TokenType.IMAGINARY) {
+            return false;
+        }
+        markImaginary(imaginarySign < 0);
+        double imaginaryPart = imaginarySign * lexer.value();
+        return lexer.next() == Lexer.TokenType.END && accept(realPart, imaginaryPart);
+    }
+
+    double real() {
+        return real;
+    }
+
+    double imaginary() {
+        return imaginary;
+    }
+
+    // The last parsed literal as written, e.g. 0.1 stays exactly 0.1.
+    BigComplex exact() {
+        return new BigComplex(decimal(realStart, realEnd, realNegative),
+                decimal(imaginaryStart, imaginaryEnd, imaginaryNegative));
+    }
+
+    private BigDecimal decimal(int start, int end, boolean negative) {
+        if (start < 0) {
+            return BigDecimal.ZERO;
+        }
+        BigDecimal value = new BigDecimal(input.subSequence(start, end).toString());
+        return negative ? value.negate() : value;
+    }
+
+    // The token ends with the 'i' or 'j' suffix.
+    private void markImaginary(boolean negative) {
+        imaginaryStart = lexer.start();
+        imaginaryEnd = lexer.end() - 1;
+        imaginaryNegative = negative;
+    }
+
+    private boolean accept(double realPart, double imaginaryPart) {
+        real = realPart;
+        imaginary = imaginaryPart;
+        return true;
+    }
+}
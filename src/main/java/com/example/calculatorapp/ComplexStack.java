@@ -0,0 +1,222 @@
+package com.example.calculatorapp;
+
+import java.util.Arrays;
+
+// Stack di numeri complessi memorizzato come struttura di array: parti reali e immaginarie
+// in due double[] che crescono solo quando serve. Push, pop, operazioni di stack (swap, dup,
+// drop, over) e operazioni aritmetiche lavorano direttamente sugli slot in cima, senza
+// allocare oggetti per ogni operazione.
+// La semantica (e i messaggi di errore) sono quelli di MyStack.
+// checkpoint/rollback salvano e ripristinano solo le voci da una certa profondita' in su, in buffer
+// riusati: e' il rollback atomico di CalculatorEngine.enterLine.
+public class ComplexStack {
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private double[] re;
+    private double[] im;
+    private int size;
+    private double[] checkpointRe = new double[0];
+    private double[] checkpointIm = new double[0];
+    private int checkpointFrom;
+    private int checkpointSize;
+
+    public ComplexStack() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public ComplexStack(int initialCapacity) {
+        re = new double[Math.max(1, initialCapacity)];
+        im = new double[re.length];
+    }
+
+    public void push(double real, double imaginary) {
+        if (size == re.length) {
+            re = Arrays.copyOf(re, size * 2);
+            im = Arrays.copyOf(im, size * 2);
+        }
+        re[size] = real;
+        im[size] = imaginary;
+        size++;
+    }
+
+    // Read peekIm() first when both parts are needed: pop removes the whole entry.
+    public double popRe() {
+        requireSize(1, "Stack is empty");
+        return re[--size];
+    }
+
+    public double popIm() {
+        requireSize(1, "Stack is empty");
+        return im[--size];
+    }
+
+    public double peekRe() {
+        requireSize(1, "Stack is empty");
+        return re[size - 1];
+    }
+
+    public double peekIm() {
+        requireSize(1, "Stack is empty");
+        return im[size - 1];
+    }
+
+    // depth 0 is the top of the stack
+    public double re(int depth) {
+        return re[index(depth)];
+    }
+
+    public double im(int depth) {
+        return im[index(depth)];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    public void swap() {
+        requireSize(2, "Swap requires at least two elements in the stack");
+        int top = size - 1;
+        double real = re[top];
+        double imaginary = im[top];
+        re[top] = re[top - 1];
+        im[top] = im[top - 1];
+        re[top - 1] = real;
+        im[top - 1] = imaginary;
+    }
+
+    public void dup() {
+        requireSize(1, "Dup requires at least one element in the stack");
+        push(re[size - 1], im[size - 1]);
+    }
+
+    public void drop() {
+        requireSize(1, "Drop requires at least one element in the stack");
+        size--;
+    }
+
+    public void over() {
+        requireSize(2, "Over requires at least two elements in the stack");
+        push(re[size - 2], im[size - 2]);
+    }
+
+    // Binary operations replace the two top entries (x = second, y = top) with x op y.
+
+    public void add() {
+        requireSize(2, "Add requires at least two elements in the stack");
+        size--;
+        re[size - 1] += re[size];
+        im[size - 1] += im[size];
+    }
+
+    public void subtract() {
+        requireSize(2, "Subtract requires at least two elements in the stack");
+        size--;
+        re[size - 1] -= re[size];
+        im[size - 1] -= im[size];
+    }
+
+    public void multiply() {
+        requireSize(2, "Multiply requires at least two elements in the stack");
+        size--;
+        int x = size - 1;
+        double real = re[x] * re[size] - im[x] * im[size];
+        double imaginary = re[x] * im[size] + im[x] * re[size];
+        re[x] = real;
+        im[x] = imaginary;
+    }
+
+    public void divide() {
+        requireSize(2, "Divide requires at least two elements in the stack");
+        int x = size - 2;
+        int y = size - 1;
+        double c = re[y];
+        double d = im[y];
+        if (c == 0 && d == 0) {
+            throw new ArithmeticException("Division by zero");
+        }
+        double a = re[x];
+        double b = im[x];
+        // Smith's algorithm, same as ComplexNumber.divide
+        if (Math.abs(c) >= Math.abs(d)) {
+            double ratio = d / c;
+            double denominator = c + d * ratio;
+            re[x] = (a + b * ratio) / denominator;
+            im[x] = (b - a * ratio) / denominator;
+        } else {
+            double ratio = c / d;
+            double denominator = c * ratio + d;
+            re[x] = (a * ratio + b) / denominator;
+            im[x] = (b * ratio - a) / denominator;
+        }
+        size--;
+    }
+
+    public void negate() {
+        requireSize(1, "Negate requires at least one element in the stack");
+        re[size - 1] = -re[size - 1];
+        im[size - 1] = -im[size - 1];
+    }
+
+    // Principal square root, as in commons-math Complex.sqrt().
+    public void sqrt() {
+        requireSize(1, "Sqrt requires at least one element in the stack");
+        int top = size - 1;
+        double real = re[top];
+        double imaginary = im[top];
+        if (real == 0 && imaginary == 0) {
+            re[top] = 0;
+            im[top] = 0;
+            return;
+        }
+        double t = Math.sqrt((Math.abs(real) + Math.hypot(real, imaginary)) / 2);
+        if (real >= 0) {
+            re[top] = t;
+            im[top] = imaginary / (2 * t);
+        } else {
+            re[top] = Math.abs(imaginary) / (2 * t);
+            im[top] = Math.copySign(t, imaginary);
+        }
+    }
+
+    // Saves the entries at index from and above; the ones below must not change before rollback().
+    void checkpoint(int from) {
+        int count = size - from;
+        if (checkpointRe.length < count) {
+            checkpointRe = new double[Math.max(count, checkpointRe.length * 2)];
+            checkpointIm = new double[checkpointRe.length];
+        }
+        System.arraycopy(re, from, checkpointRe, 0, count);
+        System.arraycopy(im, from, checkpointIm, 0, count);
+        checkpointFrom = from;
+        checkpointSize = size;
+    }
+
+    // The arrays only grow, so they still have room for the saved entries.
+    void rollback() {
+        int count = checkpointSize - checkpointFrom;
+        System.arraycopy(checkpointRe, 0, re, checkpointFrom, count);
+        System.arraycopy(checkpointIm, 0, im, checkpointFrom, count);
+        size = checkpointSize;
+    }
+
+    private int index(int depth) {
+        if (depth < 0 || depth >= size) {
+            throw new IndexOutOfBoundsException("Depth " + depth + " out of bounds for size " + size);
+        }
+        return size - 1 - depth;
+    }
+
+    private void requireSize(int required, String message) {
+        if (size < required) {
+            throw new IllegalStateException(message);
+        }
+    }
+}
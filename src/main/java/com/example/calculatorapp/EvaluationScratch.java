@@ -0,0 +1,50 @@
+package com.example.calculatorapp;
+
+// Aree di lavoro usate dalla valutazione delle espressioni: gli stack di double (re/im) e uno
+// stack di int vengono allocati la prima volta, ingranditi solo quando un'espressione ne richiede
+// di piu' e poi riutilizzati, cosi' che una valutazione a regime non allochi nulla. I metodi che
+// la usano non devono chiamarsi a vicenda, perche' condividono gli stessi array.
+// Ogni CalculatorEngine ha la propria istanza, confinata come il resto del suo stato (il lock di
+// CalculatorSession): le sessioni girano su virtual thread sempre nuovi, dove un'istanza per
+// thread verrebbe riallocata a ogni input. current() resta per chi valuta fuori da un engine su
+// thread di lunga vita (worker del ForkJoinPool, FX thread, benchmark).
+final class EvaluationScratch {
+    private static final int INITIAL_CAPACITY = 32;
+    private static final ThreadLocal<EvaluationScratch> CURRENT = ThreadLocal.withInitial(EvaluationScratch::new);
+
+    private double[] re = new double[INITIAL_CAPACITY];
+    private double[] im = new double[INITIAL_CAPACITY];
+    private int[] ints = new int[INITIAL_CAPACITY];
+
+    EvaluationScratch() {
+    }
+
+    static EvaluationScratch current() {
+        return CURRENT.get();
+    }
+
+    double[] re(int capacity) {
+        if (re.length < capacity) {
+            re = new double[grow(re.length, capacity)];
+        }
+        return re;
+    }
+
+    double[] im(int capacity) {
+        if (im.length < capacity) {
+            im = new double[grow(im.length, capacity)];
+        }
+        return im;
+    }
+
+    int[] ints(int capacity) {
+        if (ints.length < capacity) {
+            ints = new int[grow(ints.length, capacity)];
+        }
+        return ints;
+    }
+
+    private static int grow(int current, int required) {
+        return Math.max(current * 2, required);
+    }
+}
@@ -0,0 +1,131 @@
+package com.example.calculatorapp;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Cache di CalculatorEngine.calculate(String): per ogni espressione (normalizzata) tiene la
+// CompiledExpression e l'ultimo risultato. Un'espressione ripetuta non viene piu' analizzata ne'
+// compilata, e se le variabili che usa non sono cambiate non viene nemmeno valutata.
+// Invece di mettere i valori delle variabili nella chiave, ogni voce ricorda la versione delle sue
+// variabili (VariableManager.version) al momento del calcolo: quando una di esse viene scritta la
+// versione cambia e il risultato viene ricalcolato alla lettura successiva, riusando il codice compilato.
+// La dimensione e' limitata: LinkedHashMap in ordine di accesso, la voce usata meno di recente
+// viene scartata (LRU). Contatori: hits (risultato riusato), misses (espressione nuova o variabili
+// cambiate), evictions. Come l'engine, non e' thread-safe.
+public final class ExpressionCache {
+    public static final int DEFAULT_CAPACITY = 256;
+
+    private static final class Entry {
+        final CompiledExpression expression;
+        long version = -1; // of the expression's variables when the result was computed
+        double re;
+        double im;
+        CalculatorEngine.Status status;
+
+        Entry(CompiledExpression expression) {
+            this.expression = expression;
+        }
+    }
+
+    private final int capacity;
+    private final Map<String, Entry> entries;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    public ExpressionCache(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Cache capacity must be positive: " + capacity);
+        }
+        this.capacity = capacity;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if (size() > ExpressionCache.this.capacity) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    // Like CompiledExpression.evaluate(VariableManager, double[], EvaluationScratch); an invalid
+    // expression throws IllegalArgumentException and is not cached.
+    CalculatorEngine.Status evaluate(String expression, VariableManager variables, double[] result,
+                                     EvaluationScratch scratch) {
+        String key = normalize(expression);
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            entry = new Entry(CompiledExpression.compile(expression));
+            entries.put(key, entry);
+        }
+        long version = variables.version(entry.expression.variableMask());
+        if (entry.version == version) {
+            hits++;
+        } else {
+            misses++;
+            entry.status = entry.expression.evaluate(variables, result, scratch);
+            entry.re = result[0];
+            entry.im = result[1];
+            entry.version = version;
+        }
+        result[0] = entry.re;
+        result[1] = entry.im;
+        return entry.status;
+    }
+
+    // Trims and collapses runs of whitespace, so "x * 2" and " x  *  2 " share an entry; an
+    // expression that is already normalised is returned as is.
+    static String normalize(String expression) {
+        int length = expression.length();
+        boolean normalized = length == 0
+                || (expression.charAt(0) != ' ' && expression.charAt(length - 1) != ' ');
+        for (int i = 0; normalized && i < length; i++) {
+            char c = expression.charAt(i);
+            normalized = c == ' ' ? expression.charAt(i + 1) != ' ' : !Character.isWhitespace(c);
+        }
+        if (normalized) {
+            return expression;
+        }
+        StringBuilder builder = new StringBuilder(length);
+        boolean space = false;
+        for (int i = 0; i < length; i++) {
+            char c = expression.charAt(i);
+            if (Character.isWhitespace(c)) {
+                space = builder.length() > 0;
+            } else {
+                if (space) {
+                    builder.append(' ');
+                    space = false;
+                }
+                builder.append(c);
+            }
+        }
+        return builder.toString();
+    }
+
+    public void clear() {
+        entries.clear();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public long hits() {
+        return hits;
+    }
+
+    public long misses() {
+        return misses;
+    }
+
+    public long evictions() {
+        return evictions;
+    }
+}
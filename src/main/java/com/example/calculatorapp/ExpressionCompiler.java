@@ -0,0 +1,207 @@
+package com.example.calculatorapp;
+
+import java.util.Arrays;
+import java.util.List;
+
+// Compila un'espressione infissa (es. "(a+2)*b", "(1+2j)*x") in una CompiledExpression.
+// La conversione in notazione postfissa (shunting-yard) e il parsing delle costanti
+// vengono eseguiti una sola volta; la valutazione successiva lavora solo su array di primitivi.
+// compilePostfix accetta invece una lista di token gia' in notazione postfissa.
+// Il programma ottenuto passa da CodeOptimizer prima di diventare una CompiledExpression.
+final class ExpressionCompiler {
+    // Marker for "(" on the operator stack; never emitted.
+    private static final int LPAREN = -1;
+
+    private ExpressionCompiler() {
+    }
+
+    static CompiledExpression compile(String input) {
+        return compile(input, true);
+    }
+
+    // optimize = false keeps the program exactly as parsed (for comparisons in the benchmarks).
+    static CompiledExpression compile(String input, boolean optimize) {
+        Lexer lexer = new Lexer(input);
+        // Every token is at least one character long, so the input length bounds all arrays.
+        int capacity = input.length();
+
+        int[] code = new int[capacity];
+        double[] constantsRe = new double[capacity];
+        double[] constantsIm = new double[capacity];
+        int[] operators = new int[capacity];
+        int codeLength = 0;
+        int constantCount = 0;
+        int operatorCount = 0;
+        int depth = 0;
+        int variableMask = 0;
+        boolean expectOperand = true;
+
+        for (Lexer.TokenType type = lexer.next(); type != Lexer.TokenType.END; type = lexer.next()) {
+            switch (type) {
+                case NUMBER:
+                    requireOperator(expectOperand, input);
+                    constantsRe[constantCount] = lexer.value();
+                    code[codeLength++] = Opcodes.encode(Opcodes.CONST, constantCount++);
+                    depth++;
+                    expectOperand = false;
+                    break;
+                case IMAGINARY:
+                    requireOperator(expectOperand, input);
+                    constantsIm[constantCount] = lexer.value();
+                    code[codeLength++] = Opcodes.encode(Opcodes.CONST, constantCount++);
+                    depth++;
+                    expectOperand = false;
+                    break;
+                case VARIABLE:
+                    requireOperator(expectOperand, input);
+                    code[codeLength++] = Opcodes.encode(Opcodes.LOAD, lexer.slot());
+                    variableMask |= 1 << lexer.slot();
+                    depth++;
+                    expectOperand = false;
+                    break;
+                case LEFT_PAREN:
+                    requireOperator(expectOperand, input);
+                    operators[operatorCount++] = LPAREN;
+                    expectOperand = true;
+                    break;
+                case RIGHT_PAREN:
+                    while (operatorCount > 0 && operators[operatorCount - 1] != LPAREN) {
+                        int op = operators[--operatorCount];
+                        depth = checkedDepth(depth, op, input);
+                        code[codeLength++] = op;
+                    }
+                    if (operatorCount == 0) {
+                        throw new IllegalArgumentException("Mismatched parentheses: " + input);
+                    }
+                    operatorCount--; // Remove "("
+                    expectOperand = false;
+                    break;
+                case OPERATOR:
+                    char symbol = lexer.symbol();
+                    if (expectOperand) {
+                        // Unary sign: "-x" becomes NEG, "+x" is a no-op. Prefix operators never pop.
+                        if (symbol == '-') {
+                            operators[operatorCount++] = Opcodes.NEG;
+                        } else if (symbol != '+') {
+                            throw new IllegalArgumentException("Missing operand before '" + symbol + "': " + input);
+                        }
+                        break;
+                    }
+                    int op = binaryOpcode(symbol);
+                    while (operatorCount > 0 && operators[operatorCount - 1] != LPAREN
+                            && precedence(operators[operatorCount - 1]) >= precedence(op)) {
+                        int top = operators[--operatorCount];
+                        depth = checkedDepth(depth, top, input);
+                        code[codeLength++] = top;
+                    }
+                    operators[operatorCount++] = op;
+                    expectOperand = true;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unexpected token '" + lexer.text() + "': " + input);
+            }
+        }
+
+        while (operatorCount > 0) {
+            int op = operators[--operatorCount];
+            if (op == LPAREN) {
+                throw new IllegalArgumentException("Mismatched parentheses: " + input);
+            }
+            depth = checkedDepth(depth, op, input);
+            code[codeLength++] = op;
+        }
+        if (depth != 1) {
+            throw new IllegalArgumentException("Malformed expression: " + input);
+        }
+
+        if (!optimize) {
+            // codeLength bounds the stack depth
+            return new CompiledExpression(input, Arrays.copyOf(code, codeLength),
+                    Arrays.copyOf(constantsRe, constantCount), Arrays.copyOf(constantsIm, constantCount),
+                    codeLength, variableMask, codeLength);
+        }
+        return CodeOptimizer.optimize(input, code, codeLength, constantsRe, constantsIm, variableMask);
+    }
+
+    // Postfix tokens as produced by convertToPostfix: operators "+ - * /", single-letter variables
+    // and complex literals ("2", "-1.5", "4j", "3+4j").
+    static CompiledExpression compilePostfix(List<String> postfix) {
+        String source = String.join(" ", postfix);
+        int capacity = postfix.size();
+        int[] code = new int[capacity];
+        double[] constantsRe = new double[capacity];
+        double[] constantsIm = new double[capacity];
+        int codeLength = 0;
+        int constantCount = 0;
+        int depth = 0;
+        int variableMask = 0;
+        ComplexParser parser = new ComplexParser();
+
+        for (String token : postfix) {
+            char first = token.isEmpty() ? 0 : token.charAt(0);
+            if (token.length() == 1 && "+-*/".indexOf(first) >= 0) {
+                int op = binaryOpcode(first);
+                depth = checkedDepth(depth, op, source);
+                code[codeLength++] = op;
+            } else if (token.length() == 1 && first >= 'a' && first <= 'z') {
+                code[codeLength++] = Opcodes.encode(Opcodes.LOAD, first - 'a');
+                variableMask |= 1 << (first - 'a');
+                depth++;
+            } else if (parser.parse(token)) {
+                constantsRe[constantCount] = parser.real();
+                constantsIm[constantCount] = parser.imaginary();
+                code[codeLength++] = Opcodes.encode(Opcodes.CONST, constantCount++);
+                depth++;
+            } else {
+                throw new IllegalArgumentException("Unexpected token '" + token + "': " + source);
+            }
+        }
+        if (depth != 1) {
+            throw new IllegalArgumentException("Malformed expression: " + source);
+        }
+
+        return CodeOptimizer.optimize(source, code, codeLength, constantsRe, constantsIm, variableMask);
+    }
+
+    private static int binaryOpcode(char c) {
+        switch (c) {
+            case '+':
+                return Opcodes.ADD;
+            case '-':
+                return Opcodes.SUB;
+            case '*':
+                return Opcodes.MUL;
+            default:
+                return Opcodes.DIV;
+        }
+    }
+
+    private static int precedence(int opcode) {
+        switch (opcode) {
+            case Opcodes.ADD:
+            case Opcodes.SUB:
+                return 1;
+            case Opcodes.MUL:
+            case Opcodes.DIV:
+                return 2;
+            default:
+                return 3; // NEG binds tighter than any binary operator
+        }
+    }
+
+    // Two operands in a row ("3 4", "x (2)"): there is no implicit multiplication.
+    private static void requireOperator(boolean expectOperand, String input) {
+        if (!expectOperand) {
+            throw new IllegalArgumentException("Missing operator: " + input);
+        }
+    }
+
+    // Verifies at compile time that the operator has enough operands, so evaluate() never underflows.
+    private static int checkedDepth(int depth, int opcode, String input) {
+        int arity = opcode == Opcodes.NEG ? 1 : 2;
+        if (depth < arity) {
+            throw new IllegalArgumentException("Not enough operands: " + input);
+        }
+        return depth - arity + 1;
+    }
+}
@@ -0,0 +1,100 @@
+package com.example.calculatorapp;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+// Storico degli ultimi risultati come buffer circolare a capacita' fissa.
+// Le parti reali e immaginarie sono in due double[] allocati una sola volta: append e' O(1)
+// e non alloca; quando il buffer e' pieno il valore piu' vecchio viene sovrascritto.
+// L'indice 0 e' il valore piu' recente.
+public final class HistoryRing implements Iterable<ComplexNumber> {
+    private final double[] re;
+    private final double[] im;
+    private int head; // slot of the next append
+    private int size;
+
+    public HistoryRing(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("History capacity must be positive: " + capacity);
+        }
+        re = new double[capacity];
+        im = new double[capacity];
+    }
+
+    void append(double real, double imaginary) {
+        re[head] = real;
+        im[head] = imaginary;
+        head = head + 1 == re.length ? 0 : head + 1;
+        if (size < re.length) {
+            size++;
+        }
+    }
+
+    void clear() {
+        head = 0;
+        size = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int capacity() {
+        return re.length;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public double re(int index) {
+        return re[slot(index)];
+    }
+
+    public double im(int index) {
+        return im[slot(index)];
+    }
+
+    public ComplexNumber get(int index) {
+        int slot = slot(index);
+        return new ComplexNumber(re[slot], im[slot]);
+    }
+
+    // Iterates over a copy taken now, most recent first: later appends are not visible.
+    @Override
+    public Iterator<ComplexNumber> iterator() {
+        double[] realParts = new double[size];
+        double[] imaginaryParts = new double[size];
+        for (int i = 0; i < size; i++) {
+            int slot = slot(i);
+            realParts[i] = re[slot];
+            imaginaryParts[i] = im[slot];
+        }
+        return new Iterator<>() {
+            private int next;
+
+            @Override
+            public boolean hasNext() {
+                return next < realParts.length;
+            }
+
+            @Override
+            public ComplexNumber next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                ComplexNumber value = new ComplexNumber(realParts[next], imaginaryParts[next]);
+                next++;
+                return value;
+            }
+        };
+    }
+
+    private int slot(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + size);
+        }
+        int slot = head - 1 - index;
+        return slot < 0 ? slot + re.length : slot;
+    }
+}
@@ -0,0 +1,92 @@
+package com.example.calculatorapp;
+
+import javafx.application.Platform;
+import javafx.collections.ObservableList;
+import javafx.scene.control.ListView;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Consumer;
+
+// Aggiorna le ListView dello storico in modo incrementale.
+// Ogni valore viene formattato una sola volta, quando entra nello storico; le stringhe restano
+// negli item della ListView. Gli inserimenti ricevuti durante lo stesso ciclo dell'FX thread
+// vengono accumulati e applicati con un solo Platform.runLater e una sola modifica della lista,
+// invece di svuotare e ricaricare la lista a ogni operazione. Fra un ciclo e l'altro restano in
+// attesa al massimo 'capacity' valori: i piu' vecchi uscirebbero comunque dalla vista.
+// Da usare solo sull'FX Application Thread.
+final class HistoryViewUpdater {
+    private final List<ObservableList<String>> views = new ArrayList<>();
+    private final int capacity;
+    private final ArrayDeque<String> pending = new ArrayDeque<>(); // oldest first
+    private final Consumer<Runnable> scheduler;
+    private boolean flushScheduled;
+
+    HistoryViewUpdater(int capacity) {
+        this(capacity, Platform::runLater);
+    }
+
+    // The scheduler runs flush() later on the FX thread; tests pass their own.
+    HistoryViewUpdater(int capacity, Consumer<Runnable> scheduler) {
+        this.capacity = capacity;
+        this.scheduler = scheduler;
+    }
+
+    void attach(ListView<String> view) {
+        attach(view.getItems());
+    }
+
+    void attach(ObservableList<String> items) {
+        views.add(items);
+    }
+
+    void append(ComplexNumber value) {
+        if (views.isEmpty()) {
+            return;
+        }
+        if (pending.size() == capacity) {
+            pending.removeFirst();
+        }
+        pending.addLast(value.toString());
+        if (!flushScheduled) {
+            flushScheduled = true;
+            scheduler.accept(this::flush);
+        }
+    }
+
+    int pendingCount() {
+        return pending.size();
+    }
+
+    // Called after a full rebuild of the views: pending entries are already part of it.
+    void discardPending() {
+        pending.clear();
+    }
+
+    void flush() {
+        flushScheduled = false;
+        if (pending.isEmpty()) {
+            return;
+        }
+        List<String> head = new ArrayList<>(pending.size()); // most recent first
+        for (Iterator<String> it = pending.descendingIterator(); it.hasNext(); ) {
+            head.add(it.next());
+        }
+        pending.clear();
+
+        for (ObservableList<String> items : views) {
+            int kept = Math.min(items.size(), capacity - head.size());
+            if (kept == items.size()) {
+                items.addAll(0, head);
+            } else {
+                // insertion and trimming as a single change
+                List<String> updated = new ArrayList<>(capacity);
+                updated.addAll(head);
+                updated.addAll(items.subList(0, kept));
+                items.setAll(updated);
+            }
+        }
+    }
+}
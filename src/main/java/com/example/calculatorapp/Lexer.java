@@ -0,0 +1,249 @@
+package com.example.calculatorapp;
+
+// Analizzatore lessicale scritto a mano, condiviso da tutti i punti di ingresso della calcolatrice.
+// Scorre una CharSequence una sola volta e produce token tipizzati; i letterali numerici vengono
+// convertiti direttamente dai caratteri, senza creare sottostringhe.
+// Uso tipico:
+//     lexer.reset(input);
+//     while (lexer.next() != Lexer.TokenType.END) { ... lexer.value() ... }
+// Un'istanza non e' thread-safe; e' pensata per essere riutilizzata dallo stesso chiamante.
+final class Lexer {
+
+    enum TokenType {
+        NUMBER,           // 3, 2.5, .5, 1e-3
+        IMAGINARY,        // 4j, 0.5i: value() is the imaginary part
+        VARIABLE,         // a single lowercase letter, slot() = c - 'a'
+        VARIABLE_COMMAND, // <x, >x: symbol() is '<' or '>'
+        OPERATOR,         // + - * /: symbol() is the operator
+        LEFT_PAREN,
+        RIGHT_PAREN,
+        COMMAND,          // swap, drop, dup, over, clear, sqrt, less, greater, ...
+        INVALID,          // a character no token can start with
+        END
+    }
+
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+
+    private CharSequence input = "";
+    private int position;
+    private int length;
+
+    private TokenType type;
+    private int start;
+    private int end;
+    private double value;
+    private char symbol;
+    private int slot;
+
+    Lexer() {
+    }
+
+    Lexer(CharSequence input) {
+        reset(input);
+    }
+
+    Lexer reset(CharSequence input) {
+        return reset(input, 0, input.length());
+    }
+
+    // Scans only input[from, to); token offsets stay relative to the whole input.
+    Lexer reset(CharSequence input, int from, int to) {
+        this.input = input;
+        this.position = from;
+        this.length = to;
+        this.type = null;
+        return this;
+    }
+
+    TokenType next() {
+        while (position < length && Character.isWhitespace(input.charAt(position))) {
+            position++;
+        }
+        start = position;
+        if (position >= length) {
+            end = position;
+            return type = TokenType.END;
+        }
+
+        char c = input.charAt(position);
+        if (isDigit(c) || (c == '.' && position + 1 < length && isDigit(input.charAt(position + 1)))) {
+            scanNumber();
+        } else if (isLetter(c)) {
+            scanWord();
+        } else if ((c == '<' || c == '>') && position + 1 < length && isLowercase(input.charAt(position + 1))
+                && (position + 2 >= length || !isLetter(input.charAt(position + 2)))) {
+            symbol = c;
+            slot = input.charAt(position + 1) - 'a';
+            position += 2;
+            type = TokenType.VARIABLE_COMMAND;
+        } else {
+            position++;
+            symbol = c;
+            switch (c) {
+                case '+':
+                case '-':
+                case '*':
+                case '/':
+                    type = TokenType.OPERATOR;
+                    break;
+                case '(':
+                    type = TokenType.LEFT_PAREN;
+                    break;
+                case ')':
+                    type = TokenType.RIGHT_PAREN;
+                    break;
+                case '√':
+                case '±':
+                    type = TokenType.COMMAND;
+                    break;
+                default:
+                    type = TokenType.INVALID;
+                    break;
+            }
+        }
+        end = position;
+        return type;
+    }
+
+    TokenType type() {
+        return type;
+    }
+
+    int start() {
+        return start;
+    }
+
+    int end() {
+        return end;
+    }
+
+    // Numeric value of a NUMBER token, imaginary part of an IMAGINARY token.
+    double value() {
+        return value;
+    }
+
+    char symbol() {
+        return symbol;
+    }
+
+    int slot() {
+        return slot;
+    }
+
+    // Allocates: meant for error messages and for tokens that are echoed back to the user.
+    String text() {
+        return input.subSequence(start, end).toString();
+    }
+
+    boolean textEquals(String expected) {
+        if (end - start != expected.length()) {
+            return false;
+        }
+        for (int i = 0; i < expected.length(); i++) {
+            if (input.charAt(start + i) != expected.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void scanWord() {
+        int wordEnd = position;
+        while (wordEnd < length && isLetter(input.charAt(wordEnd))) {
+            wordEnd++;
+        }
+        if (wordEnd - position == 1 && isLowercase(input.charAt(position))) {
+            slot = input.charAt(position) - 'a';
+            type = TokenType.VARIABLE;
+        } else {
+            type = TokenType.COMMAND;
+        }
+        position = wordEnd;
+    }
+
+    // Digits are accumulated into a long mantissa and scaled by an exact power of ten
+    // (Clinger's fast path). Literals outside that range fall back to Double.parseDouble.
+    private void scanNumber() {
+        long mantissa = 0;
+        int digits = 0;
+        int exponent = 0;
+        boolean exact = true;
+
+        while (position < length && isDigit(input.charAt(position))) {
+            if (digits < 18) {
+                mantissa = mantissa * 10 + (input.charAt(position) - '0');
+                if (mantissa != 0) {
+                    digits++;
+                }
+            } else {
+                exact = false;
+            }
+            position++;
+        }
+        if (position < length && input.charAt(position) == '.') {
+            position++;
+            while (position < length && isDigit(input.charAt(position))) {
+                if (digits < 18) {
+                    mantissa = mantissa * 10 + (input.charAt(position) - '0');
+                    if (mantissa != 0) {
+                        digits++;
+                    }
+                    exponent--;
+                } else {
+                    exact = false;
+                }
+                position++;
+            }
+        }
+        if (position < length && (input.charAt(position) == 'e' || input.charAt(position) == 'E')) {
+            int exponentStart = position + 1;
+            boolean negative = false;
+            if (exponentStart < length && (input.charAt(exponentStart) == '+' || input.charAt(exponentStart) == '-')) {
+                negative = input.charAt(exponentStart) == '-';
+                exponentStart++;
+            }
+            if (exponentStart < length && isDigit(input.charAt(exponentStart))) {
+                int explicitExponent = 0;
+                position = exponentStart;
+                while (position < length && isDigit(input.charAt(position))) {
+                    if (explicitExponent < 10000) {
+                        explicitExponent = explicitExponent * 10 + (input.charAt(position) - '0');
+                    }
+                    position++;
+                }
+                exponent += negative ? -explicitExponent : explicitExponent;
+            }
+        }
+        int numberEnd = position;
+
+        if (exact && mantissa < MAX_EXACT_MANTISSA && exponent >= -22 && exponent <= 22) {
+            value = exponent >= 0 ? mantissa * POWERS_OF_TEN[exponent] : mantissa / POWERS_OF_TEN[-exponent];
+        } else {
+            value = Double.parseDouble(input.subSequence(start, numberEnd).toString());
+        }
+
+        if (position < length && (input.charAt(position) == 'i' || input.charAt(position) == 'j')
+                && (position + 1 >= length || !isLetter(input.charAt(position + 1)))) {
+            position++;
+            type = TokenType.IMAGINARY;
+        } else {
+            type = TokenType.NUMBER;
+        }
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isLowercase(char c) {
+        return c >= 'a' && c <= 'z';
+    }
+
+    private static boolean isLetter(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+}
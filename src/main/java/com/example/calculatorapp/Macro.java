@@ -0,0 +1,70 @@
+package com.example.calculatorapp;
+
+// Operazione definita dall'utente, ad esempio "hyp = dup * swap dup * + sqrt".
+// La definizione viene compilata una sola volta (MacroCompiler) in un array di istruzioni con gli
+// stessi Opcodes delle espressioni; le macro usate nel corpo sono gia' espanse, quindi l'esecuzione
+// (CalculatorEngine) e' un unico ciclo sull'array, senza switch su stringhe ne' ricerche per nome.
+// requiredDepth e' il numero di operandi che la macro consuma dallo stack: viene verificato una volta
+// prima dell'esecuzione invece che a ogni istruzione. words() e' il corpo con le macro annidate
+// espanse al momento della definizione e i letterali come sono stati scritti: la modalita' ad alta
+// precisione (PrecisionBackend) lo esegue al posto del codice, che ha costanti double.
+// Immutabile, quindi condivisibile.
+public final class Macro {
+    private final String name;
+    private final String body;
+    private final int[] code;
+    private final double[] constantsRe;
+    private final double[] constantsIm;
+    private final int requiredDepth;
+    private final String[] words;
+
+    Macro(String name, String body, int[] code, double[] constantsRe, double[] constantsIm, int requiredDepth,
+          String[] words) {
+        this.name = name;
+        this.body = body;
+        this.code = code;
+        this.constantsRe = constantsRe;
+        this.constantsIm = constantsIm;
+        this.requiredDepth = requiredDepth;
+        this.words = words;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    // The definition as entered, e.g. "dup * swap dup * + sqrt".
+    public String getBody() {
+        return body;
+    }
+
+    public int getRequiredDepth() {
+        return requiredDepth;
+    }
+
+    int[] code() {
+        return code;
+    }
+
+    double[] constantsRe() {
+        return constantsRe;
+    }
+
+    double[] constantsIm() {
+        return constantsIm;
+    }
+
+    // Not to be modified.
+    String[] words() {
+        return words;
+    }
+
+    int instructionCount() {
+        return code.length;
+    }
+
+    @Override
+    public String toString() {
+        return name + " = " + body;
+    }
+}
@@ -0,0 +1,433 @@
+package com.example.calculatorapp;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+// Compila il corpo di una macro ("dup * swap dup * + sqrt") in una Macro.
+// Parole ammesse, separate da spazi: + - * / sqrt √ +- ± swap drop dup over clear save restore,
+// comandi sulle variabili (<x >x +x -x), letterali complessi e nomi di macro gia' definite, che
+// vengono espanse sul posto. Durante la compilazione si simula la profondita' dello stack per
+// calcolare quanti operandi la macro consuma; un corpo che ne richiede dopo un "clear" viene rifiutato.
+// Ogni istruzione emessa passa da un peephole sulla coda del codice (vedi CodeOptimizer): costanti
+// piegate, "dup drop", "swap swap", "+- +-" e costante + "drop" non arrivano nella Macro. Le costanti
+// sono sempre finite: un letterale che trabocca viene rifiutato e un folding che traboccherebbe
+// non viene fatto, cosi' decompile() puo' sempre scriverle come letterali.
+// Accanto al codice si tiene anche il corpo espanso (Macro.words), senza semplificazioni.
+final class MacroCompiler {
+    private static final String[] RESERVED = {
+            "sqrt", "swap", "drop", "dup", "over", "clear", "save", "restore"
+    };
+
+    // Word for each operand-less opcode, indexed by opcode.
+    private static final String[] WORDS = {
+            null, null, "+", "-", "*", "/", "+-", "sqrt", "swap", "dup", "drop", "over", "clear",
+            null, null, null, "save", "restore"
+    };
+
+    private final String body;
+    private int[] code;
+    private double[] constantsRe;
+    private double[] constantsIm;
+    private int codeLength;
+    private int constantCount;
+    private int depth;         // stack depth relative to the start, after consuming requiredDepth operands
+    private int requiredDepth;
+    private boolean cleared;   // after "clear" the depth is absolute and nothing more can be consumed
+    private final double[] folded = new double[2];
+    private final List<String> expanded = new ArrayList<>();
+
+    private MacroCompiler(String body, int capacity) {
+        this.body = body;
+        code = new int[capacity];
+        constantsRe = new double[capacity];
+        constantsIm = new double[capacity];
+    }
+
+    // Names are lowercase words of at least two letters (single letters are variables)
+    // that do not shadow a built-in operation.
+    static boolean isValidName(String name) {
+        if (name.length() < 2) {
+            return false;
+        }
+        for (int i = 0; i < name.length(); i++) {
+            if (name.charAt(i) < 'a' || name.charAt(i) > 'z') {
+                return false;
+            }
+        }
+        for (String reserved : RESERVED) {
+            if (reserved.equals(name)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    static Macro compile(String name, String body, Map<String, Macro> macros) {
+        if (!isValidName(name)) {
+            throw new IllegalArgumentException("Invalid macro name: " + name);
+        }
+        return compileBody(name, body, macros, -1);
+    }
+
+    // A macro read back from decompile() and its requiredDepth (StateFile.importText): the body may
+    // be empty, and the macro needs at least requiredDepth operands even if the body needs fewer.
+    static Macro compile(String name, String body, int requiredDepth, Map<String, Macro> macros) {
+        if (!isValidName(name) || requiredDepth < 0) {
+            throw new IllegalArgumentException("Invalid macro: " + name + " " + requiredDepth);
+        }
+        return compileBody(name, body, macros, requiredDepth);
+    }
+
+    // A whole line of RPN words entered at once (CalculatorEngine.enterLine), as an unnamed macro.
+    static Macro compileLine(String line, Map<String, Macro> macros) {
+        return compileBody("", line, macros, -1);
+    }
+
+    // minimumDepth < 0: the body is entered by the user and may not be empty.
+    // Pasted lines come through here too, so the words are found in a single scan of the
+    // normalised body, without a regex or an intermediate array.
+    private static Macro compileBody(String name, String body, Map<String, Macro> macros, int minimumDepth) {
+        String normalized = ExpressionCache.normalize(body);
+        if (normalized.isEmpty() && minimumDepth < 0) {
+            throw new IllegalArgumentException("Empty macro: " + name);
+        }
+        // at most one word every two characters
+        MacroCompiler compiler = new MacroCompiler(body, normalized.length() / 2 + 1);
+        ComplexParser parser = new ComplexParser();
+        int start = 0;
+        while (start < normalized.length()) {
+            int end = wordEnd(normalized, start);
+            compiler.compileWord(normalized.substring(start, end), macros, parser);
+            start = end + 1;
+        }
+        return new Macro(name, normalized, Arrays.copyOf(compiler.code, compiler.codeLength),
+                Arrays.copyOf(compiler.constantsRe, compiler.constantCount),
+                Arrays.copyOf(compiler.constantsIm, compiler.constantCount),
+                Math.max(compiler.requiredDepth, minimumDepth), compiler.expanded.toArray(new String[0]));
+    }
+
+    static String[] words(String body) {
+        String normalized = ExpressionCache.normalize(body);
+        List<String> words = new ArrayList<>();
+        int start = 0;
+        while (start < normalized.length()) {
+            int end = wordEnd(normalized, start);
+            words.add(normalized.substring(start, end));
+            start = end + 1;
+        }
+        return words.toArray(new String[0]);
+    }
+
+    // In a normalised body words are separated by a single space.
+    private static int wordEnd(String normalized, int start) {
+        int end = normalized.indexOf(' ', start);
+        return end < 0 ? normalized.length() : end;
+    }
+
+    // The compiled body as words, with nested macros already expanded. Compiling it again with the
+    // macro's requiredDepth (compile(name, body, requiredDepth, macros)) gives the same instructions;
+    // the body is empty when everything simplified away. Constants are finite, see above.
+    static String decompile(Macro macro) {
+        return decompile(macro.code(), macro.constantsRe(), macro.constantsIm());
+    }
+
+    static String decompile(int[] code, double[] constantsRe, double[] constantsIm) {
+        StringBuilder words = new StringBuilder();
+        for (int instruction : code) {
+            if (words.length() > 0) {
+                words.append(' ');
+            }
+            int operand = Opcodes.operand(instruction);
+            char variable = (char) ('a' + operand);
+            switch (Opcodes.opcode(instruction)) {
+                case Opcodes.CONST:
+                    appendLiteral(words, constantsRe[operand], constantsIm[operand]);
+                    break;
+                case Opcodes.LOAD:
+                    words.append('<').append(variable);
+                    break;
+                case Opcodes.STORE:
+                    words.append('>').append(variable);
+                    break;
+                case Opcodes.STORE_ADD:
+                    words.append('+').append(variable);
+                    break;
+                case Opcodes.STORE_SUB:
+                    words.append('-').append(variable);
+                    break;
+                default:
+                    words.append(WORDS[Opcodes.opcode(instruction)]);
+                    break;
+            }
+        }
+        return words.toString();
+    }
+
+    private static void appendLiteral(StringBuilder words, double re, double im) {
+        if (im == 0) {
+            words.append(re);
+        } else if (re == 0) {
+            words.append(im).append('j');
+        } else {
+            words.append(re).append(im < 0 ? '-' : '+').append(Math.abs(im)).append('j');
+        }
+    }
+
+    private void compileWord(String word, Map<String, Macro> macros, ComplexParser parser) {
+        Macro nested = macros.get(word);
+        if (nested != null) {
+            expanded.addAll(Arrays.asList(nested.words()));
+        } else {
+            expanded.add(word);
+        }
+        switch (word) {
+            case "+":
+                emit(Opcodes.ADD, 0);
+                return;
+            case "-":
+                emit(Opcodes.SUB, 0);
+                return;
+            case "*":
+                emit(Opcodes.MUL, 0);
+                return;
+            case "/":
+                emit(Opcodes.DIV, 0);
+                return;
+            case "sqrt":
+            case "√":
+                emit(Opcodes.SQRT, 0);
+                return;
+            case "+-":
+            case "±":
+                emit(Opcodes.NEG, 0);
+                return;
+            case "swap":
+                emit(Opcodes.SWAP, 0);
+                return;
+            case "drop":
+                emit(Opcodes.DROP, 0);
+                return;
+            case "dup":
+                emit(Opcodes.DUP, 0);
+                return;
+            case "over":
+                emit(Opcodes.OVER, 0);
+                return;
+            case "clear":
+                emit(Opcodes.CLEAR, 0);
+                return;
+            case "save":
+                emit(Opcodes.SAVE, 0);
+                return;
+            case "restore":
+                emit(Opcodes.RESTORE, 0);
+                return;
+            default:
+                break;
+        }
+        if (word.length() == 2 && "<>+-".indexOf(word.charAt(0)) >= 0
+                && word.charAt(1) >= 'a' && word.charAt(1) <= 'z') {
+            int slot = word.charAt(1) - 'a';
+            switch (word.charAt(0)) {
+                case '<':
+                    emit(Opcodes.LOAD, slot);
+                    break;
+                case '>':
+                    emit(Opcodes.STORE, slot);
+                    break;
+                case '+':
+                    emit(Opcodes.STORE_ADD, slot);
+                    break;
+                default:
+                    emit(Opcodes.STORE_SUB, slot);
+                    break;
+            }
+            return;
+        }
+        if (nested != null) {
+            inline(nested);
+            return;
+        }
+        if (parser.parse(word)) {
+            if (!Double.isFinite(parser.real()) || !Double.isFinite(parser.imaginary())) {
+                throw new IllegalArgumentException("Constant out of range '" + word + "': " + body);
+            }
+            emit(Opcodes.CONST, addConstant(parser.real(), parser.imaginary()));
+            return;
+        }
+        throw new IllegalArgumentException("Unknown operation '" + word + "': " + body);
+    }
+
+    // Copies the nested macro's instructions, rebasing its constants onto this macro's pool.
+    private void inline(Macro nested) {
+        for (int instruction : nested.code()) {
+            int opcode = Opcodes.opcode(instruction);
+            int operand = Opcodes.operand(instruction);
+            if (opcode == Opcodes.CONST) {
+                operand = addConstant(nested.constantsRe()[operand], nested.constantsIm()[operand]);
+            }
+            emit(opcode, operand);
+        }
+    }
+
+    private int addConstant(double re, double im) {
+        if (constantCount == constantsRe.length) {
+            constantsRe = Arrays.copyOf(constantsRe, constantCount * 2);
+            constantsIm = Arrays.copyOf(constantsIm, constantCount * 2);
+        }
+        constantsRe[constantCount] = re;
+        constantsIm[constantCount] = im;
+        return constantCount++;
+    }
+
+    private void emit(int opcode, int operand) {
+        if (opcode == Opcodes.CLEAR) {
+            depth = 0;
+            cleared = true;
+        } else {
+            consume(arity(opcode), produced(opcode));
+        }
+        if (!simplify(opcode)) {
+            code = ensureCapacity(code, codeLength + 1);
+            code[codeLength++] = Opcodes.encode(opcode, operand);
+        }
+    }
+
+    // True when the instruction cancels out or folds into the end of the code. requiredDepth has
+    // already been counted on the unsimplified body, so a macro still needs the same operands.
+    // The last CONST in the code always refers to the last constant in the pool.
+    private boolean simplify(int opcode) {
+        int last = codeLength > 0 ? Opcodes.opcode(code[codeLength - 1]) : -1;
+        switch (opcode) {
+            case Opcodes.DROP:
+                if (last == Opcodes.CONST) {
+                    constantCount--;
+                } else if (last != Opcodes.DUP) {
+                    return false;
+                }
+                codeLength--;
+                return true;
+            case Opcodes.SWAP:
+                if (last != Opcodes.SWAP) {
+                    return false;
+                }
+                codeLength--;
+                return true;
+            case Opcodes.NEG:
+                if (last == Opcodes.NEG) {
+                    codeLength--;
+                    return true;
+                }
+                if (last == Opcodes.CONST) {
+                    constantsRe[constantCount - 1] = -constantsRe[constantCount - 1];
+                    constantsIm[constantCount - 1] = -constantsIm[constantCount - 1];
+                    return true;
+                }
+                return false;
+            case Opcodes.ADD:
+            case Opcodes.SUB:
+            case Opcodes.MUL:
+            case Opcodes.DIV:
+                if (last != Opcodes.CONST) {
+                    return false;
+                }
+                int b = constantCount - 1;
+                if (codeLength >= 2 && Opcodes.opcode(code[codeLength - 2]) == Opcodes.CONST
+                        && CodeOptimizer.fold(opcode, constantsRe[b - 1], constantsIm[b - 1],
+                        constantsRe[b], constantsIm[b], folded)
+                        && Double.isFinite(folded[0]) && Double.isFinite(folded[1])) {
+                    constantsRe[b - 1] = folded[0];
+                    constantsIm[b - 1] = folded[1];
+                } else if (!CodeOptimizer.isRightIdentity(opcode, constantsRe[b], constantsIm[b])) {
+                    return false;
+                }
+                constantCount--;
+                codeLength--;
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private void consume(int arity, int produced) {
+        if (depth < arity) {
+            if (cleared) {
+                throw new IllegalArgumentException("Not enough operands after clear: " + body);
+            }
+            requiredDepth += arity - depth;
+            depth = arity;
+        }
+        depth += produced - arity;
+    }
+
+    // Operands the instructions take from the stack, -1 if they take some after a "clear". For code
+    // read back from a file (StateFile), whose stored requiredDepth the interpreter cannot trust.
+    static int requiredDepth(int[] code) {
+        int depth = 0;
+        int required = 0;
+        boolean cleared = false;
+        for (int instruction : code) {
+            int opcode = Opcodes.opcode(instruction);
+            if (opcode == Opcodes.CLEAR) {
+                depth = 0;
+                cleared = true;
+                continue;
+            }
+            int arity = arity(opcode);
+            if (depth < arity) {
+                if (cleared) {
+                    return -1;
+                }
+                required += arity - depth;
+                depth = arity;
+            }
+            depth += produced(opcode) - arity;
+        }
+        return required;
+    }
+
+    private static int[] ensureCapacity(int[] array, int capacity) {
+        return array.length >= capacity ? array : Arrays.copyOf(array, Math.max(capacity, array.length * 2));
+    }
+
+    private static int arity(int opcode) {
+        switch (opcode) {
+            case Opcodes.CONST:
+            case Opcodes.LOAD:
+            case Opcodes.SAVE:
+            case Opcodes.RESTORE:
+                return 0;
+            case Opcodes.NEG:
+            case Opcodes.SQRT:
+            case Opcodes.DUP:
+            case Opcodes.DROP:
+            case Opcodes.STORE:
+            case Opcodes.STORE_ADD:
+            case Opcodes.STORE_SUB:
+                return 1;
+            default:
+                return 2; // ADD SUB MUL DIV SWAP OVER
+        }
+    }
+
+    private static int produced(int opcode) {
+        switch (opcode) {
+            case Opcodes.DROP:
+            case Opcodes.STORE:
+            case Opcodes.STORE_ADD:
+            case Opcodes.STORE_SUB:
+            case Opcodes.SAVE:
+            case Opcodes.RESTORE:
+                return 0;
+            case Opcodes.DUP:
+            case Opcodes.SWAP:
+                return 2;
+            case Opcodes.OVER:
+                return 3;
+            default:
+                return 1; // CONST LOAD ADD SUB MUL DIV NEG SQRT
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.example.calculatorapp;
+
+// Codici operativi delle espressioni compilate e delle macro.
+// Ogni istruzione e' un int: il codice operativo negli 8 bit bassi, l'eventuale operando
+// (indice della costante o slot della variabile) nei bit alti.
+final class Opcodes {
+    static final int CONST = 0; // operand: index into the constant pool
+    static final int LOAD = 1;  // operand: variable slot (c - 'a')
+    static final int ADD = 2;
+    static final int SUB = 3;
+    static final int MUL = 4;
+    static final int DIV = 5;
+    static final int NEG = 6;
+    // Stack and variable operations, used only by macros (Macro, MacroCompiler).
+    static final int SQRT = 7;
+    static final int SWAP = 8;
+    static final int DUP = 9;
+    static final int DROP = 10;
+    static final int OVER = 11;
+    static final int CLEAR = 12;
+    static final int STORE = 13;     // ">x", operand: variable slot
+    static final int STORE_ADD = 14; // "+x", operand: variable slot
+    static final int STORE_SUB = 15; // "-x", operand: variable slot
+    static final int SAVE = 16;
+    static final int RESTORE = 17;
+
+    private static final int OPERAND_SHIFT = 8;
+    private static final int OPCODE_MASK = 0xFF;
+
+    private Opcodes() {
+    }
+
+    static int encode(int opcode, int operand) {
+        return opcode | (operand << OPERAND_SHIFT);
+    }
+
+    static int opcode(int instruction) {
+        return instruction & OPCODE_MASK;
+    }
+
+    static int operand(int instruction) {
+        return instruction >>> OPERAND_SHIFT;
+    }
+}
@@ -0,0 +1,96 @@
+package com.example.calculatorapp;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+// Valutazione parallela di molte espressioni infisse indipendenti (es. un file con una formula
+// per riga). L'elenco viene diviso a meta' ricorsivamente fino a blocchi di CHUNK espressioni,
+// che i worker di un ForkJoinPool compilano e valutano; il work stealing bilancia blocchi di costo
+// diverso. Ogni worker usa il proprio EvaluationScratch (ThreadLocal) per gli stack, quindi non
+// c'e' nessuno stato condiviso tranne le variabili, che vengono solo lette.
+// Il risultato dell'espressione i va sempre in posizione i: l'output non dipende dal numero di
+// thread ne' dall'ordine di esecuzione.
+public final class ParallelBatchEvaluator implements AutoCloseable {
+    static final int CHUNK = 256;
+
+    private final ForkJoinPool pool;
+
+    public ParallelBatchEvaluator() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    public ParallelBatchEvaluator(int parallelism) {
+        pool = new ForkJoinPool(parallelism);
+    }
+
+    public int parallelism() {
+        return pool.getParallelism();
+    }
+
+    // Variable c is bindingsRe[c - 'a'] + bindingsIm[c - 'a'] i, and a NaN real part marks it as
+    // undefined (as in CompiledExpression.evaluate). For each expression i, statuses[i] is returned
+    // and the result is in resultRe[i] and resultIm[i] (NaN when the status is not OK). An
+    // expression that does not compile is INVALID_INPUT.
+    public CalculatorEngine.Status[] evaluate(List<String> expressions, double[] bindingsRe, double[] bindingsIm,
+                                              double[] resultRe, double[] resultIm) {
+        int size = expressions.size();
+        if (resultRe.length < size || resultIm.length < size) {
+            throw new IllegalArgumentException("Result arrays shorter than " + size + " expressions");
+        }
+        CalculatorEngine.Status[] statuses = new CalculatorEngine.Status[size];
+        pool.invoke(new Chunk(expressions, bindingsRe, bindingsIm, resultRe, resultIm, statuses, 0, size));
+        return statuses;
+    }
+
+    @Override
+    public void close() {
+        pool.shutdown();
+    }
+
+    // Never serialized: RecursiveAction is Serializable only through ForkJoinTask.
+    @SuppressWarnings("serial")
+    private static final class Chunk extends RecursiveAction {
+        private final List<String> expressions;
+        private final double[] bindingsRe;
+        private final double[] bindingsIm;
+        private final double[] resultRe;
+        private final double[] resultIm;
+        private final CalculatorEngine.Status[] statuses;
+        private final int from;
+        private final int to;
+
+        Chunk(List<String> expressions, double[] bindingsRe, double[] bindingsIm, double[] resultRe,
+              double[] resultIm, CalculatorEngine.Status[] statuses, int from, int to) {
+            this.expressions = expressions;
+            this.bindingsRe = bindingsRe;
+            this.bindingsIm = bindingsIm;
+            this.resultRe = resultRe;
+            this.resultIm = resultIm;
+            this.statuses = statuses;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > CHUNK) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new Chunk(expressions, bindingsRe, bindingsIm, resultRe, resultIm, statuses, from, middle),
+                        new Chunk(expressions, bindingsRe, bindingsIm, resultRe, resultIm, statuses, middle, to));
+                return;
+            }
+            double[] result = new double[2];
+            for (int i = from; i < to; i++) {
+                try {
+                    statuses[i] = CompiledExpression.compile(expressions.get(i)).evaluate(bindingsRe, bindingsIm, result);
+                } catch (IllegalArgumentException e) {
+                    statuses[i] = CalculatorEngine.Status.INVALID_INPUT;
+                }
+                boolean ok = statuses[i] == CalculatorEngine.Status.OK;
+                resultRe[i] = ok ? result[0] : Double.NaN;
+                resultIm[i] = ok ? result[1] : Double.NaN;
+            }
+        }
+    }
+}
@@ -0,0 +1,424 @@
+package com.example.calculatorapp;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Stato di una sessione in modalita' ad alta precisione ("precision 34", vedi
+// CalculatorEngine.setPrecision): stack e variabili sono BigComplex e ogni risultato viene
+// arrotondato a 'precision' cifre significative. Gli input sono gli stessi della modalita' double:
+// letterali (letti dal testo, quindi 0.1 e' esattamente 0.1), + - * / sqrt +-, swap drop dup over
+// clear, <x >x +x -x, save restore, macro, espressioni infisse e righe di piu' parole, con gli
+// stessi Status. Le macro vengono eseguite parola per parola da Macro.words, il corpo espanso alla
+// definizione, perche' le costanti compilate nella Macro sono double; anche le righe vengono
+// compilate come macro, per sapere prima quanti operandi consumano e se scrivono variabili.
+// Ogni scrittura di una variabile viene copiata, arrotondata a double, nel VariableManager
+// dell'engine: calculate(), getVariable() e StateFile continuano a funzionare.
+// Le radici quadrate, l'operazione piu' cara, passano da una cache LRU per valore. La cache
+// appartiene al backend, che ha una sola precisione: cambiare precisione crea un nuovo backend con
+// una cache vuota, quindi un risultato calcolato con meno cifre non viene mai riusato.
+final class PrecisionBackend {
+    static final int SQRT_CACHE_CAPACITY = 256;
+
+    private final int precision;
+    private final MathContext context;
+    private final List<BigComplex> stack;
+    private final BigComplex[] variables;
+    private final ArrayDeque<BigComplex[]> saved; // most recent first
+    private final VariableManager mirror;
+    private final Map<String, Macro> macros;
+    private final ComplexParser parser = new ComplexParser();
+    private final Lexer lexer = new Lexer();
+    private final LinkedHashMap<BigComplex, BigComplex> sqrtCache =
+            new LinkedHashMap<BigComplex, BigComplex>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<BigComplex, BigComplex> eldest) {
+                    return size() > SQRT_CACHE_CAPACITY;
+                }
+            };
+    private long sqrtHits;
+    private long sqrtMisses;
+    private BigComplex result; // the value for the history, see takeResult()
+
+    // stack is bottom first; the values are rounded to the new precision.
+    PrecisionBackend(int precision, List<BigComplex> stack, BigComplex[] variables, ArrayDeque<BigComplex[]> saved,
+                     VariableManager mirror, Map<String, Macro> macros) {
+        this.precision = precision;
+        this.context = BigComplex.context(precision);
+        this.stack = new ArrayList<>(stack.size());
+        for (BigComplex value : stack) {
+            this.stack.add(value.round(context));
+        }
+        this.variables = new BigComplex[VariableManager.SLOTS];
+        for (int slot = 0; slot < VariableManager.SLOTS; slot++) {
+            this.variables[slot] = variables[slot] == null ? null : variables[slot].round(context);
+        }
+        this.saved = saved;
+        this.mirror = mirror;
+        this.macros = macros;
+    }
+
+    int precision() {
+        return precision;
+    }
+
+    int size() {
+        return stack.size();
+    }
+
+    // depth 0 is the top of the stack
+    BigComplex peek(int depth) {
+        return stack.get(stack.size() - 1 - depth);
+    }
+
+    List<BigComplex> stack() {
+        return stack;
+    }
+
+    BigComplex[] variables() {
+        return variables;
+    }
+
+    ArrayDeque<BigComplex[]> saved() {
+        return saved;
+    }
+
+    long sqrtHits() {
+        return sqrtHits;
+    }
+
+    long sqrtMisses() {
+        return sqrtMisses;
+    }
+
+    // The value to record in the history for the last input, or null; cleared by the call.
+    BigComplex takeResult() {
+        BigComplex value = result;
+        result = null;
+        return value;
+    }
+
+    // Same order as CalculatorEngine.enter; definitions stay in the engine.
+    CalculatorEngine.Status enter(String input) {
+        if (parser.parse(input)) {
+            return push(parser.exact());
+        }
+        CalculatorEngine.Status status = apply(input.trim());
+        if (status == CalculatorEngine.Status.UNKNOWN_OPERATION) {
+            status = pushExpression(input);
+        }
+        if (status == CalculatorEngine.Status.INVALID_INPUT && CalculatorEngine.isLine(input)) {
+            status = runLine(input);
+        }
+        return status;
+    }
+
+    CalculatorEngine.Status push(BigComplex value) {
+        BigComplex rounded = value.round(context);
+        stack.add(rounded);
+        result = rounded;
+        return CalculatorEngine.Status.OK;
+    }
+
+    // Reads a variable back from the mirror, after it was set in double precision.
+    void reloadVariable(int slot) {
+        variables[slot] = mirror.isDefined(slot)
+                ? BigComplex.valueOf(mirror.re(slot), mirror.im(slot)).round(context) : null;
+    }
+
+    void reloadVariables() {
+        for (int slot = 0; slot < VariableManager.SLOTS; slot++) {
+            reloadVariable(slot);
+        }
+    }
+
+    CalculatorEngine.Status apply(String operation) {
+        switch (operation) {
+            case "+":
+                return binary(Opcodes.ADD);
+            case "-":
+                return binary(Opcodes.SUB);
+            case "*":
+                return binary(Opcodes.MUL);
+            case "/":
+                return binary(Opcodes.DIV);
+            case "sqrt":
+            case "√":
+                if (stack.isEmpty()) {
+                    return CalculatorEngine.Status.NOT_ENOUGH_OPERANDS;
+                }
+                return replaceTop(1, sqrt(peek(0)));
+            case "+-":
+            case "±":
+                if (stack.isEmpty()) {
+                    return CalculatorEngine.Status.NOT_ENOUGH_OPERANDS;
+                }
+                return replaceTop(1, peek(0).negate());
+            case "swap":
+                if (stack.size() < 2) {
+                    return CalculatorEngine.Status.NOT_ENOUGH_OPERANDS;
+                }
+                stack.add(stack.remove(stack.size() - 2));
+                return CalculatorEngine.Status.OK;
+            case "drop":
+                if (stack.isEmpty()) {
+                    return CalculatorEngine.Status.NOT_ENOUGH_OPERANDS;
+                }
+                stack.remove(stack.size() - 1);
+                return CalculatorEngine.Status.OK;
+            case "dup":
+                if (stack.isEmpty()) {
+                    return CalculatorEngine.Status.NOT_ENOUGH_OPERANDS;
+                }
+                stack.add(peek(0));
+                return CalculatorEngine.Status.OK;
+            case "over":
+                if (stack.size() < 2) {
+                    return CalculatorEngine.Status.NOT_ENOUGH_OPERANDS;
+                }
+                stack.add(peek(1));
+                return CalculatorEngine.Status.OK;
+            case "clear":
+                stack.clear();
+                return CalculatorEngine.Status.OK;
+            case "save":
+                saved.push(variables.clone());
+                if (saved.size() > VariableManager.MAX_SAVED) {
+                    saved.removeLast();
+                }
+                return CalculatorEngine.Status.OK;
+            case "restore":
+                if (saved.isEmpty()) {
+                    return CalculatorEngine.Status.NOTHING_TO_RESTORE;
+                }
+                System.arraycopy(saved.pop(), 0, variables, 0, VariableManager.SLOTS);
+                mirrorAll();
+                return CalculatorEngine.Status.OK;
+            default:
+                if (operation.length() == 2 && "<>+-".indexOf(operation.charAt(0)) >= 0
+                        && operation.charAt(1) >= 'a' && operation.charAt(1) <= 'z') {
+                    return variableOperation(operation.charAt(0), operation.charAt(1) - 'a');
+                }
+                Macro macro = macros.get(operation);
+                if (macro != null) {
+                    return run(macro);
+                }
+                return CalculatorEngine.Status.UNKNOWN_OPERATION;
+        }
+    }
+
+    private CalculatorEngine.Status binary(int opcode) {
+        if (stack.size() < 2) {
+            return CalculatorEngine.Status.NOT_ENOUGH_OPERANDS;
+        }
+        BigComplex a = peek(1);
+        BigComplex b = peek(0);
+        if (opcode == Opcodes.DIV && b.isZero()) {
+            return CalculatorEngine.Status.DIVISION_BY_ZERO;
+        }
+        return replaceTop(2, arithmetic(opcode, a, b));
+    }
+
+    private BigComplex arithmetic(int opcode, BigComplex a, BigComplex b) {
+        switch (opcode) {
+            case Opcodes.ADD:
+                return a.add(b, context);
+            case Opcodes.SUB:
+                return a.subtract(b, context);
+            case Opcodes.MUL:
+                return a.multiply(b, context);
+            default:
+                return a.divide(b, context);
+        }
+    }
+
+    private CalculatorEngine.Status replaceTop(int operands, BigComplex value) {
+        for (int i = 0; i < operands; i++) {
+            stack.remove(stack.size() - 1);
+        }
+        stack.add(value);
+        result = value;
+        return CalculatorEngine.Status.OK;
+    }
+
+    private BigComplex sqrt(BigComplex value) {
+        BigComplex root = sqrtCache.get(value);
+        if (root != null) {
+            sqrtHits++;
+            return root;
+        }
+        sqrtMisses++;
+        root = value.sqrt(context);
+        sqrtCache.put(value, root);
+        return root;
+    }
+
+    private CalculatorEngine.Status variableOperation(char command, int slot) {
+        if (command == '<') {
+            if (variables[slot] == null) {
+                return CalculatorEngine.Status.UNDEFINED_VARIABLE;
+            }
+            return push(variables[slot]);
+        }
+        if (stack.isEmpty()) {
+            return CalculatorEngine.Status.NOT_ENOUGH_OPERANDS;
+        }
+        if (command != '>' && variables[slot] == null) {
+            return CalculatorEngine.Status.UNDEFINED_VARIABLE;
+        }
+        BigComplex value = stack.remove(stack.size() - 1);
+        switch (command) {
+            case '>':
+                variables[slot] = value;
+                break;
+            case '+':
+                variables[slot] = variables[slot].add(value, context);
+                break;
+            default:
+                variables[slot] = variables[slot].subtract(value, context);
+                break;
+        }
+        mirror.save(slot, variables[slot].real().doubleValue(), variables[slot].imaginary().doubleValue());
+        return CalculatorEngine.Status.OK;
+    }
+
+    private void mirrorAll() {
+        mirror.clear();
+        for (int slot = 0; slot < VariableManager.SLOTS; slot++) {
+            if (variables[slot] != null) {
+                mirror.save(slot, variables[slot].real().doubleValue(), variables[slot].imaginary().doubleValue());
+            }
+        }
+    }
+
+    // Like CalculatorEngine.enterLine: the history gets only the final top of the stack, and a
+    // failure restores stack and variables.
+    CalculatorEngine.Status runLine(String line) {
+        Macro program;
+        try {
+            program = MacroCompiler.compileLine(line, macros);
+        } catch (IllegalArgumentException e) {
+            // Rejected by the compiler but not necessarily wrong here (a literal beyond the double
+            // range, a word short of operands after "clear"): word by word, everything copied.
+            return run(MacroCompiler.words(line), 0, true, true);
+        }
+        return run(program);
+    }
+
+    // The expanded words of the program one at a time, all or nothing for macros and lines alike,
+    // as CalculatorEngine.run(Macro) in double mode. Only what the program can touch is copied
+    // first: the entries from its operands up (all of the stack after "clear"), and the variables
+    // and the save ring only if it writes them.
+    private CalculatorEngine.Status run(Macro program) {
+        if (stack.size() < program.getRequiredDepth()) {
+            return CalculatorEngine.Status.NOT_ENOUGH_OPERANDS;
+        }
+        int from = stack.size() - program.getRequiredDepth();
+        boolean writesVariables = false;
+        boolean writesSaved = false;
+        for (int instruction : program.code()) {
+            switch (Opcodes.opcode(instruction)) {
+                case Opcodes.CLEAR:
+                    from = 0;
+                    break;
+                case Opcodes.STORE:
+                case Opcodes.STORE_ADD:
+                case Opcodes.STORE_SUB:
+                    writesVariables = true;
+                    break;
+                case Opcodes.SAVE:
+                case Opcodes.RESTORE:
+                    writesVariables = true;
+                    writesSaved = true;
+                    break;
+                default:
+                    break;
+            }
+        }
+        return run(program.words(), from, writesVariables, writesSaved);
+    }
+
+    private CalculatorEngine.Status run(String[] words, int from, boolean writesVariables, boolean writesSaved) {
+        List<BigComplex> stackBefore = new ArrayList<>(stack.subList(from, stack.size()));
+        BigComplex[] variablesBefore = writesVariables ? variables.clone() : null;
+        ArrayDeque<BigComplex[]> savedBefore = writesSaved ? new ArrayDeque<>(saved) : null;
+        CalculatorEngine.Status status = CalculatorEngine.Status.OK;
+        for (String word : words) {
+            status = parser.parse(word) ? push(parser.exact()) : apply(word);
+            if (status != CalculatorEngine.Status.OK) {
+                break;
+            }
+        }
+        if (status == CalculatorEngine.Status.OK) {
+            result = stack.isEmpty() ? null : peek(0);
+            return status;
+        }
+        stack.subList(Math.min(from, stack.size()), stack.size()).clear();
+        stack.addAll(stackBefore);
+        if (savedBefore != null) {
+            saved.clear();
+            saved.addAll(savedBefore);
+        }
+        if (variablesBefore != null && !Arrays.equals(variables, variablesBefore)) {
+            System.arraycopy(variablesBefore, 0, variables, 0, VariableManager.SLOTS);
+            mirrorAll();
+        }
+        result = null;
+        return status == CalculatorEngine.Status.UNKNOWN_OPERATION ? CalculatorEngine.Status.INVALID_INPUT : status;
+    }
+
+    // The expression is compiled without optimizations, so its constants are the numeric tokens
+    // in input order and can be replaced by their exact values.
+    private CalculatorEngine.Status pushExpression(String input) {
+        CompiledExpression compiled;
+        try {
+            compiled = ExpressionCompiler.compile(input, false);
+        } catch (IllegalArgumentException e) {
+            return CalculatorEngine.Status.INVALID_INPUT;
+        }
+        BigComplex[] constants = new BigComplex[compiled.constantsRe().length];
+        int count = 0;
+        lexer.reset(input);
+        for (Lexer.TokenType type = lexer.next(); type != Lexer.TokenType.END; type = lexer.next()) {
+            if (type == Lexer.TokenType.NUMBER) {
+                constants[count++] = new BigComplex(new BigDecimal(lexer.text()), BigDecimal.ZERO);
+            } else if (type == Lexer.TokenType.IMAGINARY) {
+                String text = lexer.text();
+                constants[count++] = new BigComplex(BigDecimal.ZERO, new BigDecimal(text.substring(0, text.length() - 1)));
+            }
+        }
+
+        BigComplex[] values = new BigComplex[compiled.maxDepth()];
+        int sp = 0;
+        for (int instruction : compiled.code()) {
+            int operand = Opcodes.operand(instruction);
+            switch (Opcodes.opcode(instruction)) {
+                case Opcodes.CONST:
+                    values[sp++] = constants[operand];
+                    break;
+                case Opcodes.LOAD:
+                    if (variables[operand] == null) {
+                        return CalculatorEngine.Status.UNDEFINED_VARIABLE;
+                    }
+                    values[sp++] = variables[operand];
+                    break;
+                case Opcodes.NEG:
+                    values[sp - 1] = values[sp - 1].negate();
+                    break;
+                default:
+                    BigComplex b = values[--sp];
+                    if (Opcodes.opcode(instruction) == Opcodes.DIV && b.isZero()) {
+                        return CalculatorEngine.Status.DIVISION_BY_ZERO;
+                    }
+                    values[sp - 1] = arithmetic(Opcodes.opcode(instruction), values[sp - 1], b);
+                    break;
+            }
+        }
+        return push(values[0]);
+    }
+}
@@ -0,0 +1,492 @@
+package com.example.calculatorapp;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+// Giornale append-only degli input accettati da un CalculatorEngine, per non perdere un calcolo
+// lungo in caso di crash. Ogni input andato a buon fine diventa un record
+//     int lunghezza, int CRC32 (di tipo e testo), byte tipo, testo UTF-8
+// dove il tipo dice come rieseguirlo: INPUT con enter (inputAccepted), LINE con enterLine
+// (lineAccepted), perche' enter prova prima l'espressione infissa e "3 + 4" darebbe un altro
+// risultato. I giornali della versione 1, senza tipo, vengono riletti e riscritti nel formato attuale.
+// Il record viene accodato in un buffer in memoria; un thread di commit lo scrive e fa force() ogni
+// COMMIT_INTERVAL_MILLIS, cosi' un solo fsync copre tutti gli input arrivati nel frattempo
+// (group commit) e il thread della vista non aspetta mai il disco. Un crash perde al massimo
+// gli input dell'ultimo intervallo.
+// Ogni snapshotInterval record lo stato completo (stack, storico, variabili con i "save" in attesa
+// di "restore", macro) viene scritto in uno snapshot e il giornale riparte vuoto, quindi la
+// riesecuzione all'avvio resta limitata. Lo snapshot viene codificato in memoria sul thread
+// dell'engine, nel punto esatto della sequenza di input, ma scritto dal thread di commit: i record
+// precedenti non vengono scritti (sono nello snapshot, tranne se la scrittura fallisce), quelli
+// successivi aspettano in memoria e vanno nel nuovo giornale.
+// Il giornale ha una generazione nell'intestazione e lo snapshot ricorda quella del giornale che
+// lo segue: un giornale piu' vecchio (crash tra snapshot e rotazione) e' gia' contenuto nello
+// snapshot e viene ignorato invece di essere applicato due volte.
+// Lo snapshot contiene solo valori double: in modalita' ad alta precisione ("precision N") non
+// viene scritto e il giornale continua a crescere, cosi' la riesecuzione ricostruisce tutte le cifre.
+// Un record troncato o corrotto in coda (crash durante la scrittura) chiude la riesecuzione e
+// viene tagliato via. I metodi che leggono l'engine vanno chiamati dal suo thread.
+final class SessionJournal implements CalculatorListener, AutoCloseable {
+    static final int DEFAULT_SNAPSHOT_INTERVAL = 10_000;
+    static final long COMMIT_INTERVAL_MILLIS = 10;
+    static final String JOURNAL_FILE = "journal.bin";
+    static final String SNAPSHOT_FILE = "snapshot.bin";
+
+    private static final int MAGIC = 0x43414C4A; // "CALJ"
+    private static final int SNAPSHOT_MAGIC = 0x43414C53; // "CALS"
+    private static final int VERSION = 2;
+    private static final int HEADER_SIZE = 16;
+    private static final int RECORD_HEADER_SIZE = 9;
+    private static final int VERSION_1_RECORD_HEADER_SIZE = 8; // no kind
+    private static final byte INPUT = 0;
+    private static final byte LINE = 1;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final CalculatorEngine engine;
+    private final Path journalPath;
+    private final Path snapshotPath;
+    private final int snapshotInterval;
+    private final ScheduledExecutorService committer;
+    // writeLock (channel, standby) is always taken before appendLock (active, crc)
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private final ReentrantLock appendLock = new ReentrantLock();
+    private final CRC32 crc = new CRC32();
+    private ByteBuffer active = ByteBuffer.allocate(BUFFER_SIZE);
+    private ByteBuffer standby = ByteBuffer.allocate(BUFFER_SIZE);
+    private FileChannel channel;
+    private long generation;
+    private int records; // since the last snapshot, engine thread only
+    // A snapshot encoded by inputAccepted and not yet written, and the records it already contains,
+    // under appendLock.
+    private ByteBuffer pendingSnapshot;
+    private ByteBuffer beforeSnapshot;
+
+    private SessionJournal(Path directory, CalculatorEngine engine, int snapshotInterval) {
+        if (snapshotInterval <= 0) {
+            throw new IllegalArgumentException("Snapshot interval must be positive: " + snapshotInterval);
+        }
+        this.engine = engine;
+        this.journalPath = directory.resolve(JOURNAL_FILE);
+        this.snapshotPath = directory.resolve(SNAPSHOT_FILE);
+        this.snapshotInterval = snapshotInterval;
+        this.committer = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "journal-commit");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    static SessionJournal open(Path directory, CalculatorEngine engine) throws IOException {
+        return open(directory, engine, DEFAULT_SNAPSHOT_INTERVAL);
+    }
+
+    // Restores the engine from the snapshot and the journal in the directory, if any, then records
+    // every input the engine accepts from now on.
+    static SessionJournal open(Path directory, CalculatorEngine engine, int snapshotInterval) throws IOException {
+        Files.createDirectories(directory);
+        SessionJournal journal = new SessionJournal(directory, engine, snapshotInterval);
+        try {
+            journal.recover();
+        } catch (IOException e) {
+            journal.committer.shutdown();
+            if (journal.channel != null) {
+                journal.channel.close();
+            }
+            throw e;
+        }
+        engine.addListener(journal);
+        journal.committer.scheduleWithFixedDelay(journal::commit,
+                COMMIT_INTERVAL_MILLIS, COMMIT_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+        return journal;
+    }
+
+    private void recover() throws IOException {
+        long snapshotGeneration = Files.exists(snapshotPath) ? readSnapshot() : 0;
+        long end = Files.exists(journalPath) ? replay(snapshotGeneration) : -1;
+        if (end < 0) {
+            rotate(snapshotGeneration);
+        } else if (channel == null) { // else already rewritten by replay
+            channel = FileChannel.open(journalPath, StandardOpenOption.WRITE);
+            channel.truncate(end);
+            channel.position(end);
+        }
+    }
+
+    // Returns the generation of the journal that follows the snapshot.
+    private long readSnapshot() throws IOException {
+        ByteBuffer buffer = StateFile.mapVerified(snapshotPath, SNAPSHOT_MAGIC);
+        long nextGeneration;
+        double[] stackRe;
+        double[] stackIm;
+        double[] historyRe;
+        double[] historyIm;
+        try {
+            nextGeneration = buffer.getLong();
+            stackRe = new double[buffer.getInt()];
+            stackIm = new double[stackRe.length];
+            for (int i = 0; i < stackRe.length; i++) {
+                stackRe[i] = buffer.getDouble();
+                stackIm[i] = buffer.getDouble();
+            }
+            historyRe = new double[buffer.getInt()];
+            historyIm = new double[historyRe.length];
+            for (int i = 0; i < historyRe.length; i++) {
+                historyRe[i] = buffer.getDouble();
+                historyIm[i] = buffer.getDouble();
+            }
+        } catch (RuntimeException e) {
+            throw new IOException("Malformed snapshot: " + snapshotPath, e);
+        }
+        StateFile.decode(buffer, snapshotPath, engine);
+        int[] savedMasks;
+        double[][] savedRe;
+        double[][] savedIm;
+        try {
+            // absent in snapshots written before the saved variables were included
+            savedMasks = new int[buffer.hasRemaining() ? buffer.getInt() : 0];
+            savedRe = new double[savedMasks.length][];
+            savedIm = new double[savedMasks.length][];
+            for (int i = 0; i < savedMasks.length; i++) {
+                savedMasks[i] = buffer.getInt();
+                savedRe[i] = new double[VariableManager.SLOTS];
+                savedIm[i] = new double[VariableManager.SLOTS];
+                for (int slot = 0; slot < VariableManager.SLOTS; slot++) {
+                    if ((savedMasks[i] & (1 << slot)) != 0) {
+                        savedRe[i][slot] = buffer.getDouble();
+                        savedIm[i][slot] = buffer.getDouble();
+                    }
+                }
+            }
+        } catch (RuntimeException e) {
+            throw new IOException("Malformed snapshot: " + snapshotPath, e);
+        }
+        engine.getVariables().replaceSaved(savedMasks, savedRe, savedIm);
+        engine.replaceStack(stackRe, stackIm, historyRe, historyIm);
+        return nextGeneration;
+    }
+
+    // Enters the records again; returns the offset after the last valid one, or -1 when the
+    // journal is older than the snapshot. A version 1 journal is replaced by one in the current
+    // format with the same records and generation, and left open.
+    private long replay(long snapshotGeneration) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel in = FileChannel.open(journalPath, StandardOpenOption.READ)) {
+            buffer = in.map(FileChannel.MapMode.READ_ONLY, 0, in.size());
+        }
+        if (buffer.remaining() < HEADER_SIZE || buffer.getInt() != MAGIC) {
+            throw new IOException("Not a calculator journal: " + journalPath);
+        }
+        int version = buffer.getInt();
+        if (version != VERSION && version != 1) {
+            throw new IOException("Unsupported journal version " + version + ": " + journalPath);
+        }
+        long journalGeneration = buffer.getLong();
+        if (journalGeneration < snapshotGeneration) {
+            return -1;
+        }
+        if (journalGeneration > snapshotGeneration) {
+            throw new IOException("Missing snapshot for journal generation " + journalGeneration + ": " + journalPath);
+        }
+        boolean upgrade = version == 1;
+        int recordHeaderSize = upgrade ? VERSION_1_RECORD_HEADER_SIZE : RECORD_HEADER_SIZE;
+        // every version 1 record grows by the kind byte
+        ByteBuffer upgraded = upgrade
+                ? ByteBuffer.allocate(buffer.limit() + buffer.limit() / VERSION_1_RECORD_HEADER_SIZE) : null;
+        CRC32 check = new CRC32();
+        while (buffer.remaining() >= recordHeaderSize) {
+            int start = buffer.position();
+            int length = buffer.getInt();
+            int checksum = buffer.getInt();
+            byte kind = upgrade ? INPUT : buffer.get();
+            if (length < 0 || length > buffer.remaining()) {
+                buffer.position(start);
+                break;
+            }
+            byte[] bytes = new byte[length];
+            buffer.get(bytes);
+            check.reset();
+            if (!upgrade) {
+                check.update(kind);
+            }
+            check.update(bytes);
+            if ((int) check.getValue() != checksum || (kind != INPUT && kind != LINE)) {
+                buffer.position(start);
+                break;
+            }
+            String input = new String(bytes, StandardCharsets.UTF_8);
+            if (kind == LINE) {
+                engine.enterLine(input);
+            } else {
+                engine.enter(input);
+            }
+            if (upgraded != null) {
+                putRecord(upgraded, kind, bytes);
+            }
+            records++;
+        }
+        if (upgraded != null) {
+            rotate(journalGeneration, upgraded.flip());
+            return channel.position();
+        }
+        generation = journalGeneration;
+        return buffer.position();
+    }
+
+    @Override
+    public void inputAccepted(String input) {
+        accepted(INPUT, input);
+    }
+
+    @Override
+    public void lineAccepted(String line) {
+        accepted(LINE, line);
+    }
+
+    private void accepted(byte kind, String input) {
+        byte[] bytes = input.getBytes(StandardCharsets.UTF_8);
+        while (!append(kind, bytes)) {
+            commit(); // buffer full: write it now instead of waiting for the committer
+        }
+        if (++records >= snapshotInterval && engine.getPrecision() == 0) {
+            ByteBuffer payload = encodeSnapshot();
+            appendLock.lock();
+            try {
+                if (beforeSnapshot == null) {
+                    beforeSnapshot = active;
+                    active = ByteBuffer.allocate(BUFFER_SIZE);
+                } else {
+                    // the previous snapshot is not written yet: this one replaces it
+                    beforeSnapshot = concat(beforeSnapshot, active);
+                    active.clear();
+                }
+                pendingSnapshot = payload;
+            } finally {
+                appendLock.unlock();
+            }
+            records = 0;
+        }
+    }
+
+    private static ByteBuffer concat(ByteBuffer first, ByteBuffer second) {
+        second.flip();
+        ByteBuffer joined = first.remaining() >= second.remaining()
+                ? first : ByteBuffer.allocate(first.position() + second.remaining()).put(first.flip());
+        return joined.put(second);
+    }
+
+    private boolean append(byte kind, byte[] bytes) {
+        appendLock.lock();
+        try {
+            int size = RECORD_HEADER_SIZE + bytes.length;
+            if (active.remaining() < size) {
+                if (active.position() > 0) {
+                    return false;
+                }
+                active = ByteBuffer.allocate(size); // a single input larger than the buffer
+            }
+            putRecord(active, kind, bytes);
+            return true;
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    // Under appendLock, or during recovery before the committer starts.
+    private void putRecord(ByteBuffer buffer, byte kind, byte[] bytes) {
+        crc.reset();
+        crc.update(kind);
+        crc.update(bytes);
+        buffer.putInt(bytes.length).putInt((int) crc.getValue()).put(kind).put(bytes);
+    }
+
+    private void commit() {
+        try {
+            flush();
+        } catch (IOException e) {
+            System.err.println("Could not write journal " + journalPath + ": " + e.getMessage());
+        }
+    }
+
+    // Writes the pending snapshot, if any, then the pending records, and forces them to disk with
+    // a single fsync. The buffers are swapped under appendLock, so inputAccepted is never blocked
+    // by the disk.
+    void flush() throws IOException {
+        writeLock.lock();
+        try {
+            ByteBuffer snapshot;
+            ByteBuffer before;
+            appendLock.lock();
+            try {
+                snapshot = pendingSnapshot;
+                before = beforeSnapshot;
+                pendingSnapshot = null;
+                beforeSnapshot = null;
+            } finally {
+                appendLock.unlock();
+            }
+            if (snapshot != null) {
+                try {
+                    writeSnapshot(snapshot);
+                } catch (IOException e) {
+                    // keep journaling: the records go to the current journal after all
+                    System.err.println("Could not write snapshot " + snapshotPath + ": " + e.getMessage());
+                    write(before.flip());
+                    channel.force(false);
+                }
+            }
+            appendLock.lock();
+            try {
+                if (active.position() == 0) {
+                    return;
+                }
+                ByteBuffer pending = active;
+                active = standby;
+                standby = pending;
+            } finally {
+                appendLock.unlock();
+            }
+            try {
+                write(standby.flip());
+                channel.force(false);
+            } finally {
+                standby.clear();
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private void write(ByteBuffer records) throws IOException {
+        while (records.hasRemaining()) {
+            channel.write(records);
+        }
+    }
+
+    // Writes the whole state to the snapshot now and starts a new, empty journal. The records
+    // still in memory are already part of the snapshot and are dropped. Engine thread only.
+    void snapshot() throws IOException {
+        writeLock.lock();
+        try {
+            ByteBuffer payload = encodeSnapshot();
+            appendLock.lock();
+            try {
+                pendingSnapshot = null;
+                beforeSnapshot = null;
+                active.clear();
+            } finally {
+                appendLock.unlock();
+            }
+            writeSnapshot(payload);
+            records = 0;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    // Under writeLock: the snapshot gets the generation of the journal that replaces the current one.
+    private void writeSnapshot(ByteBuffer payload) throws IOException {
+        payload.putLong(0, generation + 1);
+        StateFile.writeAtomically(snapshotPath, SNAPSHOT_MAGIC, payload);
+        rotate(generation + 1);
+    }
+
+    // The generation is filled in by writeSnapshot. Engine thread only.
+    private ByteBuffer encodeSnapshot() {
+        ByteBuffer state = StateFile.encode(engine);
+        HistoryRing history = engine.getHistory();
+        VariableManager variables = engine.getVariables();
+        int stackSize = engine.stackSize();
+        int savedSize = 4;
+        for (int index = 0; index < variables.savedCount(); index++) {
+            savedSize += 4 + Integer.bitCount(variables.savedMask(index)) * 16;
+        }
+        ByteBuffer payload = ByteBuffer.allocate(16 + (stackSize + history.size()) * 16 + state.remaining() + savedSize);
+        payload.putLong(0);
+        payload.putInt(stackSize);
+        for (int depth = stackSize - 1; depth >= 0; depth--) {
+            payload.putDouble(engine.peekReal(depth)).putDouble(engine.peekImaginary(depth));
+        }
+        payload.putInt(history.size());
+        for (int index = history.size() - 1; index >= 0; index--) {
+            payload.putDouble(history.re(index)).putDouble(history.im(index));
+        }
+        payload.put(state);
+        // "save"d variables, most recent first
+        payload.putInt(variables.savedCount());
+        for (int index = 0; index < variables.savedCount(); index++) {
+            int mask = variables.savedMask(index);
+            double[] re = variables.savedRealParts(index);
+            double[] im = variables.savedImaginaryParts(index);
+            payload.putInt(mask);
+            for (int slot = 0; slot < VariableManager.SLOTS; slot++) {
+                if ((mask & (1 << slot)) != 0) {
+                    payload.putDouble(re[slot]).putDouble(im[slot]);
+                }
+            }
+        }
+        return payload.flip();
+    }
+
+    // Replaces the journal with an empty one of the given generation, through a temporary file.
+    private void rotate(long newGeneration) throws IOException {
+        rotate(newGeneration, ByteBuffer.allocate(0));
+    }
+
+    // The same, with the given records already in the new journal.
+    private void rotate(long newGeneration, ByteBuffer records) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE + records.remaining());
+        header.putInt(MAGIC).putInt(VERSION).putLong(newGeneration).put(records).flip();
+        Path temporary = Files.createTempFile(journalPath.getParent(), JOURNAL_FILE, ".tmp");
+        try {
+            try (FileChannel out = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+                while (header.hasRemaining()) {
+                    out.write(header);
+                }
+                out.force(true);
+            }
+            Files.move(temporary, journalPath, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            StateFile.forceDirectory(journalPath.getParent());
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+        if (channel != null) {
+            channel.close();
+        }
+        channel = FileChannel.open(journalPath, StandardOpenOption.WRITE);
+        channel.position(header.limit());
+        generation = newGeneration;
+    }
+
+    // Stops recording and compacts everything into the snapshot, so the next start has nothing to replay.
+    @Override
+    public void close() throws IOException {
+        engine.removeListener(this);
+        committer.shutdown();
+        try {
+            committer.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            if (engine.getPrecision() == 0) {
+                snapshot();
+            } else {
+                flush();
+            }
+        } finally {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.calculatorapp;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Registro delle sessioni ospitate nella stessa JVM.
+// Ogni sessione ha il proprio CalculatorEngine; il registro e' una ConcurrentHashMap e gli input
+// inviati con submit vengono eseguiti su virtual thread, uno per richiesta, cosi' che migliaia di
+// sessioni possano lavorare in parallelo. Richieste diverse per la stessa sessione vengono
+// serializzate dal lock della sessione.
+public final class SessionRegistry implements AutoCloseable {
+    private final ConcurrentHashMap<String, CalculatorSession> sessions = new ConcurrentHashMap<>();
+    private final ExecutorService executor;
+    private final int historySize;
+
+    public SessionRegistry() {
+        this(Executors.newVirtualThreadPerTaskExecutor(), CalculatorEngine.DEFAULT_HISTORY_SIZE);
+    }
+
+    SessionRegistry(ExecutorService executor, int historySize) {
+        this.executor = executor;
+        this.historySize = historySize;
+    }
+
+    // Returns the session with this id, creating it on first use.
+    public CalculatorSession session(String id) {
+        return sessions.computeIfAbsent(id, key -> new CalculatorSession(key, new CalculatorEngine(historySize)));
+    }
+
+    public CalculatorSession get(String id) {
+        return sessions.get(id);
+    }
+
+    public boolean remove(String id) {
+        return sessions.remove(id) != null;
+    }
+
+    public int size() {
+        return sessions.size();
+    }
+
+    // Runs the inputs in order on the session, on a virtual thread; completes with one status per input.
+    public CompletableFuture<CalculatorEngine.Status[]> submit(String id, List<String> inputs) {
+        CalculatorSession session = session(id);
+        return CompletableFuture.supplyAsync(() -> session.enterAll(inputs), executor);
+    }
+
+    // Waits for the submitted work to finish.
+    @Override
+    public void close() {
+        executor.close();
+    }
+}
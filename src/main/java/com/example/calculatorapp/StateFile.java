@@ -0,0 +1,293 @@
+package com.example.calculatorapp;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+// Salvataggio su disco delle variabili e delle macro di una sessione.
+// Il formato binario e' quello veloce: all'avvio il file viene mappato in memoria con FileChannel.map
+// e letto in un solo passaggio, senza analizzare testo; le macro vengono ricostruite direttamente dal
+// loro array di istruzioni, senza ricompilarle. Struttura (big-endian):
+//     int magic 'CALC', int versione, int lunghezza del payload, int CRC32 del payload, payload
+//     payload: int mask delle variabili definite, (double re, double im) per ogni slot definito,
+//              int numero di macro, per ogni macro: nome e corpo (int lunghezza + UTF-8),
+//              int requiredDepth, int n + n istruzioni, int m + m parti reali + m parti immaginarie
+// La scrittura e' atomica: file temporaneo nella stessa cartella, force, poi ATOMIC_MOVE.
+// Il formato testuale (exportText/importText) serve solo per leggere o modificare lo stato a mano.
+final class StateFile {
+    private static final int MAGIC = 0x43414C43; // "CALC"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+
+    private StateFile() {
+    }
+
+    static void write(CalculatorEngine engine, Path path) throws IOException {
+        writeAtomically(path, MAGIC, encode(engine));
+    }
+
+    // Replaces the engine's variables and macros with the file contents. The engine is left
+    // untouched when the file is truncated, corrupted or of an unknown version.
+    static void read(Path path, CalculatorEngine engine) throws IOException {
+        decode(mapVerified(path, MAGIC), path, engine);
+    }
+
+    // Header (magic, version, length, CRC32) + payload, through a temporary file and ATOMIC_MOVE.
+    // Also used by SessionJournal for its snapshots, with a different magic.
+    static void writeAtomically(Path path, int magic, ByteBuffer payload) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(payload.duplicate());
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(magic).putInt(VERSION).putInt(payload.remaining()).putInt((int) crc.getValue()).flip();
+
+        Path directory = path.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        Path temporary = Files.createTempFile(directory, path.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+                while (header.hasRemaining() || payload.hasRemaining()) {
+                    channel.write(new ByteBuffer[]{header, payload});
+                }
+                channel.force(true);
+            }
+            Files.move(temporary, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            forceDirectory(directory);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    // Makes a rename in the directory durable. Not every platform can open a directory (Windows
+    // cannot), and there the rename is all we get.
+    static void forceDirectory(Path directory) throws IOException {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException | UnsupportedOperationException e) {
+            // best effort, see above
+        }
+    }
+
+    // Maps the file and checks its header and checksum; returns the payload.
+    static ByteBuffer mapVerified(Path path, int magic) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_SIZE || channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Not a calculator state file: " + path);
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (buffer.getInt() != magic) {
+            throw new IOException("Not a calculator state file: " + path);
+        }
+        int version = buffer.getInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported state file version " + version + ": " + path);
+        }
+        int length = buffer.getInt();
+        int checksum = buffer.getInt();
+        if (length != buffer.remaining()) {
+            throw new IOException("Truncated state file: " + path);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(buffer.duplicate());
+        if ((int) crc.getValue() != checksum) {
+            throw new IOException("Checksum mismatch in state file: " + path);
+        }
+        return buffer;
+    }
+
+    // Reads variables and macros from the payload and, only if all of it is valid, puts them in the engine.
+    static void decode(ByteBuffer buffer, Path path, CalculatorEngine engine) throws IOException {
+        VariableManager variables = new VariableManager();
+        Macro[] macros;
+        try {
+            int mask = buffer.getInt();
+            for (int slot = 0; slot < VariableManager.SLOTS; slot++) {
+                if ((mask & (1 << slot)) != 0) {
+                    variables.save(slot, buffer.getDouble(), buffer.getDouble());
+                }
+            }
+            macros = new Macro[buffer.getInt()];
+            for (int i = 0; i < macros.length; i++) {
+                macros[i] = readMacro(buffer);
+            }
+        } catch (RuntimeException e) {
+            // BufferUnderflowException, NegativeArraySizeException: the checksum matched but the layout does not
+            throw new IOException("Malformed state file: " + path, e);
+        }
+
+        engine.replaceState(variables, macros);
+    }
+
+    static ByteBuffer encode(CalculatorEngine engine) {
+        VariableManager variables = engine.getVariables();
+        int size = 8 + Integer.bitCount(variables.definedMask()) * 16;
+        byte[][] names = new byte[engine.getMacros().size()][];
+        byte[][] bodies = new byte[names.length][];
+        int index = 0;
+        for (Macro macro : engine.getMacros()) {
+            names[index] = macro.getName().getBytes(StandardCharsets.UTF_8);
+            bodies[index] = macro.getBody().getBytes(StandardCharsets.UTF_8);
+            size += 20 + names[index].length + bodies[index].length
+                    + macro.code().length * 4 + macro.constantsRe().length * 16;
+            index++;
+        }
+
+        ByteBuffer payload = ByteBuffer.allocate(size);
+        payload.putInt(variables.definedMask());
+        for (int slot = 0; slot < VariableManager.SLOTS; slot++) {
+            if (variables.isDefined(slot)) {
+                payload.putDouble(variables.re(slot)).putDouble(variables.im(slot));
+            }
+        }
+        payload.putInt(names.length);
+        index = 0;
+        for (Macro macro : engine.getMacros()) {
+            payload.putInt(names[index].length).put(names[index]);
+            payload.putInt(bodies[index].length).put(bodies[index]);
+            payload.putInt(macro.getRequiredDepth());
+            payload.putInt(macro.code().length);
+            for (int instruction : macro.code()) {
+                payload.putInt(instruction);
+            }
+            payload.putInt(macro.constantsRe().length);
+            for (double re : macro.constantsRe()) {
+                payload.putDouble(re);
+            }
+            for (double im : macro.constantsIm()) {
+                payload.putDouble(im);
+            }
+            index++;
+        }
+        return payload.flip();
+    }
+
+    private static Macro readMacro(ByteBuffer buffer) throws IOException {
+        String name = readString(buffer);
+        String body = readString(buffer);
+        int requiredDepth = buffer.getInt();
+        int[] code = new int[buffer.getInt()];
+        for (int i = 0; i < code.length; i++) {
+            code[i] = buffer.getInt();
+        }
+        double[] constantsRe = new double[buffer.getInt()];
+        double[] constantsIm = new double[constantsRe.length];
+        for (int i = 0; i < constantsRe.length; i++) {
+            constantsRe[i] = buffer.getDouble();
+        }
+        for (int i = 0; i < constantsIm.length; i++) {
+            constantsIm[i] = buffer.getDouble();
+        }
+        if (!MacroCompiler.isValidName(name) || requiredDepth < 0) {
+            throw new IOException("Invalid macro in state file: " + name);
+        }
+        // The interpreter trusts the operands and requiredDepth, so they are checked here once.
+        for (int instruction : code) {
+            if (!isValidInstruction(instruction, constantsRe.length)) {
+                throw new IOException("Invalid macro in state file: " + name);
+            }
+        }
+        int needed = MacroCompiler.requiredDepth(code);
+        if (needed < 0 || requiredDepth < needed) {
+            throw new IOException("Invalid macro in state file: " + name);
+        }
+        // The nested macros of the body may have changed since, so the words come from the code.
+        return new Macro(name, body, code, constantsRe, constantsIm, requiredDepth,
+                MacroCompiler.words(MacroCompiler.decompile(code, constantsRe, constantsIm)));
+    }
+
+    private static boolean isValidInstruction(int instruction, int constantCount) {
+        int operand = Opcodes.operand(instruction);
+        switch (Opcodes.opcode(instruction)) {
+            case Opcodes.CONST:
+                return operand < constantCount;
+            case Opcodes.LOAD:
+            case Opcodes.STORE:
+            case Opcodes.STORE_ADD:
+            case Opcodes.STORE_SUB:
+                return operand < VariableManager.SLOTS;
+            default:
+                return Opcodes.opcode(instruction) <= Opcodes.RESTORE;
+        }
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // One entry per line:
+    //     var x <re> <im>
+    //     macro <name> <requiredDepth> <body>, e.g. macro hyp 2 dup * swap dup * + sqrt
+    // Macro bodies are written in their compiled (inlined) form, so they do not depend on other
+    // macros; requiredDepth is written too because simplification may drop operand uses
+    // ("swap swap 1 +" needs 2 operands, its body "1.0 +" only 1) and the body may be empty. On
+    // import the body is compiled again, so a requiredDepth lower than the body needs is raised.
+    static void exportText(CalculatorEngine engine, Writer writer) throws IOException {
+        VariableManager variables = engine.getVariables();
+        for (int slot = 0; slot < VariableManager.SLOTS; slot++) {
+            if (variables.isDefined(slot)) {
+                writer.append("var ").append((char) ('a' + slot)).append(' ')
+                        .append(String.valueOf(variables.re(slot))).append(' ')
+                        .append(String.valueOf(variables.im(slot))).append('\n');
+            }
+        }
+        for (Macro macro : engine.getMacros()) {
+            // Macros compiled here never hold them, but an old binary state file might.
+            for (int i = 0; i < macro.constantsRe().length; i++) {
+                if (!Double.isFinite(macro.constantsRe()[i]) || !Double.isFinite(macro.constantsIm()[i])) {
+                    throw new IOException("Macro " + macro.getName() + " has a constant out of range");
+                }
+            }
+            String body = MacroCompiler.decompile(macro);
+            writer.append("macro ").append(macro.getName()).append(' ')
+                    .append(String.valueOf(macro.getRequiredDepth()))
+                    .append(body.isEmpty() ? "" : " ").append(body).append('\n');
+        }
+        writer.flush();
+    }
+
+    // Adds the entries to the engine; blank lines and lines starting with '#' are skipped.
+    static void importText(BufferedReader reader, CalculatorEngine engine) throws IOException {
+        String line;
+        int number = 0;
+        while ((line = reader.readLine()) != null) {
+            number++;
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            String[] fields = line.split("\\s+", 4);
+            boolean ok = fields.length >= 3;
+            try {
+                if (ok && fields[0].equals("var") && fields[1].length() == 1) {
+                    ok = fields.length == 4;
+                    if (ok) {
+                        engine.setVariable(fields[1].charAt(0), Double.parseDouble(fields[2]), Double.parseDouble(fields[3]));
+                    }
+                } else {
+                    // the body is missing when it simplified to nothing
+                    String body = fields.length == 4 ? fields[3] : "";
+                    ok = ok && fields[0].equals("macro")
+                            && engine.define(fields[1], body, Integer.parseInt(fields[2])) == CalculatorEngine.Status.OK;
+                }
+            } catch (IllegalArgumentException e) {
+                ok = false; // NumberFormatException, or not a variable name
+            }
+            if (!ok) {
+                throw new IOException("Invalid entry on line " + number + ": " + line);
+            }
+        }
+    }
+}
@@ -1,26 +1,242 @@
 package com.example.calculatorapp;
 
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Stack;
+import java.util.Arrays;
 
+// Variabili della calcolatrice: una per lettera a-z, con valore complesso.
+// I valori sono in due double[26] (parte reale e immaginaria) indicizzati con lo slot c - 'a';
+// una bitmask registra quali variabili sono definite. Lettura, salvataggio, somma e sottrazione
+// sono O(1) e non allocano, tranne la copia dopo uno snapshot (vedi sotto). Lo slot viene
+// risolto una volta sola, quando si analizza l'input (Lexer.slot(), ExpressionCompiler), e gli
+// evaluator lavorano direttamente sugli array.
+// saveAll/restoreAll salvano e ripristinano l'intero insieme di variabili su uno stack di snapshot.
+// Uno snapshot e' O(1): condivide gli array correnti (copy-on-write) e solo la prima modifica
+// successiva li copia (2 x 26 double). Lo stack ha al massimo MAX_SAVED snapshot; oltre, il piu'
+// vecchio viene scartato, quindi la memoria resta limitata per quanto spesso si salvi.
+// Ogni scrittura assegna allo slot una versione crescente: ExpressionCache la usa per sapere se
+// un risultato in cache dipende da variabili cambiate nel frattempo.
+// checkpoint/rollback (CalculatorEngine.enterLine) sono O(1) come saveAll e comprendono anche lo
+// stack degli snapshot, cosi' un "save" o un "restore" in una riga fallita vengono annullati.
+// Non e' thread-safe: appartiene al CalculatorEngine della sessione.
+public final class VariableManager {
+    public static final int SLOTS = 26;
+    public static final int MAX_SAVED = 64;
 
+    private double[] re = new double[SLOTS];
+    private double[] im = new double[SLOTS];
+    private int definedMask;
+    private boolean shared; // re/im may also be referenced by a snapshot
+    private final long[] versions = new long[SLOTS];
+    private long clock;
 
-public class VariableManager {
-    private Map<Character, String> variables = new HashMap<>();
+    // Snapshots as a ring of (re, im, mask); savedTop is the slot of the next save.
+    private final double[][] savedRe = new double[MAX_SAVED][];
+    private final double[][] savedIm = new double[MAX_SAVED][];
+    private final int[] savedMask = new int[MAX_SAVED];
+    private int savedTop;
+    private int savedCount;
 
-    public void saveVariable(String variable, String value) {
-        variables.put(variable.charAt(0), value);
+    // A single rollback point (checkpoint/rollback).
+    private double[] checkpointRe;
+    private double[] checkpointIm;
+    private int checkpointMask;
+    private final double[][] checkpointSavedRe = new double[MAX_SAVED][];
+    private final double[][] checkpointSavedIm = new double[MAX_SAVED][];
+    private final int[] checkpointSavedMask = new int[MAX_SAVED];
+    private int checkpointSavedTop;
+    private int checkpointSavedCount;
+
+    public static int slot(char name) {
+        if (name < 'a' || name > 'z') {
+            throw new IllegalArgumentException("Invalid variable name: " + name);
+        }
+        return name - 'a';
+    }
+
+    public boolean isDefined(int slot) {
+        return (definedMask & (1 << slot)) != 0;
+    }
+
+    // Bit 'slot' is set when the variable is defined.
+    public int definedMask() {
+        return definedMask;
+    }
+
+    public double re(int slot) {
+        return re[slot];
+    }
+
+    public double im(int slot) {
+        return im[slot];
+    }
+
+    // null when the variable is not defined
+    public ComplexNumber get(int slot) {
+        return isDefined(slot) ? new ComplexNumber(re[slot], im[slot]) : null;
+    }
+
+    // ">x"
+    public void save(int slot, double real, double imaginary) {
+        beforeWrite(slot);
+        re[slot] = real;
+        im[slot] = imaginary;
+        definedMask |= 1 << slot;
     }
 
-    public void loadVariable(String variable, Stack<String> stack) {
-        if (!variables.containsKey(variable.charAt(0))) {
-            throw new IllegalArgumentException("La variabile " + variable + " non è stata definita.");
+    // "+x": false, and nothing changes, when the variable is not defined.
+    public boolean add(int slot, double real, double imaginary) {
+        if (!isDefined(slot)) {
+            return false;
         }
-        stack.push(variables.get(variable.charAt(0)));
+        beforeWrite(slot);
+        re[slot] += real;
+        im[slot] += imaginary;
+        return true;
+    }
+
+    // "-x": false, and nothing changes, when the variable is not defined.
+    public boolean subtract(int slot, double real, double imaginary) {
+        if (!isDefined(slot)) {
+            return false;
+        }
+        beforeWrite(slot);
+        re[slot] -= real;
+        im[slot] -= imaginary;
+        return true;
+    }
+
+    public void clear() {
+        definedMask = 0;
+        touchAll();
+    }
+
+    // "save": pushes a snapshot of all variables; the oldest one is dropped beyond MAX_SAVED.
+    public void saveAll() {
+        savedRe[savedTop] = re;
+        savedIm[savedTop] = im;
+        savedMask[savedTop] = definedMask;
+        savedTop = savedTop + 1 == MAX_SAVED ? 0 : savedTop + 1;
+        if (savedCount < MAX_SAVED) {
+            savedCount++;
+        }
+        shared = true;
+    }
+
+    // "restore": replaces all variables with the last snapshot; false when there is none.
+    public boolean restoreAll() {
+        if (savedCount == 0) {
+            return false;
+        }
+        savedTop = savedTop == 0 ? MAX_SAVED - 1 : savedTop - 1;
+        savedCount--;
+        re = savedRe[savedTop];
+        im = savedIm[savedTop];
+        definedMask = savedMask[savedTop];
+        savedRe[savedTop] = null;
+        savedIm[savedTop] = null;
+        shared = true; // the same arrays may back older snapshots too
+        touchAll();
+        return true;
+    }
+
+    public int savedCount() {
+        return savedCount;
+    }
+
+    // Ring position of saved snapshot 'index', 0 being the most recent (the next "restore").
+    private int savedSlot(int index) {
+        return Math.floorMod(savedTop - 1 - index, MAX_SAVED);
+    }
+
+    // Saved snapshot 'index' (0 = most recent), for SessionJournal; the arrays must not be modified.
+    int savedMask(int index) {
+        return savedMask[savedSlot(index)];
+    }
+
+    double[] savedRealParts(int index) {
+        return savedRe[savedSlot(index)];
+    }
+
+    double[] savedImaginaryParts(int index) {
+        return savedIm[savedSlot(index)];
+    }
+
+    // Replaces the saved snapshots with the given ones, most recent first (SessionJournal recovery).
+    void replaceSaved(int[] masks, double[][] realParts, double[][] imaginaryParts) {
+        Arrays.fill(savedRe, null);
+        Arrays.fill(savedIm, null);
+        savedCount = Math.min(masks.length, MAX_SAVED);
+        savedTop = savedCount % MAX_SAVED;
+        for (int index = 0; index < savedCount; index++) {
+            int slot = savedSlot(index);
+            savedMask[slot] = masks[index];
+            savedRe[slot] = realParts[index];
+            savedIm[slot] = imaginaryParts[index];
+        }
+    }
+
+    void checkpoint() {
+        checkpointRe = re;
+        checkpointIm = im;
+        checkpointMask = definedMask;
+        shared = true;
+        System.arraycopy(savedRe, 0, checkpointSavedRe, 0, MAX_SAVED);
+        System.arraycopy(savedIm, 0, checkpointSavedIm, 0, MAX_SAVED);
+        System.arraycopy(savedMask, 0, checkpointSavedMask, 0, MAX_SAVED);
+        checkpointSavedTop = savedTop;
+        checkpointSavedCount = savedCount;
+    }
+
+    // Back to the values of the last checkpoint(). Versions only move forward, so results cached
+    // in between are recomputed rather than reused.
+    void rollback() {
+        re = checkpointRe;
+        im = checkpointIm;
+        definedMask = checkpointMask;
+        shared = true;
+        System.arraycopy(checkpointSavedRe, 0, savedRe, 0, MAX_SAVED);
+        System.arraycopy(checkpointSavedIm, 0, savedIm, 0, MAX_SAVED);
+        System.arraycopy(checkpointSavedMask, 0, savedMask, 0, MAX_SAVED);
+        savedTop = checkpointSavedTop;
+        savedCount = checkpointSavedCount;
+        touchAll();
+    }
+
+    private void beforeWrite(int slot) {
+        versions[slot] = ++clock;
+        if (shared) {
+            re = re.clone();
+            im = im.clone();
+            shared = false;
+        }
+    }
+
+    private void touchAll() {
+        clock++;
+        for (int slot = 0; slot < SLOTS; slot++) {
+            versions[slot] = clock;
+        }
+    }
+
+    // The latest version of any slot: it changes whenever a variable is written.
+    long version() {
+        return clock;
+    }
+
+    // The latest version among the slots in mask: it changes whenever one of them is written.
+    long version(int mask) {
+        long version = 0;
+        for (int bits = mask; bits != 0; bits &= bits - 1) {
+            version = Math.max(version, versions[Integer.numberOfTrailingZeros(bits)]);
+        }
+        return version;
+    }
+
+    // Live arrays for the evaluators; slots not in definedMask() hold stale values.
+    double[] realParts() {
+        return re;
     }
 
-    public String getVariableValue(String variable) {
-        return variable;
+    double[] imaginaryParts() {
+        return im;
     }
 }
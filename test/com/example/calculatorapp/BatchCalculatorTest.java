@@ -0,0 +1,84 @@
+package com.example.calculatorapp;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BatchCalculatorTest {
+
+    @Test
+    public void testRun_OneResultPerLine() throws IOException {
+        String input = "3+4j\n1-2j\n*\n\n(2+3)*4\n+\ndrop\ndrop\n/\n";
+        StringWriter output = new StringWriter();
+
+        long lines = new BatchCalculator().run(new BufferedReader(new StringReader(input)), output);
+
+        // Le righe vuote vengono ignorate
+        assertEquals(8, lines);
+        assertEquals("3.0 + 4.0i\n"
+                + "1.0 + -2.0i\n"
+                + "11.0 + -2.0i\n"
+                + "20.0 + 0.0i\n"
+                + "31.0 + -2.0i\n"
+                + "empty\n"
+                + "Error: NOT_ENOUGH_OPERANDS\n"
+                + "Error: NOT_ENOUGH_OPERANDS\n", output.toString());
+    }
+
+    @Test
+    public void testRunParallel_IndependentExpressions() throws IOException {
+        StringBuilder input = new StringBuilder();
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 2000; i++) {
+            input.append(i).append("*2+1j\n");
+            expected.append((double) (i * 2)).append(" + 1.0i\n");
+        }
+        input.append("\n1/0\nx+1\n");
+        expected.append("Error: DIVISION_BY_ZERO\nError: UNDEFINED_VARIABLE\n");
+        StringWriter output = new StringWriter();
+
+        long lines = BatchCalculator.runParallel(new BufferedReader(new StringReader(input.toString())), output, 3);
+
+        assertEquals(2002, lines);
+        assertEquals(expected.toString(), output.toString());
+    }
+
+    @Test
+    public void testRunParallel_BlocksKeepOrder() throws IOException {
+        StringBuilder input = new StringBuilder();
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            input.append(i).append("+1\n");
+            if (i % 7 == 0) {
+                input.append("\n");
+            }
+            expected.append((double) (i + 1)).append(" + 0.0i\n");
+        }
+        StringWriter output = new StringWriter();
+
+        // blocchi piu' piccoli dell'input: le righe vuote non contano nel blocco
+        long lines = BatchCalculator.runParallel(new BufferedReader(new StringReader(input.toString())), output, 2, 100);
+
+        assertEquals(1000, lines);
+        assertEquals(expected.toString(), output.toString());
+
+        StringWriter empty = new StringWriter();
+        assertEquals(0, BatchCalculator.runParallel(new BufferedReader(new StringReader("")), empty, 2, 100));
+        assertEquals("", empty.toString());
+    }
+
+    @Test
+    public void testParseParallelism() {
+        assertEquals(Runtime.getRuntime().availableProcessors(), BatchCalculator.parseParallelism("--parallel"));
+        assertEquals(4, BatchCalculator.parseParallelism("--parallel=4"));
+        assertEquals(-1, BatchCalculator.parseParallelism("--parallel=0"));
+        assertEquals(-1, BatchCalculator.parseParallelism("--parallel=-2"));
+        assertEquals(-1, BatchCalculator.parseParallelism("--parallel=abc"));
+        assertEquals(-1, BatchCalculator.parseParallelism("--parallelism"));
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.calculatorapp;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BigComplexTest {
+    private static final MathContext DIGITS_34 = BigComplex.context(34);
+
+    private static BigComplex complex(String real, String imaginary) {
+        return new BigComplex(new BigDecimal(real), new BigDecimal(imaginary));
+    }
+
+    private static void assertValue(String real, String imaginary, BigComplex actual) {
+        assertEquals(0, new BigDecimal(real).compareTo(actual.real()), actual.toString());
+        assertEquals(0, new BigDecimal(imaginary).compareTo(actual.imaginary()), actual.toString());
+    }
+
+    @Test
+    public void testContextsAreShared() {
+        assertSame(BigComplex.context(34), BigComplex.context(34));
+        assertEquals(34, BigComplex.context(34).getPrecision());
+    }
+
+    @Test
+    public void testArithmetic() {
+        BigComplex a = complex("1", "2");
+        BigComplex b = complex("3", "-1");
+        assertValue("4", "1", a.add(b, DIGITS_34));
+        assertValue("-2", "3", a.subtract(b, DIGITS_34));
+        assertValue("5", "5", a.multiply(b, DIGITS_34));
+        assertValue("0.1", "0.7", a.divide(b, DIGITS_34));
+        assertValue("-1", "-2", a.negate());
+        // 0.1 + 0.2 e' esattamente 0.3, a differenza dei double
+        assertValue("0.3", "0", complex("0.1", "0").add(complex("0.2", "0"), DIGITS_34));
+    }
+
+    @Test
+    public void testRoundingToContext() {
+        BigComplex third = complex("1", "0").divide(complex("3", "0"), DIGITS_34);
+        assertEquals("0." + "3".repeat(34), third.real().toString());
+        BigComplex seventh = complex("0", "1").divide(complex("7", "0"), BigComplex.context(50));
+        assertEquals(50, seventh.imaginary().precision());
+    }
+
+    @Test
+    public void testSqrt() {
+        assertEquals("1.414213562373095048801688724209698", complex("2", "0").sqrt(DIGITS_34).real().toString());
+        assertValue("0", "2", complex("-4", "0").sqrt(DIGITS_34));
+        assertValue("2", "1", complex("3", "4").sqrt(DIGITS_34));
+        assertValue("1", "-2", complex("-3", "-4").sqrt(DIGITS_34));
+        assertSame(BigComplex.ZERO, BigComplex.ZERO.sqrt(DIGITS_34));
+
+        // stesso ramo principale di ComplexStack
+        ComplexStack stack = new ComplexStack();
+        stack.push(-1.5, -2.25);
+        stack.sqrt();
+        BigComplex root = complex("-1.5", "-2.25").sqrt(DIGITS_34);
+        assertEquals(stack.peekRe(), root.real().doubleValue(), 1e-15);
+        assertEquals(stack.peekIm(), root.imaginary().doubleValue(), 1e-15);
+    }
+
+    @Test
+    public void testValueOfAndToString() {
+        assertEquals("0.1 + -2.5i", BigComplex.valueOf(0.1, -2.5).toString());
+        assertEquals(new ComplexNumber(0.1, -2.5), BigComplex.valueOf(0.1, -2.5).toComplexNumber());
+    }
+
+    @Test
+    public void testExactLiterals() {
+        ComplexParser parser = new ComplexParser();
+        assertTrue(parser.parse("0.1000000000000000000000000000000001-3.25e-40j"));
+        assertEquals("0.1000000000000000000000000000000001", parser.exact().real().toString());
+        assertEquals(0, new BigDecimal("-3.25e-40").compareTo(parser.exact().imaginary()));
+        assertTrue(parser.parse("-7j"));
+        assertValue("0", "-7", parser.exact());
+        assertTrue(parser.parse(".5"));
+        assertValue("0.5", "0", parser.exact());
+    }
+}
@@ -3,7 +3,6 @@ package com.example.calculatorapp;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
-import java.lang.reflect.Field;
 import java.util.*;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
@@ -62,33 +61,27 @@ public class CalculatorAppTest {
     }
 
     @Test
-    void testUpdateStackDisplay() throws NoSuchFieldException, IllegalAccessException {
-        Deque<ComplexNumber> stack = new ArrayDeque<>();
+    void testUpdateStackDisplay() {
+        CalculatorEngine engine = calculatorApp.getEngine();
         for (int i = 0; i < 12; i++) {
-            stack.push(new ComplexNumber(i, i)); // Aggiungi numeri complessi fittizi
+            engine.push(i, i); // Aggiungi numeri complessi fittizi
         }
 
-        // Utilizza riflessione per accedere al campo privato 'lastTwelveStackElements'
-        Field field = CalculatorApp.class.getDeclaredField("lastTwelveStackElements");
-        field.setAccessible(true);
-        field.set(calculatorApp, stack);
-
-        calculatorApp.updateStackDisplay();
-
         StringBuilder expectedOutput = new StringBuilder();
-        for (ComplexNumber number : stack) {
+        for (ComplexNumber number : engine.getHistory()) {
             expectedOutput.append(number.toString()).append("\n");
         }
 
-        // Utilizza riflessione per ottenere il valore del campo privato 'lastTwelveStackElements'
-        Deque<ComplexNumber> actualStack = (Deque<ComplexNumber>) field.get(calculatorApp);
+        calculatorApp.updateStackDisplay();
 
+        // L'aggiornamento della vista non modifica lo storico dell'engine
         StringBuilder actualOutput = new StringBuilder();
-        for (ComplexNumber number : actualStack) {
+        for (ComplexNumber number : engine.getHistory()) {
             actualOutput.append(number.toString()).append("\n");
         }
 
         assertEquals(expectedOutput.toString(), actualOutput.toString());
+        assertEquals("11.0 + 11.0i", engine.getHistory().iterator().next().toString());
     }
 
 
@@ -0,0 +1,188 @@
+package com.example.calculatorapp;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CalculatorEngineTest {
+
+    @Test
+    public void testEnter_LiteralsAndOperations() {
+        CalculatorEngine engine = new CalculatorEngine();
+
+        assertEquals(CalculatorEngine.Status.OK, engine.enter("3+4j"));
+        assertEquals(CalculatorEngine.Status.OK, engine.enter("1-2j"));
+        assertEquals(CalculatorEngine.Status.OK, engine.enter("*"));
+
+        assertEquals(1, engine.stackSize());
+        assertEquals(new ComplexNumber(11, -2), engine.peek(0));
+    }
+
+    @Test
+    public void testEnter_ErrorsAreReturnedNotThrown() {
+        CalculatorEngine engine = new CalculatorEngine();
+
+        assertEquals(CalculatorEngine.Status.NOT_ENOUGH_OPERANDS, engine.enter("+"));
+        assertEquals(CalculatorEngine.Status.INVALID_INPUT, engine.enter("3+"));
+        assertEquals(CalculatorEngine.Status.UNKNOWN_OPERATION, engine.performOperation("foo"));
+        assertEquals(CalculatorEngine.Status.UNDEFINED_VARIABLE, engine.enter("<x"));
+
+        engine.enter("1");
+        engine.enter("0");
+        assertEquals(CalculatorEngine.Status.DIVISION_BY_ZERO, engine.enter("/"));
+        assertEquals(2, engine.stackSize()); // Lo stack resta invariato
+    }
+
+    @Test
+    public void testEnter_ComplexExpression() {
+        CalculatorEngine engine = new CalculatorEngine();
+
+        assertEquals(CalculatorEngine.Status.OK, engine.enter("(1+2j)*(3-1j)"));
+        assertEquals(new ComplexNumber(5, 5), engine.peek(0));
+        assertEquals(CalculatorEngine.Status.DIVISION_BY_ZERO, engine.enter("1/(2-2)"));
+        assertEquals(1, engine.stackSize());
+    }
+
+    @Test
+    public void testVariables() {
+        CalculatorEngine engine = new CalculatorEngine();
+        engine.enter("5");
+        engine.enter(">x"); // Salva la cima dello stack in x
+        engine.enter("2");
+        engine.enter("+x"); // x = x + 2
+
+        assertEquals(0, engine.stackSize());
+        assertEquals(new ComplexNumber(7, 0), engine.getVariable('x'));
+        assertEquals(14.0, engine.calculate("x*2"));
+
+        engine.enter("<x");
+        assertEquals(new ComplexNumber(7, 0), engine.peek(0));
+    }
+
+    @Test
+    public void testSaveAndRestoreVariables() {
+        CalculatorEngine engine = new CalculatorEngine();
+        engine.enter("5");
+        engine.enter(">x");
+
+        assertEquals(CalculatorEngine.Status.OK, engine.enter("save"));
+        engine.enter("1");
+        engine.enter(">x");
+        assertEquals(new ComplexNumber(1, 0), engine.getVariable('x'));
+
+        assertEquals(CalculatorEngine.Status.OK, engine.enter("restore"));
+        assertEquals(new ComplexNumber(5, 0), engine.getVariable('x'));
+        assertEquals(CalculatorEngine.Status.NOTHING_TO_RESTORE, engine.enter("restore"));
+    }
+
+    @Test
+    public void testListenerNotifications() {
+        CalculatorEngine engine = new CalculatorEngine();
+        List<String> events = new ArrayList<>();
+        engine.addListener(new CalculatorListener() {
+            @Override
+            public void historyAppended(ComplexNumber value) {
+                events.add("history " + value);
+            }
+
+            @Override
+            public void errorOccurred(CalculatorEngine.Status status, String input) {
+                events.add("error " + status);
+            }
+        });
+
+        engine.enter("2");
+        engine.enter("sqrt");
+        engine.enter("swap");
+
+        assertEquals(List.of("history 2.0 + 0.0i", "history 1.4142135623730951 + 0.0i", "error NOT_ENOUGH_OPERANDS"), events);
+    }
+
+    @Test
+    public void testEnterLine() {
+        CalculatorEngine engine = new CalculatorEngine();
+        List<String> events = new ArrayList<>();
+        engine.addListener(new CalculatorListener() {
+            @Override
+            public void stackChanged() {
+                events.add("stack");
+            }
+
+            @Override
+            public void historyAppended(ComplexNumber value) {
+                events.add("history " + value);
+            }
+
+            @Override
+            public void inputAccepted(String input) {
+                events.add("accepted " + input);
+            }
+        });
+
+        assertEquals(CalculatorEngine.Status.OK, engine.enter("3+4j 1-2j * dup +"));
+        assertEquals(1, engine.stackSize());
+        assertEquals(new ComplexNumber(22, -4), engine.peek(0));
+        // una sola notifica e un solo valore nello storico per l'intera riga
+        assertEquals(List.of("history " + new ComplexNumber(22, -4), "stack", "accepted 3+4j 1-2j * dup +"), events);
+        assertEquals(1, engine.getHistory().size());
+
+        // un'espressione infissa con spazi resta un'espressione
+        assertEquals(CalculatorEngine.Status.OK, engine.enter("3 + 4 * 2"));
+        assertEquals(new ComplexNumber(11, 0), engine.peek(0));
+        assertEquals(CalculatorEngine.Status.OK, engine.enterLine("2 3 4 * +"));
+        assertEquals(new ComplexNumber(14, 0), engine.peek(0));
+        assertEquals(3, engine.stackSize());
+    }
+
+    @Test
+    public void testEnter_RpnLineSameAsEnterLine() {
+        // le righe RPN incollate arrivano da enter() (UI, batch, server, journal): stesso risultato di enterLine
+        for (String line : new String[]{"2 3 * 4 +", "3 4 + 5 *", "1 2 3 + *", "2 sqrt dup *", "1+1j 2 /"}) {
+            CalculatorEngine entered = new CalculatorEngine();
+            CalculatorEngine lined = new CalculatorEngine();
+            assertEquals(CalculatorEngine.Status.OK, entered.enter(line), line);
+            assertEquals(CalculatorEngine.Status.OK, lined.enterLine(line), line);
+            assertEquals(lined.stackSize(), entered.stackSize(), line);
+            assertEquals(lined.peek(0), entered.peek(0), line);
+        }
+        CalculatorEngine engine = new CalculatorEngine();
+        engine.enter("2 3 * 4 +");
+        assertEquals(new ComplexNumber(10, 0), engine.peek(0));
+        engine.enter("3 4 + 5 *");
+        assertEquals(new ComplexNumber(35, 0), engine.peek(0));
+    }
+
+    @Test
+    public void testEnterLine_RollsBackOnFailure() {
+        CalculatorEngine engine = new CalculatorEngine();
+        engine.enter("5");
+        engine.enter("7");
+        engine.enter("save");
+        int history = engine.getHistory().size();
+
+        assertEquals(CalculatorEngine.Status.DIVISION_BY_ZERO, engine.enter("dup >x 2 * >y restore 1 0 /"));
+        assertEquals(CalculatorEngine.Status.UNDEFINED_VARIABLE, engine.enter("clear 9 >x <z"));
+        assertEquals(CalculatorEngine.Status.NOTHING_TO_RESTORE, engine.enter("drop save restore restore restore"));
+        assertEquals(CalculatorEngine.Status.NOT_ENOUGH_OPERANDS, engine.enter("+ + +"));
+        assertEquals(CalculatorEngine.Status.INVALID_INPUT, engine.enter("1 2 frobnicate"));
+
+        assertEquals(2, engine.stackSize());
+        assertEquals(new ComplexNumber(7, 0), engine.peek(0));
+        assertEquals(new ComplexNumber(5, 0), engine.peek(1));
+        assertNull(engine.getVariable('x'));
+        assertNull(engine.getVariable('y'));
+        assertEquals(1, engine.getVariables().savedCount());
+        assertEquals(history, engine.getHistory().size());
+        assertEquals(CalculatorEngine.Status.OK, engine.enter("restore"));
+        assertEquals(CalculatorEngine.Status.NOTHING_TO_RESTORE, engine.enter("restore"));
+
+        // dopo un rollback la cache non restituisce risultati calcolati nel frattempo
+        engine.setVariable('x', 1, 0);
+        assertEquals(2, engine.calculate("x + 1"));
+        assertEquals(CalculatorEngine.Status.DIVISION_BY_ZERO, engine.enter("10 >x 0 0 /"));
+        assertEquals(2, engine.calculate("x + 1"));
+    }
+}
@@ -0,0 +1,162 @@
+package com.example.calculatorapp;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CalculatorServerTest {
+
+    private static SocketAddress loopback() {
+        return new InetSocketAddress(InetAddress.getLoopbackAddress(), 0);
+    }
+
+    private static SocketChannel connect(SocketAddress address) throws IOException {
+        SocketChannel channel = address instanceof UnixDomainSocketAddress
+                ? SocketChannel.open(StandardProtocolFamily.UNIX)
+                : SocketChannel.open();
+        channel.connect(address);
+        return channel;
+    }
+
+    private static void send(SocketChannel channel, String text) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8));
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private static BufferedReader reader(SocketChannel channel) {
+        return new BufferedReader(new InputStreamReader(Channels.newInputStream(channel), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testHandle() {
+        CalculatorEngine engine = new CalculatorEngine();
+        StringBuilder responses = new StringBuilder();
+        CalculatorServer.handle("3+4j", engine, responses);
+        CalculatorServer.handle("1-2j", engine, responses);
+        CalculatorServer.handle("*", engine, responses);
+        CalculatorServer.handle("drop", engine, responses);
+        CalculatorServer.handle("drop", engine, responses);
+        CalculatorServer.handle("? 2 * (3 + 4)", engine, responses);
+        CalculatorServer.handle("?(1+", engine, responses);
+        assertEquals("3.0 + 4.0i\n1.0 + -2.0i\n11.0 + -2.0i\nempty\nError: NOT_ENOUGH_OPERANDS\n14.0\n"
+                + "Error: INVALID_INPUT\n", responses.toString());
+    }
+
+    @Test
+    public void testPipelinedRequestsOverTcp() throws IOException {
+        try (CalculatorServer server = CalculatorServer.start(loopback());
+             SocketChannel channel = connect(server.address())) {
+            // tutte le richieste in una sola write, anche con "\r\n"
+            send(channel, "2\r\n3\n+\nsqrt\n? 1.5 * 4\n");
+            BufferedReader in = reader(channel);
+            assertEquals("2.0 + 0.0i", in.readLine());
+            assertEquals("3.0 + 0.0i", in.readLine());
+            assertEquals("5.0 + 0.0i", in.readLine());
+            assertEquals(Math.sqrt(5) + " + 0.0i", in.readLine());
+            assertEquals("6.0", in.readLine());
+        }
+    }
+
+    @Test
+    public void testRequestSplitAcrossWrites() throws IOException {
+        try (CalculatorServer server = CalculatorServer.start(loopback());
+             SocketChannel channel = connect(server.address())) {
+            send(channel, "12");
+            send(channel, "3.5\n");
+            assertEquals("123.5 + 0.0i", reader(channel).readLine());
+        }
+    }
+
+    @Test
+    public void testSessionsAreIsolated() throws IOException {
+        try (CalculatorServer server = CalculatorServer.start(loopback());
+             SocketChannel first = connect(server.address());
+             SocketChannel second = connect(server.address())) {
+            BufferedReader firstIn = reader(first);
+            BufferedReader secondIn = reader(second);
+            send(first, "7\n>x\n? x * 2\n");
+            assertEquals("7.0 + 0.0i", firstIn.readLine());
+            assertEquals("empty", firstIn.readLine());
+            assertEquals("14.0", firstIn.readLine());
+
+            send(second, "? x * 2\n+\n");
+            assertEquals("NaN", secondIn.readLine());
+            assertEquals("Error: NOT_ENOUGH_OPERANDS", secondIn.readLine());
+        }
+    }
+
+    @Test
+    public void testUnixDomainSocket(@TempDir Path directory) throws IOException {
+        Path socket = directory.resolve("calc.sock");
+        SocketAddress address = CalculatorServer.parseAddress("unix:" + socket);
+        try (CalculatorServer server = CalculatorServer.start(address);
+             SocketChannel channel = connect(server.address())) {
+            send(channel, "1+1j\ndup\n*\n");
+            BufferedReader in = reader(channel);
+            assertEquals("1.0 + 1.0i", in.readLine());
+            assertEquals("1.0 + 1.0i", in.readLine());
+            assertEquals("0.0 + 2.0i", in.readLine());
+        }
+        assertFalse(Files.exists(socket));
+    }
+
+    @Test
+    public void testUnixSocketPathIsNotAnotherFile(@TempDir Path directory) throws IOException {
+        Path file = directory.resolve("calc.txt");
+        Files.writeString(file, "keep me");
+        // un percorso sbagliato non cancella un file normale
+        assertThrows(IOException.class, () -> CalculatorServer.start(CalculatorServer.parseAddress("unix:" + file)));
+        assertEquals("keep me", Files.readString(file));
+        assertThrows(IOException.class, () -> CalculatorServer.start(CalculatorServer.parseAddress("unix:" + directory)));
+        assertTrue(Files.isDirectory(directory));
+
+        // un socket rimasto da un server precedente viene sostituito...
+        Path socket = directory.resolve("calc.sock");
+        SocketAddress address = CalculatorServer.parseAddress("unix:" + socket);
+        CalculatorServer first = CalculatorServer.start(address);
+        try (CalculatorServer second = CalculatorServer.start(address)) {
+            // ...e il primo, chiudendosi, non cancella quello del secondo
+            first.close();
+            assertTrue(Files.exists(socket));
+            try (SocketChannel channel = connect(second.address())) {
+                send(channel, "2\n");
+                assertEquals("2.0 + 0.0i", reader(channel).readLine());
+            }
+        }
+        assertFalse(Files.exists(socket));
+    }
+
+    @Test
+    public void testLineTooLongClosesConnection() throws IOException {
+        try (CalculatorServer server = CalculatorServer.start(loopback());
+             SocketChannel channel = connect(server.address())) {
+            // il server chiude senza rispondere: fine dello stream o connessione resettata
+            String response;
+            try {
+                send(channel, "1".repeat(CalculatorServer.MAX_LINE + 1));
+                response = reader(channel).readLine();
+            } catch (IOException e) {
+                response = null;
+            }
+            assertNull(response);
+        }
+    }
+}
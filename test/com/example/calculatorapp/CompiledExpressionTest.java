@@ -0,0 +1,225 @@
+package com.example.calculatorapp;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CompiledExpressionTest {
+
+    private static double[] bindings(char name, double value) {
+        double[] bindings = new double[CompiledExpression.VARIABLE_SLOTS];
+        bindings[name - 'a'] = value;
+        return bindings;
+    }
+
+    @Test
+    public void testEvaluate_Precedence() {
+        CompiledExpression expression = CompiledExpression.compile("3+5*2");
+
+        assertEquals(13.0, expression.evaluate(new double[CompiledExpression.VARIABLE_SLOTS]));
+    }
+
+    @Test
+    public void testEvaluate_ParenthesesAndUnaryMinus() {
+        CompiledExpression expression = CompiledExpression.compile("-(3+5)*2");
+
+        assertEquals(-16.0, expression.evaluate(new double[CompiledExpression.VARIABLE_SLOTS]));
+    }
+
+    @Test
+    public void testEvaluate_ReusedWithDifferentBindings() {
+        CompiledExpression expression = CompiledExpression.compile("x*x-1");
+
+        // La stessa espressione compilata viene valutata con valori diversi della variabile
+        assertEquals(8.0, expression.evaluate(bindings('x', 3)));
+        assertEquals(24.0, expression.evaluate(bindings('x', 5)));
+        assertTrue(expression.usesVariable('x'));
+        assertFalse(expression.usesVariable('y'));
+    }
+
+    @Test
+    public void testCompile_MalformedInput() {
+        assertThrows(IllegalArgumentException.class, () -> CompiledExpression.compile("3+"));
+        assertThrows(IllegalArgumentException.class, () -> CompiledExpression.compile("(3+5"));
+        assertThrows(IllegalArgumentException.class, () -> CompiledExpression.compile("3+5)"));
+        assertThrows(IllegalArgumentException.class, () -> CompiledExpression.compile("3+abc"));
+    }
+
+    @Test
+    public void testCompile_JuxtaposedOperands() {
+        // Due operandi di fila non sono una moltiplicazione implicita
+        assertThrows(IllegalArgumentException.class, () -> CompiledExpression.compile("3 4"));
+        assertThrows(IllegalArgumentException.class, () -> CompiledExpression.compile("3 (4)"));
+        assertThrows(IllegalArgumentException.class, () -> CompiledExpression.compile("x 2"));
+        assertThrows(IllegalArgumentException.class, () -> CompiledExpression.compile("(1) (2)"));
+        assertThrows(IllegalArgumentException.class, () -> CompiledExpression.compile("3 4 + 5 *"));
+        assertThrows(IllegalArgumentException.class, () -> CompiledExpression.compile("2 3 * 4 +"));
+    }
+
+    @Test
+    public void testEvaluate_ComplexConstantsAndBindings() {
+        CompiledExpression expression = CompiledExpression.compile("(1+2j)*x");
+        double[] re = bindings('x', 3);
+        double[] im = bindings('x', -1);
+        double[] result = new double[2];
+
+        assertFalse(expression.hasRealConstants());
+        assertEquals(CalculatorEngine.Status.OK, expression.evaluate(re, im, result));
+        assertEquals(5.0, result[0]);
+        assertEquals(5.0, result[1]);
+    }
+
+    @Test
+    public void testEvaluate_ErrorsAsStatus() {
+        double[] result = new double[2];
+        double[] undefined = bindings('x', Double.NaN);
+        double[] zero = new double[CompiledExpression.VARIABLE_SLOTS];
+
+        // Nessuna eccezione: divisione per zero e variabili non definite sono restituite come Status
+        assertEquals(CalculatorEngine.Status.DIVISION_BY_ZERO,
+                CompiledExpression.compile("1/(2-2)").evaluate(zero, zero, result));
+        assertEquals(CalculatorEngine.Status.DIVISION_BY_ZERO,
+                CompiledExpression.compile("3j/x").evaluate(zero, zero, result));
+        assertEquals(CalculatorEngine.Status.UNDEFINED_VARIABLE,
+                CompiledExpression.compile("x+1").evaluate(undefined, zero, result));
+        assertTrue(Double.isNaN(CompiledExpression.compile("1/0").evaluate(zero)));
+    }
+
+    @Test
+    public void testCompilePostfix() {
+        CompiledExpression expression = ExpressionCompiler.compilePostfix(List.of("3+4j", "2", "*", "x", "-"));
+        double[] result = new double[2];
+
+        assertEquals(CalculatorEngine.Status.OK, expression.evaluate(bindings('x', 1), new double[26], result));
+        assertEquals(5.0, result[0]);
+        assertEquals(8.0, result[1]);
+        assertThrows(IllegalArgumentException.class, () -> ExpressionCompiler.compilePostfix(List.of("3", "+")));
+    }
+
+    @Test
+    public void testEvaluate_DeepExpressionAfterShallowOne() {
+        // Lo stack del thread e' dimensionato per la prima espressione e deve crescere per la seconda
+        assertEquals(3.0, CompiledExpression.compile("x+2").evaluate(bindings('x', 1)));
+
+        // Con una variabile l'espressione non viene piegata in una costante
+        StringBuilder deep = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            deep.append("(x+");
+        }
+        deep.append('x').append(")".repeat(100));
+        CompiledExpression expression = CompiledExpression.compile(deep.toString());
+        double[] result = new double[2];
+        double[] zero = new double[CompiledExpression.VARIABLE_SLOTS];
+
+        assertEquals(CalculatorEngine.Status.OK, expression.evaluate(bindings('x', 1), zero, result));
+        assertEquals(101.0, result[0]);
+    }
+
+    @Test
+    public void testOptimize_FoldsConstantsAndIdentities() {
+        CompiledExpression expression = CompiledExpression.compile("2*3*x + 0");
+
+        assertEquals(7, expression.originalInstructionCount());
+        assertEquals(3, expression.instructionCount()); // 6 x *
+        assertEquals(12.0, expression.evaluate(bindings('x', 2)));
+
+        assertEquals(1, CompiledExpression.compile("1*x/1-0").instructionCount());
+        assertEquals(1, CompiledExpression.compile("--x").instructionCount());
+        assertEquals(1, CompiledExpression.compile("0+(2+3)*4").instructionCount());
+        assertEquals(20.0, CompiledExpression.compile("0+(2+3)*4").evaluate(bindings('x', 0)));
+    }
+
+    @Test
+    public void testOptimize_KeepsRuntimeSemantics() {
+        double[] result = new double[2];
+        double[] zero = new double[CompiledExpression.VARIABLE_SLOTS];
+
+        // (4-4)*y diventa 0*y ma non 0: con y infinito il risultato resta NaN
+        CompiledExpression zeroTimes = CompiledExpression.compile("(4-4)*y");
+        assertEquals(3, zeroTimes.instructionCount());
+        assertTrue(Double.isNaN(zeroTimes.evaluate(bindings('y', Double.POSITIVE_INFINITY))));
+
+        // La divisione per zero non viene piegata
+        assertEquals(CalculatorEngine.Status.DIVISION_BY_ZERO,
+                CompiledExpression.compile("x + 1/(2-2)").evaluate(zero, zero, result));
+        // La variabile resta nella mask anche se il codice la elimina
+        assertEquals(CalculatorEngine.Status.UNDEFINED_VARIABLE,
+                CompiledExpression.compile("1*x").evaluate(bindings('x', Double.NaN), zero, result));
+
+        // Costanti complesse: (1+2j)*(1-2j) = 5, quindi si usa il ciclo reale
+        CompiledExpression complex = CompiledExpression.compile("(1+2j)*(1-2j)*x");
+        assertTrue(complex.hasRealConstants());
+        assertEquals(3, complex.instructionCount());
+        assertEquals(10.0, complex.evaluate(bindings('x', 2)));
+    }
+
+    @Test
+    public void testEvaluateColumns_MatchesRowByRow() {
+        CompiledExpression expression = CompiledExpression.compile("(x + 1.5) * y / (x - 2) - -y");
+        int rows = 1000; // piu' blocchi, l'ultimo parziale
+        double[][] columns = new double[CompiledExpression.VARIABLE_SLOTS][];
+        columns['x' - 'a'] = new double[rows];
+        columns['y' - 'a'] = new double[rows];
+        for (int r = 0; r < rows; r++) {
+            columns['x' - 'a'][r] = r * 0.01;
+            columns['y' - 'a'][r] = 3 - r;
+        }
+        double[] resultRe = new double[rows];
+        double[] resultIm = new double[rows];
+
+        expression.evaluateColumns(columns, null, rows, resultRe, resultIm);
+
+        double[] bindings = new double[CompiledExpression.VARIABLE_SLOTS];
+        for (int r = 0; r < rows; r++) {
+            bindings['x' - 'a'] = columns['x' - 'a'][r];
+            bindings['y' - 'a'] = columns['y' - 'a'][r];
+            assertEquals(expression.evaluate(bindings), resultRe[r], "row " + r);
+            assertEquals(0.0, resultIm[r]);
+        }
+        assertTrue(Double.isNaN(resultRe[200])); // x = 2: divisione per zero
+    }
+
+    @Test
+    public void testEvaluateColumns_Complex() {
+        CompiledExpression expression = CompiledExpression.compile("(1+2j) * z / (z - 1j)");
+        int rows = 300;
+        double[][] columnsRe = new double[CompiledExpression.VARIABLE_SLOTS][];
+        double[][] columnsIm = new double[CompiledExpression.VARIABLE_SLOTS][];
+        columnsRe['z' - 'a'] = new double[rows];
+        columnsIm['z' - 'a'] = new double[rows];
+        for (int r = 0; r < rows; r++) {
+            columnsRe['z' - 'a'][r] = r % 7 - 3;
+            columnsIm['z' - 'a'][r] = r % 5 - 2;
+        }
+        double[] resultRe = new double[rows];
+        double[] resultIm = new double[rows];
+
+        expression.evaluateColumns(columnsRe, columnsIm, rows, resultRe, resultIm);
+
+        double[] re = new double[CompiledExpression.VARIABLE_SLOTS];
+        double[] im = new double[CompiledExpression.VARIABLE_SLOTS];
+        double[] result = new double[2];
+        for (int r = 0; r < rows; r++) {
+            re['z' - 'a'] = columnsRe['z' - 'a'][r];
+            im['z' - 'a'] = columnsIm['z' - 'a'][r];
+            if (expression.evaluate(re, im, result) == CalculatorEngine.Status.OK) {
+                assertEquals(result[0], resultRe[r], "row " + r);
+                assertEquals(result[1], resultIm[r], "row " + r);
+            } else {
+                assertTrue(Double.isNaN(resultRe[r]), "row " + r);
+            }
+        }
+    }
+
+    @Test
+    public void testEvaluateColumns_MissingColumn() {
+        CompiledExpression expression = CompiledExpression.compile("x + y");
+        double[][] columns = new double[CompiledExpression.VARIABLE_SLOTS][];
+        columns['x' - 'a'] = new double[10];
+
+        assertThrows(IllegalArgumentException.class,
+                () -> expression.evaluateColumns(columns, null, 10, new double[10], null));
+    }
+}
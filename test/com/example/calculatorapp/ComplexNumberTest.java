@@ -0,0 +1,46 @@
+package com.example.calculatorapp;
+
+import org.apache.commons.math3.complex.Complex;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ComplexNumberTest {
+
+    @Test
+    public void testDivide_SmithAvoidsOverflow() {
+        // c*c + d*d andrebbe in overflow con la formula diretta
+        ComplexNumber big = new ComplexNumber(1e300, 1e300);
+        ComplexNumber result = big.divide(big);
+
+        assertEquals(1.0, result.getReal(), 1e-15);
+        assertEquals(0.0, result.getImaginary(), 1e-15);
+    }
+
+    @Test
+    public void testDivide_ByZero() {
+        assertThrows(ArithmeticException.class, () -> new ComplexNumber(1, 1).divide(ComplexNumber.ZERO));
+    }
+
+    @Test
+    public void testArithmetic() {
+        ComplexNumber x = new ComplexNumber(3, 4);
+        ComplexNumber y = new ComplexNumber(1, -2);
+
+        assertEquals(new ComplexNumber(4, 2), x.add(y));
+        assertEquals(new ComplexNumber(2, 6), x.subtract(y));
+        assertEquals(new ComplexNumber(11, -2), x.multiply(y));
+        assertEquals(new ComplexNumber(-3, -4), x.negate());
+        assertEquals(new ComplexNumber(2, 1), x.sqrt());
+    }
+
+    @Test
+    public void testCommonsMathConversion() {
+        ComplexNumber number = new ComplexNumber(-1.5, 2.5);
+        Complex complex = number.toComplex();
+
+        assertEquals(-1.5, complex.getReal());
+        assertEquals(2.5, complex.getImaginary());
+        assertEquals(number, ComplexNumber.fromComplex(complex));
+    }
+}
@@ -0,0 +1,47 @@
+package com.example.calculatorapp;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ComplexParserTest {
+
+    private final ComplexParser parser = new ComplexParser();
+
+    private void assertParsed(String input, double real, double imaginary) {
+        assertTrue(parser.parse(input), input);
+        assertEquals(real, parser.real(), input);
+        assertEquals(imaginary, parser.imaginary(), input);
+    }
+
+    @Test
+    public void testParse_AcceptedForms() {
+        assertParsed("3+4j", 3, 4);
+        assertParsed("-1.1-6.6j", -1.1, -6.6);
+        assertParsed("2.5-0.5i", 2.5, -0.5);
+        assertParsed("10j", 0, 10);    // Immaginario puro
+        assertParsed("-7i", 0, -7);
+        assertParsed("42", 42, 0);     // Reale puro
+        assertParsed("-0.25", -0.25, 0);
+    }
+
+    @Test
+    public void testParse_RejectedForms() {
+        assertFalse(parser.parse("3+4"));
+        assertFalse(parser.parse("3j+4"));
+        assertFalse(parser.parse("3.5+j"));
+        assertFalse(parser.parse("3+-4j"));
+        assertFalse(parser.parse("--3"));
+        assertFalse(parser.parse("abc"));
+        assertFalse(parser.parse(""));
+    }
+
+    @Test
+    public void testParse_Range() {
+        String lines = "1+2j\n-3\n4i\n";
+
+        assertTrue(parser.parse(lines, 5, 7));
+        assertEquals(-3.0, parser.real());
+        assertEquals(0.0, parser.imaginary());
+    }
+}
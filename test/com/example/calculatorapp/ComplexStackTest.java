@@ -0,0 +1,70 @@
+package com.example.calculatorapp;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ComplexStackTest {
+
+    @Test
+    public void testStackOperations() {
+        ComplexStack stack = new ComplexStack(1); // Capacita' minima: forza la crescita degli array
+        stack.push(1, 2);
+        stack.push(3, 4);
+
+        stack.swap();
+        assertEquals(1.0, stack.peekRe());
+        assertEquals(2.0, stack.peekIm());
+
+        stack.over();
+        assertEquals(3, stack.size());
+        assertEquals(3.0, stack.re(0));
+        assertEquals(4.0, stack.im(0));
+
+        stack.dup();
+        stack.drop();
+        assertEquals(3, stack.size());
+        assertEquals(3.0, stack.popRe());
+        assertEquals(2.0, stack.popIm());
+        assertEquals(1, stack.size());
+    }
+
+    @Test
+    public void testArithmeticOnTopSlots() {
+        ComplexStack stack = new ComplexStack();
+        stack.push(3, 4);
+        stack.push(1, -2);
+        stack.multiply(); // (3+4j)(1-2j) = 11-2j
+        assertEquals(11.0, stack.re(0));
+        assertEquals(-2.0, stack.im(0));
+
+        stack.push(1, -2);
+        stack.divide();
+        assertEquals(3.0, stack.re(0), 1e-12);
+        assertEquals(4.0, stack.im(0), 1e-12);
+
+        stack.push(-4, 0);
+        stack.sqrt(); // sqrt(-4) = 2j
+        assertEquals(0.0, stack.re(0));
+        assertEquals(2.0, stack.im(0));
+        stack.add();
+        assertEquals(3.0, stack.re(0), 1e-12);
+        assertEquals(6.0, stack.im(0), 1e-12);
+        assertEquals(1, stack.size());
+    }
+
+    @Test
+    public void testErrors() {
+        ComplexStack stack = new ComplexStack();
+        assertThrows(IllegalStateException.class, stack::popRe);
+        assertThrows(IllegalStateException.class, stack::dup);
+
+        stack.push(1, 1);
+        assertThrows(IllegalStateException.class, stack::swap);
+        assertThrows(IllegalStateException.class, stack::over);
+
+        stack.push(0, 0);
+        assertThrows(ArithmeticException.class, stack::divide);
+        assertEquals(2, stack.size()); // Lo stack resta invariato dopo l'errore
+    }
+}
@@ -0,0 +1,97 @@
+package com.example.calculatorapp;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ExpressionCacheTest {
+
+    @Test
+    public void testRepeatedExpressionIsAHit() {
+        CalculatorEngine engine = new CalculatorEngine();
+        ExpressionCache cache = engine.getExpressionCache();
+
+        assertEquals(7.0, engine.calculate("3+4"));
+        assertEquals(7.0, engine.calculate("3+4"));
+        assertEquals(7.0, engine.calculate("  3+4 "));
+
+        assertEquals(1, cache.size());
+        assertEquals(1, cache.misses());
+        assertEquals(2, cache.hits());
+    }
+
+    @Test
+    public void testVariableChangeInvalidates() {
+        CalculatorEngine engine = new CalculatorEngine();
+        ExpressionCache cache = engine.getExpressionCache();
+        engine.enter("7");
+        engine.enter(">x");
+        engine.enter("1");
+        engine.enter(">y");
+
+        assertEquals(14.0, engine.calculate("x*2"));
+        // y non compare nell'espressione: il risultato resta valido
+        engine.enter("5");
+        engine.enter(">y");
+        assertEquals(14.0, engine.calculate("x*2"));
+        assertEquals(1, cache.hits());
+
+        engine.enter("3");
+        engine.enter("+x");
+        assertEquals(20.0, engine.calculate("x*2"));
+        assertEquals(2, cache.misses());
+    }
+
+    @Test
+    public void testRestoreAndUndefinedVariables() {
+        CalculatorEngine engine = new CalculatorEngine();
+        assertTrue(Double.isNaN(engine.calculate("q+1")));
+
+        engine.enter("save");
+        engine.enter("2");
+        engine.enter(">q");
+        assertEquals(3.0, engine.calculate("q+1"));
+
+        engine.enter("restore");
+        assertTrue(Double.isNaN(engine.calculate("q+1")));
+        assertTrue(Double.isNaN(engine.calculate("1/0")));
+        assertTrue(Double.isNaN(engine.calculate("1/0")));
+    }
+
+    @Test
+    public void testLeastRecentlyUsedIsEvicted() {
+        ExpressionCache cache = new ExpressionCache(2);
+        VariableManager variables = new VariableManager();
+        double[] result = new double[2];
+        EvaluationScratch scratch = new EvaluationScratch();
+
+        cache.evaluate("1+1", variables, result, scratch);
+        cache.evaluate("2+2", variables, result, scratch);
+        cache.evaluate("1+1", variables, result, scratch);
+        cache.evaluate("3+3", variables, result, scratch); // scarta "2+2"
+        cache.evaluate("1+1", variables, result, scratch);
+
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.evictions());
+        assertEquals(2, cache.hits());
+        cache.evaluate("2+2", variables, result, scratch);
+        assertEquals(4, cache.misses());
+    }
+
+    @Test
+    public void testInvalidExpressionIsNotCached() {
+        CalculatorEngine engine = new CalculatorEngine();
+
+        // nessuna eccezione: l'input malformato da' NaN, come gli altri errori
+        assertTrue(Double.isNaN(engine.calculate("(1+")));
+        assertTrue(Double.isNaN(engine.calculate("3 4")));
+        assertEquals(0, engine.getExpressionCache().size());
+    }
+
+    @Test
+    public void testNormalize() {
+        assertEquals("x * 2", ExpressionCache.normalize("  x   *\t2 "));
+        assertSame("x*2", ExpressionCache.normalize("x*2"));
+        assertEquals("", ExpressionCache.normalize("   "));
+    }
+}
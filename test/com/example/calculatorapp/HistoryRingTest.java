@@ -0,0 +1,50 @@
+package com.example.calculatorapp;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Iterator;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HistoryRingTest {
+
+    @Test
+    public void testAppend_OverwritesOldestWhenFull() {
+        HistoryRing history = new HistoryRing(3);
+        for (int i = 1; i <= 5; i++) {
+            history.append(i, -i);
+        }
+
+        assertEquals(3, history.size());
+        assertEquals(5.0, history.re(0)); // Il piu' recente
+        assertEquals(-5.0, history.im(0));
+        assertEquals(3.0, history.re(2)); // Il piu' vecchio ancora presente
+        assertThrows(IndexOutOfBoundsException.class, () -> history.re(3));
+    }
+
+    @Test
+    public void testIterator_IsASnapshot() {
+        HistoryRing history = new HistoryRing(12);
+        history.append(1, 0);
+        history.append(2, 0);
+
+        Iterator<ComplexNumber> iterator = history.iterator();
+        history.append(3, 0); // Non visibile dall'iteratore gia' creato
+
+        assertEquals(new ComplexNumber(2, 0), iterator.next());
+        assertEquals(new ComplexNumber(1, 0), iterator.next());
+        assertFalse(iterator.hasNext());
+    }
+
+    @Test
+    public void testEngine_ConfigurableHistorySize() {
+        CalculatorEngine engine = new CalculatorEngine(2);
+        engine.enter("1");
+        engine.enter("2");
+        engine.enter("+");
+
+        assertEquals(2, engine.getHistory().size());
+        assertEquals(new ComplexNumber(3, 0), engine.getHistory().get(0));
+        assertEquals(new ComplexNumber(2, 0), engine.getHistory().get(1));
+    }
+}
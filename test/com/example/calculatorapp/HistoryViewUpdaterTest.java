@@ -0,0 +1,74 @@
+package com.example.calculatorapp;
+
+import javafx.collections.FXCollections;
+import javafx.collections.ListChangeListener;
+import javafx.collections.ObservableList;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HistoryViewUpdaterTest {
+
+    @Test
+    public void testAppendsCoalescedIntoOneChange() {
+        List<Runnable> scheduled = new ArrayList<>();
+        HistoryViewUpdater updater = new HistoryViewUpdater(12, scheduled::add);
+        ObservableList<String> items = FXCollections.observableArrayList("0.0 + 0.0i");
+        updater.attach(items);
+        List<ListChangeListener.Change<? extends String>> changes = new ArrayList<>();
+        items.addListener((ListChangeListener<String>) changes::add);
+
+        updater.append(new ComplexNumber(1, 0));
+        updater.append(new ComplexNumber(2, 0));
+        updater.append(new ComplexNumber(3, 0));
+
+        // un solo flush pianificato, nessuna modifica prima del flush
+        assertEquals(1, scheduled.size());
+        assertTrue(changes.isEmpty());
+        scheduled.get(0).run();
+
+        assertEquals(List.of("3.0 + 0.0i", "2.0 + 0.0i", "1.0 + 0.0i", "0.0 + 0.0i"), items);
+        assertEquals(1, changes.size());
+        assertEquals(0, updater.pendingCount());
+
+        updater.append(new ComplexNumber(4, 0));
+        assertEquals(2, scheduled.size());
+    }
+
+    @Test
+    public void testPendingAndViewCappedAtCapacity() {
+        List<Runnable> scheduled = new ArrayList<>();
+        HistoryViewUpdater updater = new HistoryViewUpdater(3, scheduled::add);
+        ObservableList<String> items = FXCollections.observableArrayList("b", "a");
+        updater.attach(items);
+        List<ListChangeListener.Change<? extends String>> changes = new ArrayList<>();
+        items.addListener((ListChangeListener<String>) changes::add);
+
+        for (int i = 1; i <= 100; i++) {
+            updater.append(new ComplexNumber(i, 0));
+            assertTrue(updater.pendingCount() <= 3);
+        }
+        scheduled.get(0).run();
+        assertEquals(List.of("100.0 + 0.0i", "99.0 + 0.0i", "98.0 + 0.0i"), items);
+        assertEquals(1, changes.size());
+
+        // inserimento in testa e rimozione in coda in una sola modifica
+        updater.append(new ComplexNumber(101, 0));
+        scheduled.get(1).run();
+        assertEquals(List.of("101.0 + 0.0i", "100.0 + 0.0i", "99.0 + 0.0i"), items);
+        assertEquals(2, changes.size());
+    }
+
+    @Test
+    public void testNothingPendingWithoutViews() {
+        List<Runnable> scheduled = new ArrayList<>();
+        HistoryViewUpdater updater = new HistoryViewUpdater(3, scheduled::add);
+
+        updater.append(new ComplexNumber(1, 0));
+        assertEquals(0, updater.pendingCount());
+        assertTrue(scheduled.isEmpty());
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.calculatorapp;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LexerTest {
+
+    @Test
+    public void testNext_TypedTokens() {
+        Lexer lexer = new Lexer("(2.5 + x) * 4j - <a swap");
+
+        assertEquals(Lexer.TokenType.LEFT_PAREN, lexer.next());
+        assertEquals(Lexer.TokenType.NUMBER, lexer.next());
+        assertEquals(2.5, lexer.value());
+        assertEquals(Lexer.TokenType.OPERATOR, lexer.next());
+        assertEquals('+', lexer.symbol());
+        assertEquals(Lexer.TokenType.VARIABLE, lexer.next());
+        assertEquals('x' - 'a', lexer.slot());
+        assertEquals(Lexer.TokenType.RIGHT_PAREN, lexer.next());
+        assertEquals(Lexer.TokenType.OPERATOR, lexer.next());
+        assertEquals(Lexer.TokenType.IMAGINARY, lexer.next());
+        assertEquals(4.0, lexer.value());
+        assertEquals(Lexer.TokenType.OPERATOR, lexer.next());
+        assertEquals(Lexer.TokenType.VARIABLE_COMMAND, lexer.next());
+        assertEquals('<', lexer.symbol());
+        assertEquals(0, lexer.slot());
+        assertEquals(Lexer.TokenType.COMMAND, lexer.next());
+        assertTrue(lexer.textEquals("swap"));
+        assertEquals(Lexer.TokenType.END, lexer.next());
+    }
+
+    @Test
+    public void testNext_NumberLiterals() {
+        // I letterali devono coincidere con Double.parseDouble, anche fuori dal percorso veloce
+        String[] literals = {"0", "7", "0.1", ".5", "123.456", "1e3", "2.5E-4", "12345678901234567890", "0.000000000000000000000000123"};
+        Lexer lexer = new Lexer();
+        for (String literal : literals) {
+            lexer.reset(literal);
+            assertEquals(Lexer.TokenType.NUMBER, lexer.next(), literal);
+            assertEquals(Double.parseDouble(literal), lexer.value(), literal);
+            assertEquals(Lexer.TokenType.END, lexer.next(), literal);
+        }
+    }
+
+    @Test
+    public void testNext_InvalidCharacter() {
+        Lexer lexer = new Lexer("3 # 4");
+
+        assertEquals(Lexer.TokenType.NUMBER, lexer.next());
+        assertEquals(Lexer.TokenType.INVALID, lexer.next());
+    }
+}
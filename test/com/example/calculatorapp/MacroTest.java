@@ -0,0 +1,118 @@
+package com.example.calculatorapp;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MacroTest {
+
+    @Test
+    public void testDefineAndRun() {
+        CalculatorEngine engine = new CalculatorEngine();
+
+        assertEquals(CalculatorEngine.Status.OK, engine.enter("hyp = dup * swap dup * + sqrt"));
+        engine.enter("3");
+        engine.enter("4");
+        assertEquals(CalculatorEngine.Status.OK, engine.enter("hyp"));
+
+        assertEquals(1, engine.stackSize());
+        assertEquals(new ComplexNumber(5, 0), engine.peek(0));
+        assertEquals(2, engine.getMacro("hyp").getRequiredDepth());
+    }
+
+    @Test
+    public void testNestedMacroIsInlined() {
+        CalculatorEngine engine = new CalculatorEngine();
+        engine.enter("sq = dup *");
+        engine.enter("hyp = sq swap sq + sqrt");
+
+        // Il corpo di sq viene copiato in hyp: ridefinire sq non cambia hyp
+        engine.enter("sq = drop 0");
+        engine.enter("3");
+        engine.enter("4");
+        engine.enter("hyp");
+
+        assertEquals(new ComplexNumber(5, 0), engine.peek(0));
+        assertEquals(7, engine.getMacro("hyp").instructionCount());
+    }
+
+    @Test
+    public void testWhitespaceInBody() {
+        CalculatorEngine engine = new CalculatorEngine();
+        assertEquals(CalculatorEngine.Status.OK, engine.enter("hyp =\t dup  *\tswap dup * +   sqrt  "));
+        assertEquals("dup * swap dup * + sqrt", engine.getMacro("hyp").getBody());
+        assertArrayEquals(new String[]{"dup", "*", "swap", "dup", "*", "+", "sqrt"}, engine.getMacro("hyp").words());
+        assertArrayEquals(new String[0], MacroCompiler.words(" \t "));
+
+        engine.enter("3");
+        engine.enter("4");
+        assertEquals(CalculatorEngine.Status.OK, engine.enterLine(" hyp\t1  + "));
+        assertEquals(new ComplexNumber(6, 0), engine.peek(0));
+    }
+
+    @Test
+    public void testConstantsAndVariables() {
+        CalculatorEngine engine = new CalculatorEngine();
+        engine.enter("acc = >t <t 2j * +t");
+        engine.enter("1+1j");
+
+        assertEquals(CalculatorEngine.Status.OK, engine.enter("acc"));
+        // t = (1+1j) + (1+1j) * 2j = -1+3j
+        assertEquals(new ComplexNumber(-1, 3), engine.getVariable('t'));
+        assertEquals(0, engine.stackSize());
+    }
+
+    @Test
+    public void testNotEnoughOperandsLeavesStackUnchanged() {
+        CalculatorEngine engine = new CalculatorEngine();
+        engine.enter("hyp = dup * swap dup * + sqrt");
+        engine.enter("3");
+
+        assertEquals(CalculatorEngine.Status.NOT_ENOUGH_OPERANDS, engine.enter("hyp"));
+        assertEquals(1, engine.stackSize());
+        assertEquals(new ComplexNumber(3, 0), engine.peek(0));
+    }
+
+    @Test
+    public void testRuntimeErrors() {
+        CalculatorEngine engine = new CalculatorEngine();
+        engine.enter("inv = 1 swap /");
+        engine.enter("0");
+
+        assertEquals(CalculatorEngine.Status.DIVISION_BY_ZERO, engine.enter("inv"));
+        assertEquals(CalculatorEngine.Status.OK, engine.enter("load = <q"));
+        assertEquals(CalculatorEngine.Status.UNDEFINED_VARIABLE, engine.enter("load"));
+    }
+
+    @Test
+    public void testRedundantOperationsAreRemoved() {
+        CalculatorEngine engine = new CalculatorEngine();
+        engine.enter("sq = dup *");
+        engine.enter("noop = dup drop swap swap +- +- 7 drop");
+        engine.enter("scale = 2 3j * * 0 + 1 /");
+
+        assertEquals(0, engine.getMacro("noop").instructionCount());
+        assertEquals(2, engine.getMacro("noop").getRequiredDepth());
+        assertEquals(2, engine.getMacro("scale").instructionCount()); // 6j *
+
+        engine.enter("1+1j");
+        assertEquals(CalculatorEngine.Status.NOT_ENOUGH_OPERANDS, engine.enter("noop"));
+        engine.enter("2");
+        assertEquals(CalculatorEngine.Status.OK, engine.enter("noop"));
+        assertEquals(new ComplexNumber(2, 0), engine.peek(0));
+        assertEquals(CalculatorEngine.Status.OK, engine.enter("scale"));
+        assertEquals(new ComplexNumber(0, 12), engine.peek(0));
+    }
+
+    @Test
+    public void testInvalidDefinitions() {
+        CalculatorEngine engine = new CalculatorEngine();
+
+        assertEquals(CalculatorEngine.Status.INVALID_DEFINITION, engine.enter("x = dup *"));
+        assertEquals(CalculatorEngine.Status.INVALID_DEFINITION, engine.enter("dup = dup dup"));
+        assertEquals(CalculatorEngine.Status.INVALID_DEFINITION, engine.enter("bad = dup foo"));
+        assertEquals(CalculatorEngine.Status.INVALID_DEFINITION, engine.enter("empty = "));
+        assertEquals(CalculatorEngine.Status.INVALID_DEFINITION, engine.enter("wipe = clear +"));
+        assertNull(engine.getMacro("bad"));
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.calculatorapp;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ParallelBatchEvaluatorTest {
+
+    private static double[] undefinedBindings() {
+        double[] bindings = new double[VariableManager.SLOTS];
+        Arrays.fill(bindings, Double.NaN);
+        return bindings;
+    }
+
+    @Test
+    public void testResultsInInputOrder() {
+        Random random = new Random(7);
+        List<String> expressions = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            expressions.add(random.nextInt(100) + "*(" + random.nextInt(100) + "+x)-" + i + "j");
+        }
+        double[] re = undefinedBindings();
+        double[] im = new double[VariableManager.SLOTS];
+        re['x' - 'a'] = 0.5;
+        double[] resultRe = new double[expressions.size()];
+        double[] resultIm = new double[expressions.size()];
+
+        CalculatorEngine.Status[] statuses;
+        try (ParallelBatchEvaluator evaluator = new ParallelBatchEvaluator(4)) {
+            statuses = evaluator.evaluate(expressions, re, im, resultRe, resultIm);
+        }
+
+        double[] expected = new double[2];
+        for (int i = 0; i < expressions.size(); i++) {
+            CompiledExpression.compile(expressions.get(i)).evaluate(re, im, expected);
+            assertEquals(CalculatorEngine.Status.OK, statuses[i]);
+            assertEquals(expected[0], resultRe[i], expressions.get(i));
+            assertEquals(-i, resultIm[i], expressions.get(i));
+        }
+    }
+
+    @Test
+    public void testErrorsPerExpression() {
+        List<String> expressions = List.of("1+2", "(1+", "1/0", "y*2", "3j*3j");
+        double[] resultRe = new double[5];
+        double[] resultIm = new double[5];
+
+        CalculatorEngine.Status[] statuses;
+        try (ParallelBatchEvaluator evaluator = new ParallelBatchEvaluator(2)) {
+            statuses = evaluator.evaluate(expressions, undefinedBindings(), new double[VariableManager.SLOTS],
+                    resultRe, resultIm);
+        }
+
+        assertArrayEquals(new CalculatorEngine.Status[]{
+                CalculatorEngine.Status.OK, CalculatorEngine.Status.INVALID_INPUT, CalculatorEngine.Status.DIVISION_BY_ZERO,
+                CalculatorEngine.Status.UNDEFINED_VARIABLE, CalculatorEngine.Status.OK}, statuses);
+        assertEquals(3.0, resultRe[0]);
+        assertTrue(Double.isNaN(resultRe[2]));
+        assertEquals(-9.0, resultRe[4]);
+    }
+}
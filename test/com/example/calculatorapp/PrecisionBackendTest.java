@@ -0,0 +1,250 @@
+package com.example.calculatorapp;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PrecisionBackendTest {
+
+    private static CalculatorEngine engine(int digits) {
+        CalculatorEngine engine = new CalculatorEngine();
+        assertEquals(CalculatorEngine.Status.OK, engine.enter("precision " + digits));
+        return engine;
+    }
+
+    @Test
+    public void testPrecisionCommand() {
+        CalculatorEngine engine = new CalculatorEngine();
+        assertEquals(0, engine.getPrecision());
+        assertEquals(CalculatorEngine.Status.OK, engine.enter("precision 34"));
+        assertEquals(34, engine.getPrecision());
+        assertEquals(CalculatorEngine.Status.INVALID_INPUT, engine.enter("precision -1"));
+        assertEquals(CalculatorEngine.Status.INVALID_INPUT, engine.enter("precision many"));
+        assertEquals(CalculatorEngine.Status.INVALID_INPUT, engine.enter("precision " + (BigComplex.MAX_PRECISION + 1)));
+        assertEquals(34, engine.getPrecision());
+        assertEquals(CalculatorEngine.Status.OK, engine.enter("precision 0"));
+        assertEquals(0, engine.getPrecision());
+    }
+
+    @Test
+    public void testOperations() {
+        CalculatorEngine engine = engine(34);
+        engine.enter("0.1");
+        engine.enter("0.2");
+        assertEquals(CalculatorEngine.Status.OK, engine.enter("+"));
+        assertEquals("0.3 + 0i", engine.peekExact(0).toString());
+
+        engine.enter("2");
+        engine.enter("sqrt");
+        assertEquals("1.414213562373095048801688724209698", engine.peekExact(0).real().toString());
+        assertEquals(Math.sqrt(2), engine.peekReal(0));
+
+        engine.enter("clear");
+        engine.enter("3+4j");
+        engine.enter("1-2j");
+        engine.enter("*");
+        engine.enter("dup");
+        engine.enter("±");
+        engine.enter("swap");
+        engine.enter("over");
+        assertEquals(3, engine.stackSize());
+        assertEquals(new ComplexNumber(-11, 2), engine.peek(0));
+        assertEquals(new ComplexNumber(11, -2), engine.peek(1));
+        assertEquals(CalculatorEngine.Status.OK, engine.enter("1 3 /"));
+        assertEquals("0." + "3".repeat(34), engine.peekExact(0).real().toString());
+
+        engine.enter("0");
+        assertEquals(CalculatorEngine.Status.DIVISION_BY_ZERO, engine.enter("/"));
+        assertEquals(CalculatorEngine.Status.NOT_ENOUGH_OPERANDS, engine.enter("clear +"));
+        assertEquals(5, engine.stackSize());
+    }
+
+    @Test
+    public void testVariablesAndExpressions() {
+        CalculatorEngine engine = engine(40);
+        engine.enter("1 7 /");
+        assertEquals(CalculatorEngine.Status.OK, engine.enter(">x"));
+        // la copia double delle variabili resta aggiornata
+        assertEquals(1.0 / 7, engine.getVariable('x').getReal(), 1e-16);
+        assertEquals(1.0 / 7 * 2, engine.calculate("x * 2"), 1e-15);
+
+        assertEquals(CalculatorEngine.Status.OK, engine.enter("(x + 0.1) * 7"));
+        assertEquals("1.700000000000000000000000000000000000000", engine.peekExact(0).real().toString());
+        assertEquals(CalculatorEngine.Status.UNDEFINED_VARIABLE, engine.enter("y + 1"));
+        assertEquals(CalculatorEngine.Status.DIVISION_BY_ZERO, engine.enter("1 / (x - x)"));
+
+        engine.enter("save");
+        engine.enter("+x");
+        assertEquals(CalculatorEngine.Status.OK, engine.enter("<x"));
+        assertEquals("1.842857142857142857142857142857142857143", engine.peekExact(0).real().toString());
+        assertEquals(CalculatorEngine.Status.OK, engine.enter("restore"));
+        assertEquals(CalculatorEngine.Status.OK, engine.enter("<x"));
+        assertEquals("0.1428571428571428571428571428571428571429", engine.peekExact(0).real().toString());
+    }
+
+    @Test
+    public void testLineRollsBackAndMacros() {
+        CalculatorEngine engine = engine(34);
+        engine.enter("5");
+        assertEquals(CalculatorEngine.Status.DIVISION_BY_ZERO, engine.enter("dup >x 0 /"));
+        assertEquals(1, engine.stackSize());
+        assertNull(engine.getVariable('x'));
+
+        assertEquals(CalculatorEngine.Status.OK, engine.enter("hyp = dup * swap dup * + sqrt"));
+        engine.enter("0.3");
+        engine.enter("0.4");
+        assertEquals(CalculatorEngine.Status.OK, engine.enter("hyp"));
+        assertEquals(0, engine.peekExact(0).real().compareTo(new BigDecimal("0.5")));
+        assertEquals(2, engine.stackSize());
+    }
+
+    @Test
+    public void testMacrosKeepTheirDefinition() {
+        CalculatorEngine precise = engine(34);
+        CalculatorEngine plain = engine(0);
+        for (CalculatorEngine engine : new CalculatorEngine[] {precise, plain}) {
+            engine.enter("sq = dup *");
+            engine.enter("quad = sq sq");
+            engine.enter("sq = dup +");
+            engine.enter("3");
+            assertEquals(CalculatorEngine.Status.OK, engine.enter("quad"));
+        }
+        // quad usa la sq di quando e' stata definita, come in modalita' double
+        assertEquals(0, precise.peekExact(0).real().compareTo(new BigDecimal("81")));
+        assertEquals(81.0, plain.peekReal(0));
+
+        // una macro ridefinita con se stessa non richiama la nuova definizione
+        precise.enter("aa = 1");
+        precise.enter("bb = aa aa +");
+        assertEquals(CalculatorEngine.Status.OK, precise.enter("aa = bb"));
+        assertEquals(CalculatorEngine.Status.OK, precise.enter("aa"));
+        assertEquals(0, precise.peekExact(0).real().compareTo(new BigDecimal("2")));
+
+        // letterali esatti anche dentro le macro
+        precise.enter("tenth = 0.1 0.2 +");
+        assertEquals(CalculatorEngine.Status.OK, precise.enter("tenth"));
+        assertEquals(0, precise.peekExact(0).real().compareTo(new BigDecimal("0.3")));
+    }
+
+    @Test
+    public void testFailingMacroSameInBothModes() {
+        for (int digits : new int[]{0, 34}) {
+            CalculatorEngine engine = engine(digits);
+            engine.enter("7");
+            engine.enter(">a");
+            engine.enter("5");
+            int history = engine.getHistory().size();
+            assertEquals(CalculatorEngine.Status.OK, engine.enter("bad = dup >a 1 + 1 0 /"));
+            // tutto o niente in entrambe le modalita'
+            assertEquals(CalculatorEngine.Status.DIVISION_BY_ZERO, engine.enter("bad"), "precision " + digits);
+            assertEquals(1, engine.stackSize(), "precision " + digits);
+            assertEquals(new ComplexNumber(5, 0), engine.peek(0), "precision " + digits);
+            assertEquals(new ComplexNumber(7, 0), engine.getVariable('a'), "precision " + digits);
+            assertEquals(history, engine.getHistory().size(), "precision " + digits);
+        }
+    }
+
+    @Test
+    public void testMacroRollsBackWhatItTouches() {
+        CalculatorEngine engine = engine(34);
+        engine.enter("1");
+        engine.enter("2");
+        engine.enter("7");
+        engine.enter(">a");
+        engine.enter("save");
+        assertEquals(CalculatorEngine.Status.OK, engine.enter("bad = dup >a restore restore 0 /"));
+        assertEquals(CalculatorEngine.Status.NOTHING_TO_RESTORE, engine.enter("bad"));
+        assertEquals(2, engine.stackSize());
+        assertEquals(0, engine.peekExact(0).real().compareTo(new BigDecimal("2")));
+        assertEquals(0, engine.peekExact(1).real().compareTo(new BigDecimal("1")));
+        assertEquals(7.0, engine.getVariable('a').getReal());
+        // la save precedente e' ancora disponibile
+        engine.enter("3");
+        engine.enter(">a");
+        assertEquals(CalculatorEngine.Status.OK, engine.enter("restore"));
+        assertEquals(7.0, engine.getVariable('a').getReal());
+
+        assertEquals(CalculatorEngine.Status.OK, engine.enter("wipe = clear 1 0 /"));
+        assertEquals(CalculatorEngine.Status.DIVISION_BY_ZERO, engine.enter("wipe"));
+        assertEquals(2, engine.stackSize());
+        assertEquals(CalculatorEngine.Status.NOT_ENOUGH_OPERANDS, engine.enter("+ + +"));
+        assertEquals(2, engine.stackSize());
+    }
+
+    @Test
+    public void testHistoryAndNotifications() {
+        CalculatorEngine engine = engine(34);
+        List<String> events = new ArrayList<>();
+        engine.addListener(new CalculatorListener() {
+            @Override
+            public void historyAppended(ComplexNumber value) {
+                events.add("history " + value);
+            }
+
+            @Override
+            public void variablesChanged() {
+                events.add("variables");
+            }
+        });
+        engine.enter("2");
+        engine.enter("dup");
+        engine.enter("*");
+        engine.enter(">a");
+        assertEquals(List.of("history " + new ComplexNumber(2, 0), "history " + new ComplexNumber(4, 0), "variables"), events);
+    }
+
+    @Test
+    public void testSqrtCache() {
+        CalculatorEngine engine = engine(60);
+        PrecisionBackend backend = engine.getPrecisionBackend();
+        for (int i = 0; i < 3; i++) {
+            engine.enter("2+1j");
+            engine.enter("sqrt");
+        }
+        assertEquals(1, backend.sqrtMisses());
+        assertEquals(2, backend.sqrtHits());
+        assertEquals(engine.peekExact(0), engine.peekExact(1));
+
+        // con un'altra precisione la cache riparte vuota
+        engine.enter("precision 30");
+        engine.enter("2+1j");
+        engine.enter("sqrt");
+        assertEquals(1, engine.getPrecisionBackend().sqrtMisses());
+        assertEquals(0, engine.getPrecisionBackend().sqrtHits());
+        assertEquals(30, engine.peekExact(0).real().precision());
+    }
+
+    @Test
+    public void testSwitchingModes() {
+        CalculatorEngine engine = new CalculatorEngine();
+        engine.enter("0.1");
+        engine.enter("2.5");
+        engine.enter(">z");
+        assertEquals(CalculatorEngine.Status.OK, engine.setPrecision(34));
+        assertEquals("0.1 + 0.0i", engine.peekExact(0).toString());
+        assertEquals(CalculatorEngine.Status.OK, engine.enter("<z"));
+        assertEquals(CalculatorEngine.Status.OK, engine.enter("+"));
+        assertEquals(0, engine.peekExact(0).real().compareTo(new BigDecimal("2.6")));
+
+        assertEquals(CalculatorEngine.Status.OK, engine.setPrecision(0));
+        assertEquals(1, engine.stackSize());
+        assertEquals(2.6, engine.peekReal(0));
+        assertEquals(new ComplexNumber(2.5, 0), engine.getVariable('z'));
+
+        // NaN e infinito non hanno un valore decimale
+        engine.enter("1e308 * 10");
+        assertEquals(CalculatorEngine.Status.INVALID_INPUT, engine.setPrecision(34));
+        assertEquals(0, engine.getPrecision());
+    }
+
+    @Test
+    public void testBatchOutput() {
+        CalculatorEngine engine = engine(34);
+        assertEquals("0.3333333333333333333333333333333333 + 0i",
+                BatchCalculator.appendResult(new StringBuilder(), engine.enter("1 3 /"), engine).toString());
+    }
+}
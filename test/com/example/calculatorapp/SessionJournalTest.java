@@ -0,0 +1,224 @@
+package com.example.calculatorapp;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SessionJournalTest {
+
+    @TempDir
+    Path directory;
+
+    private static void enterAll(CalculatorEngine engine, String... inputs) {
+        for (String input : inputs) {
+            engine.enter(input);
+        }
+    }
+
+    @Test
+    public void testReplayAfterCrash() throws IOException {
+        CalculatorEngine engine = new CalculatorEngine();
+        SessionJournal journal = SessionJournal.open(directory, engine);
+        enterAll(engine, "3", "4", "+", ">x", "sq = dup *", "2j", "sq", "+", "<x");
+        journal.flush();
+        // Nessun close: il processo "muore" qui
+
+        CalculatorEngine restored = new CalculatorEngine();
+        SessionJournal.open(directory, restored).close();
+
+        assertEquals(2, restored.stackSize());
+        assertEquals(new ComplexNumber(7, 0), restored.peek(0));
+        assertEquals(new ComplexNumber(-4, 0), restored.peek(1));
+        assertEquals(new ComplexNumber(7, 0), restored.getVariable('x'));
+        assertNotNull(restored.getMacro("sq"));
+        assertEquals(engine.getHistory().size(), restored.getHistory().size());
+    }
+
+    @Test
+    public void testRejectedInputsAreNotRecorded() throws IOException {
+        CalculatorEngine engine = new CalculatorEngine();
+        SessionJournal journal = SessionJournal.open(directory, engine);
+        enterAll(engine, "+", "1", "0", "/", "foo", "2");
+        journal.flush();
+        long size = Files.size(directory.resolve(SessionJournal.JOURNAL_FILE));
+
+        // Intestazione + tre record ("1", "0", "2") da 9 + 1 byte
+        assertEquals(16 + 3 * 10, size);
+    }
+
+    @Test
+    public void testFailedMacroLeavesNothingToReplay() throws IOException {
+        CalculatorEngine engine = new CalculatorEngine();
+        SessionJournal journal = SessionJournal.open(directory, engine);
+        enterAll(engine, "5", ">a", "bad = 1 0 /", "worse = 9 >a 2 <b");
+        // la macro fallisce a meta': non resta niente di quello che aveva fatto
+        assertEquals(CalculatorEngine.Status.DIVISION_BY_ZERO, engine.enter("bad"));
+        assertEquals(CalculatorEngine.Status.UNDEFINED_VARIABLE, engine.enter("worse"));
+        assertEquals(0, engine.stackSize());
+        assertEquals(new ComplexNumber(5, 0), engine.getVariable('a'));
+        journal.flush();
+
+        CalculatorEngine restored = new CalculatorEngine();
+        SessionJournal.open(directory, restored).close();
+        assertEquals(engine.stackSize(), restored.stackSize());
+        assertEquals(engine.getVariable('a'), restored.getVariable('a'));
+        journal.close();
+    }
+
+    @Test
+    public void testLinesAreReplayedAsLines() throws IOException {
+        CalculatorEngine engine = new CalculatorEngine();
+        SessionJournal journal = SessionJournal.open(directory, engine);
+        engine.enter("1");
+        // come riga RPN: 1 3 + e poi 4; con enter() sarebbe l'espressione 3 + 4
+        assertEquals(CalculatorEngine.Status.OK, engine.enterLine("3 + 4"));
+        engine.enter("3 + 4");
+        journal.flush();
+
+        CalculatorEngine restored = new CalculatorEngine();
+        SessionJournal.open(directory, restored).close();
+        assertEquals(3, restored.stackSize());
+        assertEquals(new ComplexNumber(7, 0), restored.peek(0));
+        assertEquals(new ComplexNumber(4, 0), restored.peek(1));
+        assertEquals(new ComplexNumber(4, 0), restored.peek(2));
+        journal.close();
+    }
+
+    @Test
+    public void testVersion1JournalIsUpgraded() throws IOException {
+        ByteBuffer file = ByteBuffer.allocate(64).putInt(0x43414C4A).putInt(1).putLong(0);
+        CRC32 crc = new CRC32();
+        for (String input : new String[]{"2", "3 4 +"}) {
+            byte[] bytes = input.getBytes(StandardCharsets.UTF_8);
+            crc.reset();
+            crc.update(bytes);
+            file.putInt(bytes.length).putInt((int) crc.getValue()).put(bytes);
+        }
+        Files.write(directory.resolve(SessionJournal.JOURNAL_FILE), Arrays.copyOf(file.array(), file.position()));
+
+        CalculatorEngine restored = new CalculatorEngine();
+        SessionJournal journal = SessionJournal.open(directory, restored);
+        assertEquals(2, restored.stackSize());
+        assertEquals(new ComplexNumber(7, 0), restored.peek(0));
+        // riscritto nel formato attuale: i nuovi record si accodano ai vecchi
+        assertEquals(16 + 10 + 14, Files.size(directory.resolve(SessionJournal.JOURNAL_FILE)));
+        restored.enterLine("1 +");
+        journal.flush();
+
+        CalculatorEngine again = new CalculatorEngine();
+        SessionJournal.open(directory, again).close();
+        assertEquals(2, again.stackSize());
+        assertEquals(new ComplexNumber(8, 0), again.peek(0));
+        journal.close();
+    }
+
+    @Test
+    public void testTornRecordIsDropped() throws IOException {
+        CalculatorEngine engine = new CalculatorEngine();
+        SessionJournal journal = SessionJournal.open(directory, engine);
+        enterAll(engine, "1", "2");
+        journal.flush();
+        Path file = directory.resolve(SessionJournal.JOURNAL_FILE);
+        Files.write(file, new byte[]{0, 0, 0, 40, 1, 2, 3}, StandardOpenOption.APPEND);
+
+        CalculatorEngine restored = new CalculatorEngine();
+        SessionJournal reopened = SessionJournal.open(directory, restored);
+        assertEquals(2, restored.stackSize());
+
+        // Il record parziale e' stato tagliato: i nuovi record si accodano a quelli validi
+        restored.enter("3");
+        reopened.flush();
+        CalculatorEngine again = new CalculatorEngine();
+        SessionJournal.open(directory, again).close();
+        assertEquals(3, again.stackSize());
+        assertEquals(new ComplexNumber(3, 0), again.peek(0));
+    }
+
+    @Test
+    public void testSnapshotBoundsReplay() throws IOException {
+        CalculatorEngine engine = new CalculatorEngine();
+        SessionJournal journal = SessionJournal.open(directory, engine, 4);
+        enterAll(engine, "1", ">a", "2", "3", "4", "5");
+        journal.flush();
+
+        assertTrue(Files.exists(directory.resolve(SessionJournal.SNAPSHOT_FILE)));
+        // Dopo lo snapshot restano solo "4" e "5"
+        assertEquals(16 + 2 * 10, Files.size(directory.resolve(SessionJournal.JOURNAL_FILE)));
+
+        CalculatorEngine restored = new CalculatorEngine();
+        SessionJournal.open(directory, restored).close();
+        assertEquals(4, restored.stackSize());
+        assertEquals(new ComplexNumber(5, 0), restored.peek(0));
+        assertEquals(new ComplexNumber(2, 0), restored.peek(3));
+        assertEquals(new ComplexNumber(1, 0), restored.getVariable('a'));
+        assertEquals(new ComplexNumber(5, 0), restored.getHistory().get(0));
+    }
+
+    @Test
+    public void testSnapshotKeepsSavedVariables() throws IOException {
+        CalculatorEngine engine = new CalculatorEngine();
+        SessionJournal journal = SessionJournal.open(directory, engine, 3);
+        // lo snapshot arriva dopo "save": il "restore" successivo deve ancora trovarlo
+        enterAll(engine, "1", ">a", "save", "2", ">a");
+        journal.flush();
+
+        CalculatorEngine restored = new CalculatorEngine();
+        SessionJournal.open(directory, restored).close();
+        assertEquals(new ComplexNumber(2, 0), restored.getVariable('a'));
+        assertEquals(1, restored.getVariables().savedCount());
+        assertEquals(CalculatorEngine.Status.OK, restored.enter("restore"));
+        assertEquals(new ComplexNumber(1, 0), restored.getVariable('a'));
+
+        // la sessione originale, con lo stesso stato, da' lo stesso risultato
+        assertEquals(CalculatorEngine.Status.OK, engine.enter("restore"));
+        assertEquals(engine.getVariable('a'), restored.getVariable('a'));
+        journal.close();
+    }
+
+    @Test
+    public void testStaleJournalIsNotAppliedTwice() throws IOException {
+        CalculatorEngine engine = new CalculatorEngine();
+        SessionJournal journal = SessionJournal.open(directory, engine);
+        enterAll(engine, "2", "3", "+");
+        journal.flush();
+        Path file = directory.resolve(SessionJournal.JOURNAL_FILE);
+        byte[] beforeSnapshot = Files.readAllBytes(file);
+        journal.snapshot();
+        // Crash tra la scrittura dello snapshot e la rotazione del giornale
+        Files.write(file, beforeSnapshot);
+
+        CalculatorEngine restored = new CalculatorEngine();
+        SessionJournal.open(directory, restored).close();
+        assertEquals(1, restored.stackSize());
+        assertEquals(new ComplexNumber(5, 0), restored.peek(0));
+    }
+
+    @Test
+    public void testCloseCompactsIntoSnapshot() throws IOException {
+        CalculatorEngine engine = new CalculatorEngine();
+        SessionJournal journal = SessionJournal.open(directory, engine);
+        enterAll(engine, "1+1j", "dup", "*");
+        journal.close();
+
+        assertEquals(16, Files.size(directory.resolve(SessionJournal.JOURNAL_FILE)));
+        CalculatorEngine restored = new CalculatorEngine();
+        SessionJournal.open(directory, restored).close();
+        assertEquals(new ComplexNumber(0, 2), restored.peek(0));
+
+        // Dopo close l'engine non viene piu' registrato
+        engine.enter("9");
+        CalculatorEngine again = new CalculatorEngine();
+        SessionJournal.open(directory, again).close();
+        assertEquals(1, again.stackSize());
+    }
+}
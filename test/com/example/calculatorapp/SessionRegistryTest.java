@@ -0,0 +1,64 @@
+package com.example.calculatorapp;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SessionRegistryTest {
+
+    @Test
+    public void testThousandsOfSessionsDoNotShareState() {
+        int sessions = 5000;
+        List<CompletableFuture<CalculatorEngine.Status[]>> results = new ArrayList<>();
+        try (SessionRegistry registry = new SessionRegistry()) {
+            for (int i = 0; i < sessions; i++) {
+                // Ogni sessione calcola 3*i+1 passando per una variabile e un'espressione infissa
+                results.add(registry.submit("s" + i, List.of(String.valueOf(i), ">x", "x*3", "1", "+")));
+            }
+            for (CompletableFuture<CalculatorEngine.Status[]> result : results) {
+                for (CalculatorEngine.Status status : result.join()) {
+                    assertEquals(CalculatorEngine.Status.OK, status);
+                }
+            }
+
+            assertEquals(sessions, registry.size());
+            for (int i = 0; i < sessions; i++) {
+                CalculatorSession session = registry.get("s" + i);
+                assertEquals(1, session.stackSize());
+                assertEquals(new ComplexNumber(3.0 * i + 1, 0), session.peek(0));
+            }
+        }
+    }
+
+    @Test
+    public void testConcurrentSubmitsToOneSessionAreSerialized() {
+        int submits = 1000;
+        List<CompletableFuture<CalculatorEngine.Status[]>> results = new ArrayList<>();
+        try (SessionRegistry registry = new SessionRegistry()) {
+            registry.session("shared").enter("0");
+            for (int i = 0; i < submits; i++) {
+                results.add(registry.submit("shared", List.of("1", "+")));
+            }
+            results.forEach(CompletableFuture::join);
+
+            CalculatorSession session = registry.get("shared");
+            assertEquals(1, session.stackSize());
+            assertEquals(new ComplexNumber(submits, 0), session.peek(0));
+        }
+    }
+
+    @Test
+    public void testRemove() {
+        try (SessionRegistry registry = new SessionRegistry()) {
+            registry.session("a");
+
+            assertTrue(registry.remove("a"));
+            assertFalse(registry.remove("a"));
+            assertNull(registry.get("a"));
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package com.example.calculatorapp;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class StateFileTest {
+
+    @TempDir
+    Path directory;
+
+    private static CalculatorEngine sampleEngine() {
+        CalculatorEngine engine = new CalculatorEngine();
+        engine.setVariable('x', 1.5, -2);
+        engine.setVariable('z', 3, 0);
+        engine.enter("sq = dup *");
+        engine.enter("hyp = sq swap sq + sqrt");
+        engine.enter("rot = 2j * 0.5-1e-3j + >r");
+        return engine;
+    }
+
+    @Test
+    public void testBinaryRoundTrip() throws IOException {
+        Path file = directory.resolve("state.bin");
+        StateFile.write(sampleEngine(), file);
+
+        CalculatorEngine loaded = new CalculatorEngine();
+        StateFile.read(file, loaded);
+
+        assertEquals(new ComplexNumber(1.5, -2), loaded.getVariable('x'));
+        assertEquals(new ComplexNumber(3, 0), loaded.getVariable('z'));
+        assertNull(loaded.getVariable('y'));
+        assertEquals(3, loaded.getMacros().size());
+        assertEquals("sq swap sq + sqrt", loaded.getMacro("hyp").getBody());
+
+        // La macro caricata viene eseguita senza ricompilarla
+        loaded.enter("3");
+        loaded.enter("4");
+        assertEquals(CalculatorEngine.Status.OK, loaded.enter("hyp"));
+        assertEquals(new ComplexNumber(5, 0), loaded.peek(0));
+    }
+
+    @Test
+    public void testWriteReplacesAtomically() throws IOException {
+        Path file = directory.resolve("state.bin");
+        StateFile.write(new CalculatorEngine(), file);
+        StateFile.write(sampleEngine(), file);
+
+        try (var files = Files.list(directory)) {
+            assertEquals(1, files.count()); // Nessun file temporaneo rimasto
+        }
+        CalculatorEngine loaded = new CalculatorEngine();
+        StateFile.read(file, loaded);
+        assertEquals(3, loaded.getMacros().size());
+    }
+
+    @Test
+    public void testCorruptedFileIsRejected() throws IOException {
+        Path file = directory.resolve("state.bin");
+        StateFile.write(sampleEngine(), file);
+        byte[] bytes = Files.readAllBytes(file);
+        bytes[bytes.length - 3] ^= 0x10;
+        Files.write(file, bytes);
+
+        CalculatorEngine engine = new CalculatorEngine();
+        engine.setVariable('a', 7, 0);
+
+        assertThrows(IOException.class, () -> StateFile.read(file, engine));
+        assertEquals(new ComplexNumber(7, 0), engine.getVariable('a')); // Stato invariato
+
+        Files.write(file, new byte[]{1, 2, 3});
+        assertThrows(IOException.class, () -> StateFile.read(file, engine));
+    }
+
+    @Test
+    public void testUnknownVersionIsRejected() throws IOException {
+        Path file = directory.resolve("state.bin");
+        StateFile.write(sampleEngine(), file);
+        byte[] bytes = Files.readAllBytes(file);
+        bytes[7] = 99;
+        Files.write(file, bytes);
+
+        IOException e = assertThrows(IOException.class, () -> StateFile.read(file, new CalculatorEngine()));
+        assertTrue(e.getMessage().contains("version 99"));
+    }
+
+    private static ByteBuffer stateWithMacro(String name, int requiredDepth, int... code) {
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer payload = ByteBuffer.allocate(64 + 4 * code.length);
+        payload.putInt(0).putInt(1);
+        payload.putInt(bytes.length).put(bytes).putInt(bytes.length).put(bytes);
+        payload.putInt(requiredDepth).putInt(code.length);
+        for (int instruction : code) {
+            payload.putInt(instruction);
+        }
+        return payload.putInt(0).flip();
+    }
+
+    @Test
+    public void testMacroDepthIsChecked() throws IOException {
+        Path file = directory.resolve("state.bin");
+        int add = Opcodes.encode(Opcodes.ADD, 0);
+        int clear = Opcodes.encode(Opcodes.CLEAR, 0);
+        CalculatorEngine engine = new CalculatorEngine();
+
+        // una profondita' piu' bassa di quella che serve al codice viene rifiutata
+        assertThrows(IOException.class, () -> StateFile.decode(stateWithMacro("add", 1, add), file, engine));
+        assertThrows(IOException.class, () -> StateFile.decode(stateWithMacro("add", 9, clear, add), file, engine));
+        assertTrue(engine.getMacros().isEmpty());
+
+        StateFile.decode(stateWithMacro("add", 2, add), file, engine);
+        assertEquals(CalculatorEngine.Status.NOT_ENOUGH_OPERANDS, engine.enter("add"));
+
+        // nel formato testo il corpo viene ricompilato: la profondita' scritta e' solo un minimo
+        CalculatorEngine imported = new CalculatorEngine();
+        StateFile.importText(new BufferedReader(new StringReader("macro add 0 +\n")), imported);
+        assertEquals(2, imported.getMacro("add").getRequiredDepth());
+        imported.enter("1");
+        assertEquals(CalculatorEngine.Status.NOT_ENOUGH_OPERANDS, imported.enter("add"));
+    }
+
+    @Test
+    public void testTextRoundTrip() throws IOException {
+        StringWriter text = new StringWriter();
+        StateFile.exportText(sampleEngine(), text);
+
+        CalculatorEngine imported = new CalculatorEngine();
+        StateFile.importText(new BufferedReader(new StringReader(text.toString())), imported);
+
+        assertEquals(new ComplexNumber(1.5, -2), imported.getVariable('x'));
+        // Il corpo esportato e' gia' espanso: non dipende da sq
+        assertEquals("dup * swap dup * + sqrt", imported.getMacro("hyp").getBody());
+        assertEquals(sampleEngine().getMacro("rot").instructionCount(), imported.getMacro("rot").instructionCount());
+    }
+
+    @Test
+    public void testTextRoundTripOfSimplifiedMacros() throws IOException {
+        CalculatorEngine engine = new CalculatorEngine();
+        assertEquals(CalculatorEngine.Status.OK, engine.define("nop", "dup drop"));
+        assertEquals(CalculatorEngine.Status.OK, engine.define("inc", "swap swap 1 +"));
+        assertEquals(CalculatorEngine.Status.OK, engine.define("huge", "1e300 1e300 * +"));
+        // un letterale che trabocca non diventa una costante
+        assertEquals(CalculatorEngine.Status.INVALID_DEFINITION, engine.define("big", "1e400 +"));
+
+        StringWriter text = new StringWriter();
+        StateFile.exportText(engine, text);
+        assertTrue(text.toString().contains("macro nop 1\n"), text.toString());
+        CalculatorEngine imported = new CalculatorEngine();
+        StateFile.importText(new BufferedReader(new StringReader(text.toString())), imported);
+
+        for (String name : new String[]{"nop", "inc", "huge"}) {
+            Macro original = engine.getMacro(name);
+            Macro copy = imported.getMacro(name);
+            assertArrayEquals(original.code(), copy.code(), name);
+            assertArrayEquals(original.constantsRe(), copy.constantsRe(), name);
+            assertArrayEquals(original.constantsIm(), copy.constantsIm(), name);
+            assertEquals(original.getRequiredDepth(), copy.getRequiredDepth(), name);
+        }
+        assertEquals(1, imported.getMacro("nop").getRequiredDepth());
+        assertEquals(2, imported.getMacro("inc").getRequiredDepth());
+
+        imported.enter("5");
+        assertEquals(CalculatorEngine.Status.NOT_ENOUGH_OPERANDS, imported.enter("inc"));
+        assertEquals(CalculatorEngine.Status.OK, imported.enter("nop"));
+        assertEquals(CalculatorEngine.Status.OK, imported.enter("huge"));
+        assertEquals(Double.POSITIVE_INFINITY, imported.peekReal(0));
+    }
+
+    @Test
+    public void testTextImportErrors() {
+        String text = "# commento\nvar x 1 2\nmacro hyp 1 dup foo\n";
+
+        IOException e = assertThrows(IOException.class,
+                () -> StateFile.importText(new BufferedReader(new StringReader(text)), new CalculatorEngine()));
+        assertTrue(e.getMessage().contains("line 3"));
+    }
+}
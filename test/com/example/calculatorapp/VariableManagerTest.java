@@ -0,0 +1,101 @@
+package com.example.calculatorapp;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class VariableManagerTest {
+
+    @Test
+    public void testSaveAddSubtract() {
+        VariableManager variables = new VariableManager();
+        int x = VariableManager.slot('x');
+
+        variables.save(x, 5, 1);
+        assertTrue(variables.add(x, 2, -3));
+        assertTrue(variables.subtract(x, 1, 1));
+
+        assertEquals(new ComplexNumber(6, -3), variables.get(x));
+        assertEquals(1 << x, variables.definedMask());
+    }
+
+    @Test
+    public void testUndefinedVariable() {
+        VariableManager variables = new VariableManager();
+        int y = VariableManager.slot('y');
+
+        // Somma e sottrazione su una variabile non definita non la definiscono
+        assertFalse(variables.add(y, 1, 0));
+        assertFalse(variables.subtract(y, 1, 0));
+        assertFalse(variables.isDefined(y));
+        assertNull(variables.get(y));
+
+        variables.save(y, 2, 0);
+        variables.clear();
+        assertFalse(variables.isDefined(y));
+    }
+
+    @Test
+    public void testSlot() {
+        assertEquals(0, VariableManager.slot('a'));
+        assertEquals(25, VariableManager.slot('z'));
+        assertThrows(IllegalArgumentException.class, () -> VariableManager.slot('A'));
+    }
+
+    @Test
+    public void testCompiledExpressionUsesStore() {
+        VariableManager variables = new VariableManager();
+        CompiledExpression expression = CompiledExpression.compile("x*y");
+        double[] result = new double[2];
+
+        variables.save(VariableManager.slot('x'), 0, 1);
+        assertEquals(CalculatorEngine.Status.UNDEFINED_VARIABLE, expression.evaluate(variables, result));
+
+        variables.save(VariableManager.slot('y'), 0, 1);
+        assertEquals(CalculatorEngine.Status.OK, expression.evaluate(variables, result));
+        assertEquals(-1.0, result[0]);
+        assertEquals(0.0, result[1]);
+    }
+
+    @Test
+    public void testSaveAndRestoreAll() {
+        VariableManager variables = new VariableManager();
+        int x = VariableManager.slot('x');
+        int y = VariableManager.slot('y');
+        variables.save(x, 1, 0);
+
+        variables.saveAll();
+        variables.save(x, 2, 0); // Modifica dopo lo snapshot: non deve toccare la copia salvata
+        variables.save(y, 3, 0);
+        variables.saveAll();
+        variables.clear();
+
+        assertEquals(2, variables.savedCount());
+        assertTrue(variables.restoreAll());
+        assertEquals(new ComplexNumber(2, 0), variables.get(x));
+        assertEquals(new ComplexNumber(3, 0), variables.get(y));
+
+        assertTrue(variables.restoreAll());
+        assertEquals(new ComplexNumber(1, 0), variables.get(x));
+        assertFalse(variables.isDefined(y));
+        assertFalse(variables.restoreAll());
+    }
+
+    @Test
+    public void testSavedSnapshotsAreBounded() {
+        VariableManager variables = new VariableManager();
+        int x = VariableManager.slot('x');
+        for (int i = 0; i < VariableManager.MAX_SAVED + 10; i++) {
+            variables.save(x, i, 0);
+            variables.saveAll();
+        }
+
+        // Restano solo gli ultimi MAX_SAVED snapshot, dal piu' recente al piu' vecchio
+        assertEquals(VariableManager.MAX_SAVED, variables.savedCount());
+        for (int i = VariableManager.MAX_SAVED + 9; i >= 10; i--) {
+            assertTrue(variables.restoreAll());
+            assertEquals(i, variables.re(x));
+        }
+        assertFalse(variables.restoreAll());
+    }
+}